@@ -3,20 +3,14 @@ package Strategy;
 import model.Genere;
 import model.Libro;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.function.Predicate;
 
 public class FiltraPerGenere implements FiltroStrategy
 {
     @Override
-    public List<Libro> filtra(List<Libro> libri, String input)
+    public Predicate<Libro> predicato(String input)
     {
         Genere genere = Genere.valueOf(input);
-        List<Libro> ret = new ArrayList<Libro>();
-        for (Libro libro : libri)
-            if(libro.getGenere().equals(genere))
-                ret.add(libro);
-        return ret;
-
+        return libro -> genere.equals(libro.getGenere());
     }
 }
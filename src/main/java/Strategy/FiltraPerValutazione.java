@@ -0,0 +1,16 @@
+package Strategy;
+
+import model.Libro;
+import model.Valutazione;
+
+import java.util.function.Predicate;
+
+public class FiltraPerValutazione implements FiltroStrategy
+{
+    @Override
+    public Predicate<Libro> predicato(String input)
+    {
+        Valutazione valutazione = Valutazione.valueOf(input);
+        return libro -> valutazione.equals(libro.getValutazione());
+    }
+}
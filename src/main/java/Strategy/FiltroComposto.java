@@ -0,0 +1,142 @@
+package Strategy;
+
+import model.Libro;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Albero di condizioni AND/OR sui libri. Le foglie sono coppie
+ * {@link FiltroStrategy} + parametro, i nodi interni ne combinano i risultati.
+ * <p>
+ * Il predicato dell'albero viene costruito una sola volta, per cui
+ * {@link #filtra(List)} esamina ogni libro in un unico passaggio qualunque
+ * sia il numero di criteri. Gli archivi dotati di indici possono invece
+ * visitare l'albero ({@link #getTipo()}, {@link #getFigli()}, ...) e
+ * risolverlo come intersezione/unione di indici.
+ */
+public final class FiltroComposto
+{
+    /**
+     * Tipi di nodo dell'albero.
+     */
+    public enum Tipo
+    {
+        CONDIZIONE, AND, OR
+    }
+
+    private final Tipo tipo;
+    private final FiltroStrategy strategia;
+    private final String parametro;
+    private final List<FiltroComposto> figli;
+    private Predicate<Libro> predicato;
+
+    private FiltroComposto(Tipo tipo, FiltroStrategy strategia, String parametro, List<FiltroComposto> figli)
+    {
+        this.tipo = tipo;
+        this.strategia = strategia;
+        this.parametro = parametro;
+        this.figli = figli;
+    }
+
+    /**
+     * Foglia: i libri selezionati dalla strategia con il parametro indicato.
+     */
+    public static FiltroComposto condizione(FiltroStrategy strategia, String parametro)
+    {
+        return new FiltroComposto(Tipo.CONDIZIONE,
+                Objects.requireNonNull(strategia, "Strategia non può essere null"), parametro, List.of());
+    }
+
+    /**
+     * I libri che soddisfano tutti i filtri indicati.
+     */
+    public static FiltroComposto and(FiltroComposto... figli)
+    {
+        return new FiltroComposto(Tipo.AND, null, null, verifica(figli));
+    }
+
+    /**
+     * I libri che soddisfano almeno uno dei filtri indicati.
+     */
+    public static FiltroComposto or(FiltroComposto... figli)
+    {
+        return new FiltroComposto(Tipo.OR, null, null, verifica(figli));
+    }
+
+    public Tipo getTipo()
+    {
+        return tipo;
+    }
+
+    /**
+     * @return la strategia della foglia, {@code null} per i nodi AND/OR
+     */
+    public FiltroStrategy getStrategia()
+    {
+        return strategia;
+    }
+
+    /**
+     * @return il parametro della foglia, {@code null} per i nodi AND/OR
+     */
+    public String getParametro()
+    {
+        return parametro;
+    }
+
+    public List<FiltroComposto> getFigli()
+    {
+        return figli;
+    }
+
+    /**
+     * @return il predicato equivalente all'intero albero
+     */
+    public Predicate<Libro> predicato()
+    {
+        if (predicato == null)
+        {
+            predicato = switch (tipo)
+            {
+                case CONDIZIONE -> strategia.predicato(parametro);
+                case AND -> figli.stream().map(FiltroComposto::predicato).reduce(Predicate::and).orElseThrow();
+                case OR -> figli.stream().map(FiltroComposto::predicato).reduce(Predicate::or).orElseThrow();
+            };
+        }
+        return predicato;
+    }
+
+    /**
+     * Filtra i libri con un unico passaggio sull'elenco.
+     */
+    public List<Libro> filtra(List<Libro> libri)
+    {
+        Predicate<Libro> condizione = predicato();
+        List<Libro> ret = new ArrayList<>();
+        for (Libro libro : libri)
+            if (condizione.test(libro))
+                ret.add(libro);
+        return ret;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (tipo == Tipo.CONDIZIONE)
+            return strategia.getClass().getSimpleName() + "(" + parametro + ")";
+        return tipo.name() + figli;
+    }
+
+    private static List<FiltroComposto> verifica(FiltroComposto[] figli)
+    {
+        if (figli.length == 0)
+            throw new IllegalArgumentException("Serve almeno un filtro da combinare");
+        for (FiltroComposto f : figli)
+            Objects.requireNonNull(f, "Filtro nullo trovato");
+        return List.copyOf(Arrays.asList(figli));
+    }
+}
@@ -1,9 +1,29 @@
 package Strategy;
 
 import model.Libro;
+
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Predicate;
 
 public interface FiltroStrategy
 {
-    List<Libro> filtra(List<Libro> libri,String input);
+    /**
+     * Restituisce la condizione che un libro deve soddisfare per il parametro indicato.
+     * Il parametro viene interpretato una sola volta, non a ogni libro.
+     *
+     * @param input parametro del filtro (es. il nome del genere)
+     * @return predicato sui libri
+     */
+    Predicate<Libro> predicato(String input);
+
+    default List<Libro> filtra(List<Libro> libri,String input)
+    {
+        Predicate<Libro> condizione = predicato(input);
+        List<Libro> ret = new ArrayList<>();
+        for (Libro libro : libri)
+            if (condizione.test(libro))
+                ret.add(libro);
+        return ret;
+    }
 }
@@ -1,21 +1,15 @@
 package Strategy;
 
-import java.util.Comparator;
-import java.util.List;
 import model.Libro;
 
 /**
  * Ordina i libri in ordine lessicografico di autore
  */
-public class OrdinamentoPerAutore implements OrdinamentoStrategy
+public class OrdinamentoPerAutore extends OrdinamentoPerChiave
 {
     @Override
-    public List<Libro> ordina(List<Libro> libri)
+    protected String chiave(Libro libro)
     {
-        libri.sort(Comparator.comparing(
-                libro -> libro.getAutori().iterator().next(),  // primo autore
-                String.CASE_INSENSITIVE_ORDER
-        ));
-        return libri;
+        return libro.getPrimoAutore();
     }
 }
@@ -0,0 +1,214 @@
+package Strategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import model.Libro;
+
+/**
+ * Ordinamento per una chiave testuale del libro, con lo stesso risultato di
+ * {@code Comparator.comparing(chiave, String.CASE_INSENSITIVE_ORDER)}.
+ * <p>
+ * La chiave di confronto viene calcolata una sola volta per libro invece che
+ * a ogni confronto, e viene ordinato un array di indici con un merge sort
+ * stabile: i libri con la stessa chiave restano nell'ordine di partenza.
+ */
+public abstract class OrdinamentoPerChiave implements OrdinamentoStrategy
+{
+    /** Blocchi ordinati per inserimento prima delle fusioni */
+    private static final int BLOCCO = 32;
+
+    /**
+     * @return il testo del libro su cui ordinare
+     */
+    protected abstract String chiave(Libro libro);
+
+    @Override
+    public List<Libro> ordina(List<Libro> libri)
+    {
+        Libro[] originali = libri.toArray(new Libro[0]);
+        int n = originali.length;
+        String[] chiavi = new String[n];
+        int[] indici = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            chiavi[i] = chiaveDiConfronto(originali[i]);
+            indici[i] = i;
+        }
+
+        ordinaIndici(indici, chiavi);
+
+        for (int i = 0; i < n; i++)
+            libri.set(i, originali[indici[i]]);
+        return libri;
+    }
+
+    /**
+     * Restituisce i primi {@code k} libri nell'ordine di {@link #ordina(List)},
+     * senza ordinare gli altri: un heap dei {@code k} migliori visti finora
+     * costa O(N log k) invece di O(N log N). La lista non viene modificata.
+     */
+    public List<Libro> primi(List<Libro> libri, int k)
+    {
+        if (k < 0) throw new IllegalArgumentException("Numero di libri non valido: " + k);
+        if (k >= libri.size()) return ordina(new ArrayList<>(libri));
+
+        // heap con in cima il peggiore dei k migliori: chiave, poi posizione
+        String[] chiavi = new String[k];
+        int[] posizioni = new int[k];
+        int dimensione = 0;
+        int posizione = 0;
+        for (Libro l : libri)
+        {
+            String chiave = chiaveDiConfronto(l);
+            if (dimensione < k)
+            {
+                int i = dimensione++;
+                chiavi[i] = chiave;
+                posizioni[i] = posizione;
+                risali(chiavi, posizioni, i);
+            }
+            else if (k > 0 && confronta(chiave, posizione, chiavi[0], posizioni[0]) < 0)
+            {
+                chiavi[0] = chiave;
+                posizioni[0] = posizione;
+                scendi(chiavi, posizioni, 0, k);
+            }
+            posizione++;
+        }
+
+        // estrazione dal peggiore al migliore
+        Libro[] risultato = new Libro[dimensione];
+        for (int fine = dimensione - 1; fine >= 0; fine--)
+        {
+            risultato[fine] = libri.get(posizioni[0]);
+            chiavi[0] = chiavi[fine];
+            posizioni[0] = posizioni[fine];
+            scendi(chiavi, posizioni, 0, fine);
+        }
+        return new ArrayList<>(Arrays.asList(risultato));
+    }
+
+    /**
+     * @return la chiave del libro con ogni carattere nella forma usata da
+     *         {@link String#CASE_INSENSITIVE_ORDER} (minuscola della maiuscola):
+     *         {@link String#compareTo(String)} sulle chiavi dà lo stesso ordine
+     */
+    public final String chiaveDiConfronto(Libro libro)
+    {
+        String s = chiave(libro);
+        char[] c = null;
+        for (int i = 0; i < s.length(); i++)
+        {
+            char originale = s.charAt(i);
+            char normale = Character.toLowerCase(Character.toUpperCase(originale));
+            if (normale != originale)
+            {
+                if (c == null) c = s.toCharArray();
+                c[i] = normale;
+            }
+        }
+        return c == null ? s : new String(c);
+    }
+
+    /**
+     * Merge sort stabile degli indici per chiave: blocchi ordinati per
+     * inserimento, poi fusi a coppie con un unico array di appoggio.
+     */
+    private static void ordinaIndici(int[] indici, String[] chiavi)
+    {
+        int n = indici.length;
+        for (int inizio = 0; inizio < n; inizio += BLOCCO)
+            perInserimento(indici, chiavi, inizio, Math.min(inizio + BLOCCO, n));
+
+        int[] appoggio = new int[n];
+        for (int larghezza = BLOCCO; larghezza < n; larghezza *= 2)
+        {
+            for (int sinistra = 0; sinistra < n - larghezza; sinistra += 2 * larghezza)
+            {
+                int centro = sinistra + larghezza;
+                int destra = Math.min(sinistra + 2 * larghezza, n);
+                // le due metà sono già in ordine
+                if (chiavi[indici[centro - 1]].compareTo(chiavi[indici[centro]]) <= 0) continue;
+                fondi(indici, appoggio, chiavi, sinistra, centro, destra);
+            }
+        }
+    }
+
+    /**
+     * Ordine totale usato dalla selezione: a parità di chiave vince la
+     * posizione minore, come nell'ordinamento stabile.
+     */
+    private static int confronta(String chiave, int posizione, String altraChiave, int altraPosizione)
+    {
+        int c = chiave.compareTo(altraChiave);
+        return c != 0 ? c : Integer.compare(posizione, altraPosizione);
+    }
+
+    private static void risali(String[] chiavi, int[] posizioni, int i)
+    {
+        while (i > 0)
+        {
+            int padre = (i - 1) / 2;
+            if (confronta(chiavi[i], posizioni[i], chiavi[padre], posizioni[padre]) <= 0) return;
+            scambia(chiavi, posizioni, i, padre);
+            i = padre;
+        }
+    }
+
+    private static void scendi(String[] chiavi, int[] posizioni, int i, int dimensione)
+    {
+        while (true)
+        {
+            int maggiore = i;
+            for (int figlio = 2 * i + 1; figlio <= 2 * i + 2 && figlio < dimensione; figlio++)
+            {
+                if (confronta(chiavi[figlio], posizioni[figlio], chiavi[maggiore], posizioni[maggiore]) > 0)
+                    maggiore = figlio;
+            }
+            if (maggiore == i) return;
+            scambia(chiavi, posizioni, i, maggiore);
+            i = maggiore;
+        }
+    }
+
+    private static void scambia(String[] chiavi, int[] posizioni, int i, int j)
+    {
+        String c = chiavi[i];
+        chiavi[i] = chiavi[j];
+        chiavi[j] = c;
+        int p = posizioni[i];
+        posizioni[i] = posizioni[j];
+        posizioni[j] = p;
+    }
+
+    private static void perInserimento(int[] indici, String[] chiavi, int da, int a)
+    {
+        for (int i = da + 1; i < a; i++)
+        {
+            int corrente = indici[i];
+            int j = i - 1;
+            while (j >= da && chiavi[indici[j]].compareTo(chiavi[corrente]) > 0)
+            {
+                indici[j + 1] = indici[j];
+                j--;
+            }
+            indici[j + 1] = corrente;
+        }
+    }
+
+    private static void fondi(int[] indici, int[] appoggio, String[] chiavi, int sinistra, int centro, int destra)
+    {
+        System.arraycopy(indici, sinistra, appoggio, sinistra, destra - sinistra);
+        int i = sinistra;
+        int j = centro;
+        for (int k = sinistra; k < destra; k++)
+        {
+            // a parità di chiave vince la metà sinistra: l'ordinamento resta stabile
+            if (j >= destra || (i < centro && chiavi[appoggio[i]].compareTo(chiavi[appoggio[j]]) <= 0))
+                indici[k] = appoggio[i++];
+            else
+                indici[k] = appoggio[j++];
+        }
+    }
+}
@@ -1,17 +1,15 @@
 package Strategy;
 
-import java.util.Comparator;
-import java.util.List;
 import model.Libro;
 
 /**
  * Ordina i libri in ordine lessicografico di titolo
  */
-public class OrdinamentoPerTitolo implements OrdinamentoStrategy
+public class OrdinamentoPerTitolo extends OrdinamentoPerChiave
 {
-    public List<Libro> ordina(List<Libro> libri)
+    @Override
+    protected String chiave(Libro libro)
     {
-        libri.sort(Comparator.comparing(Libro::getTitolo, String.CASE_INSENSITIVE_ORDER));
-        return libri;
+        return libro.getTitolo();
     }
 }
@@ -1,8 +1,10 @@
 package facade;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import javax.swing.SwingUtilities;
-import persistenza.ArchivioLibri;
 import persistenza.ArchivioLibriFileCsv;
+import persistenza.PoliticaFlush;
 import ui.AbstractUi;
 import ui.LibreriaUISwing;
 
@@ -32,8 +34,20 @@ public class LibreriaUiFacade
      */
     private LibreriaUiFacade()
     {
-        // Crea l’implementazione concreta dell’archivio (persistenza CSV)
-        ArchivioLibri archivio = new ArchivioLibriFileCsv();
+        // Crea l’implementazione concreta dell’archivio (persistenza CSV),
+        // residente in memoria: salva ogni 50 modifiche, ogni 2 secondi e alla chiusura
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(
+                Paths.get("dati.csv"),
+                new PoliticaFlush(50, 2000, true));
+        // Il file può essere aggiornato anche da altri processi
+        try
+        {
+            archivio.osservaModificheEsterne();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Impossibile osservare le modifiche di dati.csv: " + e.getMessage());
+        }
         // Crea la UI basata su Swing
         this.ui = new LibreriaUISwing();
         // Inietta l’archivio nella UI
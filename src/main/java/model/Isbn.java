@@ -0,0 +1,179 @@
+package model;
+
+import java.util.Objects;
+
+/**
+ * Validazione e conversione dei codici ISBN con una semplice scansione dei
+ * caratteri, senza espressioni regolari né allocazioni per i controlli.
+ * <p>
+ * {@link #haStrutturaValida(CharSequence)} verifica soltanto il numero di
+ * cifre ed è il controllo usato da {@link Libro};
+ * {@link #isValido(CharSequence)} verifica anche la cifra di controllo
+ * (modulo 11 per l'ISBN-10, pesi 1 e 3 modulo 10 per l'ISBN-13) ed è usato
+ * per i dati importati dall'esterno.
+ */
+public final class Isbn
+{
+    private static final String PREFISSO_978 = "978";
+
+    private Isbn()
+    {
+    }
+
+    /**
+     * @return {@code true} se il codice è composto da 10 o 13 cifre,
+     *         senza verificare la cifra di controllo
+     */
+    public static boolean haStrutturaValida(CharSequence isbn)
+    {
+        if (isbn == null) return false;
+        int n = isbn.length();
+        if (n != 10 && n != 13) return false;
+        for (int i = 0; i < n; i++)
+        {
+            if (cifra(isbn.charAt(i)) < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code true} se il codice è un ISBN-10 (con l'ultima cifra
+     *         eventualmente X) o un ISBN-13 con cifra di controllo corretta;
+     *         trattini e spazi vanno prima rimossi con {@link #normalizza(String)}
+     */
+    public static boolean isValido(CharSequence isbn)
+    {
+        if (isbn == null) return false;
+        switch (isbn.length())
+        {
+            case 10:
+                return sommaIsbn10(isbn) % 11 == 0;
+            case 13:
+                int somma = sommaIsbn13(isbn);
+                return somma >= 0 && somma % 10 == 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Rimuove trattini e spazi e porta in maiuscolo una X finale.
+     * Se il codice è già in forma compatta viene restituita la stessa stringa.
+     */
+    public static String normalizza(String isbn)
+    {
+        Objects.requireNonNull(isbn, "ISBN non può essere null");
+        int i = 0;
+        while (i < isbn.length() && !daScartare(isbn.charAt(i)) && isbn.charAt(i) != 'x') i++;
+        if (i == isbn.length()) return isbn;
+
+        StringBuilder sb = new StringBuilder(isbn.length());
+        sb.append(isbn, 0, i);
+        for (; i < isbn.length(); i++)
+        {
+            char c = isbn.charAt(i);
+            if (!daScartare(c)) sb.append(c == 'x' ? 'X' : c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return la forma a 13 cifre di un ISBN valido; un ISBN-13 viene restituito invariato
+     * @throws IllegalArgumentException se il codice non è un ISBN valido
+     */
+    public static String aIsbn13(String isbn)
+    {
+        if (!isValido(isbn)) throw new IllegalArgumentException("ISBN non valido: " + isbn);
+        if (isbn.length() == 13) return isbn;
+
+        char[] c = new char[13];
+        PREFISSO_978.getChars(0, 3, c, 0);
+        isbn.getChars(0, 9, c, 3);
+        int somma = 0;
+        for (int i = 0; i < 12; i++)
+            somma += (i % 2 == 0) ? c[i] - '0' : 3 * (c[i] - '0');
+        c[12] = (char) ('0' + (10 - somma % 10) % 10);
+        return new String(c);
+    }
+
+    /**
+     * @return la forma a 10 cifre di un ISBN valido; un ISBN-10 viene restituito invariato
+     * @throws IllegalArgumentException se il codice non è un ISBN valido o,
+     *                                  a 13 cifre, non ha il prefisso 978
+     */
+    public static String aIsbn10(String isbn)
+    {
+        if (!isValido(isbn)) throw new IllegalArgumentException("ISBN non valido: " + isbn);
+        if (isbn.length() == 10) return isbn;
+        if (!isbn.startsWith(PREFISSO_978))
+            throw new IllegalArgumentException("ISBN senza forma a 10 cifre: " + isbn);
+
+        char[] c = new char[10];
+        isbn.getChars(3, 12, c, 0);
+        int somma = 0;
+        for (int i = 0; i < 9; i++)
+            somma += (c[i] - '0') * (10 - i);
+        int controllo = (11 - somma % 11) % 11;
+        c[9] = controllo == 10 ? 'X' : (char) ('0' + controllo);
+        return new String(c);
+    }
+
+    /**
+     * @return lo stesso ISBN nell'altra forma (13 cifre per un ISBN-10, 10 per
+     *         un ISBN-13 con prefisso 978), {@code null} se il codice non è
+     *         valido o non ha un'altra forma
+     */
+    public static String altraForma(String isbn)
+    {
+        if (!isValido(isbn)) return null;
+        if (isbn.length() == 10) return aIsbn13(isbn);
+        return isbn.startsWith(PREFISSO_978) ? aIsbn10(isbn) : null;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                           HELPER PRIVATI                            */
+    /* ------------------------------------------------------------------ */
+
+    private static int cifra(char c)
+    {
+        return c >= '0' && c <= '9' ? c - '0' : -1;
+    }
+
+    private static boolean daScartare(char c)
+    {
+        return c == '-' || c == ' ';
+    }
+
+    /**
+     * @return la somma pesata 10..1 delle cifre (X vale 10 solo in ultima
+     *         posizione), -1 se il codice contiene altri caratteri
+     */
+    private static int sommaIsbn10(CharSequence isbn)
+    {
+        int somma = 0;
+        for (int i = 0; i < 10; i++)
+        {
+            char c = isbn.charAt(i);
+            int cifra = i == 9 && (c == 'X' || c == 'x') ? 10 : cifra(c);
+            if (cifra < 0) return -1;
+            somma += cifra * (10 - i);
+        }
+        return somma;
+    }
+
+    /**
+     * @return la somma delle 13 cifre con pesi alternati 1 e 3,
+     *         -1 se il codice contiene altri caratteri
+     */
+    private static int sommaIsbn13(CharSequence isbn)
+    {
+        int somma = 0;
+        for (int i = 0; i < 13; i++)
+        {
+            int cifra = cifra(isbn.charAt(i));
+            if (cifra < 0) return -1;
+            somma += (i % 2 == 0) ? cifra : 3 * cifra;
+        }
+        return somma;
+    }
+}
@@ -1,18 +1,46 @@
 package model;
 
+import java.lang.ref.WeakReference;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.WeakHashMap;
 
+/**
+ * Libro della libreria.
+ * <p>
+ * La rappresentazione è compatta: editori e autori sono condivisi tra tutti
+ * i libri tramite un dizionario, gli autori sono un array ordinato senza
+ * duplicati e l'ISBN è un numero; la stringa dell'ISBN viene ricostruita
+ * quando richiesta. Il dizionario tiene le stringhe con riferimenti deboli,
+ * per cui quelle dei libri eliminati vengono liberate.
+ */
 public class Libro
 {
+    /** Segmenti del dizionario, potenza di 2: più thread possono creare libri insieme */
+    private static final int SEGMENTI = 16;
+    /**
+     * Editori e autori già incontrati, in maiuscolo: libri dello stesso
+     * editore o autore condividono la stessa stringa. Chiavi e valori sono
+     * deboli, per cui una stringa resta solo finché un libro la usa.
+     */
+    private static final List<Map<String, WeakReference<String>>> DIZIONARIO = creaDizionario();
+
     /**
      * Campi obbligatori
      */
     private final String titolo;
-    private final Set<String> autori;
+    /** Ordinati e senza duplicati, come in un TreeSet */
+    private final String[] autori;
     private final String editore;
-    private final String isbn;
+    /** Valore numerico moltiplicato per 16 più il numero di cifre, per conservare gli zeri iniziali */
+    private final long isbn;
     private final Genere genere;
 
     /**
@@ -26,14 +54,14 @@ public class Libro
      */
     public Libro(String titolo, Set<String> autori, String editore, String isbn, String genere)
     {
-        if (! isbn.matches("\\d{10}|\\d{13}")  || isbn==null)
+        if (!Isbn.haStrutturaValida(isbn))
         {
             throw new IllegalArgumentException("ISBN non valido: deve avere 10 o 13 cifre numeriche");
         }
 
         this.titolo = Objects.requireNonNull(titolo, "Titolo non può essere null").toUpperCase();
-        this.editore = Objects.requireNonNull(editore, "Editore non può essere null").toUpperCase();
-        this.isbn = isbn.toUpperCase();
+        Objects.requireNonNull(editore, "Editore non può essere null");
+        this.isbn = Long.parseLong(isbn) * 16 + isbn.length();
         this.genere = Genere.valueOf(Objects.requireNonNull(genere, "Genere non può essere null"));
 
         // Validazione e normalizzazione autori
@@ -41,12 +69,27 @@ public class Libro
         if (autori.isEmpty()) {
             throw new IllegalArgumentException("Il libro deve avere almeno un autore");
         }
+        for (String autore : autori)
+        {
+            Objects.requireNonNull(autore, "Autore nullo trovato");
+        }
 
-        this.autori = new TreeSet<>();
+        // solo un libro valido aggiunge le sue stringhe al dizionario
+        this.editore = condividi(editore);
+        String[] normalizzati = new String[autori.size()];
+        int n = 0;
         for (String autore : autori)
         {
-            this.autori.add(Objects.requireNonNull(autore, "Autore nullo trovato").toUpperCase());
+            normalizzati[n++] = condividi(autore);
         }
+        Arrays.sort(normalizzati);
+        // due autori possono coincidere solo dopo il passaggio in maiuscolo
+        int distinti = n == 0 ? 0 : 1;
+        for (int i = 1; i < n; i++)
+        {
+            if (!normalizzati[i].equals(normalizzati[distinti - 1])) normalizzati[distinti++] = normalizzati[i];
+        }
+        this.autori = distinti == n ? normalizzati : Arrays.copyOf(normalizzati, distinti);
         this.statoLibro=Stato.NON_LETTO;
         this.valutazione=Valutazione.nonValutato;
     }
@@ -57,9 +100,20 @@ public class Libro
         return titolo;
     }
 
+    /**
+     * @return gli autori in ordine alfabetico, come vista non modificabile (senza copie)
+     */
     public Set<String> getAutori()
     {
-        return new TreeSet<>(autori); // ritorna una copia per evitare modifiche esterne
+        return new Autori(autori);
+    }
+
+    /**
+     * @return il primo autore in ordine alfabetico
+     */
+    public String getPrimoAutore()
+    {
+        return autori[0];
     }
 
     public String getEditore()
@@ -68,6 +122,22 @@ public class Libro
     }
 
     public String getIsbn()
+    {
+        char[] cifre = new char[(int) (isbn & 15)];
+        long valore = isbn >>> 4;
+        for (int i = cifre.length - 1; i >= 0; i--)
+        {
+            cifre[i] = (char) ('0' + valore % 10);
+            valore /= 10;
+        }
+        return new String(cifre);
+    }
+
+    /**
+     * @return l'ISBN come numero moltiplicato per 16 più il numero di cifre,
+     *         senza creare stringhe
+     */
+    public long getChiaveIsbn()
     {
         return isbn;
     }
@@ -105,7 +175,7 @@ public class Libro
                 titolo,
                 String.join(", ", autori),
                 editore,
-                isbn,
+                getIsbn(),
                 valutazione == null ? "non valutato" : valutazione,
                 statoLibro == null ? "non definito" : statoLibro,
                 genere
@@ -122,16 +192,88 @@ public class Libro
         if (this == o) return true;
         if (!(o instanceof Libro)) return false;
         Libro libro = (Libro) o;
-        return isbn.equals(libro.isbn);
+        return isbn == libro.isbn;
     }
 
     @Override
     public int hashCode()
     {
+        return Long.hashCode(isbn);
+    }
+
+    private static List<Map<String, WeakReference<String>>> creaDizionario()
+    {
+        List<Map<String, WeakReference<String>>> segmenti = new ArrayList<>(SEGMENTI);
+        for (int i = 0; i < SEGMENTI; i++)
+        {
+            segmenti.add(new WeakHashMap<>());
+        }
+        return List.copyOf(segmenti);
+    }
 
-        return Objects.hash(isbn);
+    private static String condividi(String s)
+    {
+        String maiuscolo = s.toUpperCase();
+        int h = maiuscolo.hashCode();
+        Map<String, WeakReference<String>> segmento = DIZIONARIO.get((h ^ (h >>> 16)) & (SEGMENTI - 1));
+        synchronized (segmento)
+        {
+            WeakReference<String> riferimento = segmento.get(maiuscolo);
+            String esistente = riferimento == null ? null : riferimento.get();
+            if (esistente != null)
+            {
+                return esistente;
+            }
+            segmento.put(maiuscolo, new WeakReference<>(maiuscolo));
+            return maiuscolo;
+        }
     }
 
+    /**
+     * Vista non modificabile sull'array ordinato degli autori.
+     */
+    private static final class Autori extends AbstractSet<String>
+    {
+        private final String[] autori;
+
+        Autori(String[] autori)
+        {
+            this.autori = autori;
+        }
+
+        @Override
+        public Iterator<String> iterator()
+        {
+            return new Iterator<>()
+            {
+                private int i;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return i < autori.length;
+                }
+
+                @Override
+                public String next()
+                {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return autori[i++];
+                }
+            };
+        }
+
+        @Override
+        public int size()
+        {
+            return autori.length;
+        }
 
+        @Override
+        public boolean contains(Object o)
+        {
+            return o instanceof String && Arrays.binarySearch(autori, o) >= 0;
+        }
+    }
 
 }
@@ -2,196 +2,1375 @@ package persistenza;
 
 import Strategy.*;
 import model.Genere;
+import model.Isbn;
 import model.Libro;
 import model.Stato;
 import model.Valutazione;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
 
-
-public abstract class AbstractArchivioLibriFile implements ArchivioLibri
+/**
+ * Base comune degli archivi su file.
+ * <p>
+ * Il file contiene uno snapshot completo della libreria, letto e scritto
+ * dalle sottoclassi con {@link #leggiSnapshot(Map)} e
+ * {@link #scriviSnapshot(Collection, OutputStream)}. Le singole modifiche non riscrivono lo
+ * snapshot: vengono accodate a un {@link JournalOperazioni} affiancato al file
+ * (es. <code>dati.csv.journal</code>) che, superata la soglia di compattazione,
+ * viene incorporato nello snapshot in background.
+ * Lo snapshot viene sempre sostituito con {@link ScritturaAtomica}, conservando
+ * le ultime versioni come generazioni numerate (<code>dati.csv.1</code>, ...).
+ * <p>
+ * In modalità classica ogni modifica viene resa subito persistente e l'elenco
+ * letto resta in memoria tra un'operazione e l'altra: viene riletto solo se
+ * il file o il journal non corrispondono più a quanto l'archivio ha letto o
+ * scritto per ultimo (identità, dimensione e data di modifica), cioè se li ha
+ * cambiati un altro processo o un'altra istanza. Fornendo una {@link PoliticaFlush}
+ * l'archivio passa in modalità residente: il file viene letto una sola volta,
+ * l'elenco in memoria è quello autorevole, le letture non accedono al disco e
+ * i libri modificati vengono annotati e scritti secondo la politica scelta
+ * (ogni N modifiche, ogni T millisecondi, alla chiusura) o con {@link #flush()}.
+ * <p>
+ * L'archivio può essere usato da più thread (interfaccia, salvataggio periodico,
+ * sincronizzazioni): un {@link StampedLock} serializza le modifiche e lascia
+ * procedere in parallelo le letture. In modalità classica una lettura passa
+ * al lock in scrittura solo se deve rileggere il file cambiato.
+ */
+public abstract class AbstractArchivioLibriFile implements ArchivioLibri, Closeable
 {
-    protected List<Libro>libri = new ArrayList<Libro>();
-    protected OrdinamentoStrategy ordinamentoAutore=new OrdinamentoPerAutore();
-    protected OrdinamentoStrategy ordinamentoTitolo =new OrdinamentoPerTitolo();
+    /**
+     * Versione corrente dell'elenco. È immutabile: le modifiche, con il lock
+     * in scrittura, pubblicano una nuova versione che condivide con la
+     * precedente le parti non toccate, e i lettori la usano senza copie.
+     */
+    protected volatile ElencoLibri libri = ElencoLibri.vuoto();
     protected FiltroStrategy filtroGenere=new FiltraPerGenere();
     protected FiltroStrategy filtroStato=new FiltraPerStato();
+    /** Indici per ISBN, genere, stato e valutazione sui libri di {@link #libri} */
+    protected final IndiceLibri indice = new IndiceLibri();
+    /**
+     * Protegge {@link #libri} e {@link #indice}: le modifiche lo acquisiscono
+     * in scrittura, le letture in lettura condivisa.
+     * Non è rientrante, per cui i metodi pubblici non si richiamano tra loro.
+     */
+    protected final StampedLock lock = new StampedLock();
+    private final AtomicInteger scrittoriInAttesa = new AtomicInteger();
+
+    /** Soglia di compattazione di default del journal */
+    protected static final int SOGLIA_COMPATTAZIONE = 1000;
+
+    /** Versioni precedenti dello snapshot conservate di default */
+    protected static final int GENERAZIONI = 3;
+
+    /** Libri cambiati oltre i quali {@link #aggiornaDaFile()} notifica un unico ricaricamento */
+    static final int SOGLIA_EVENTI_SINGOLI = 20;
+
+    /** Estensione del journal affiancato al file dei dati */
+    static final String ESTENSIONE_JOURNAL = ".journal";
+
+    /** Percorso del file dei dati */
+    protected final Path filePath;
+    private final JournalOperazioni journal;
+    private final int sogliaCompattazione;
+    private volatile int generazioni = GENERAZIONI;
+
+    /** Serializza caricamento, salvataggio, journal e compattazione sul file */
+    private final Object lockFile = new Object();
+    private final ExecutorService compattatore = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "compattazione-journal");
+        t.setDaemon(true);
+        return t;
+    });
+    private boolean compattazionePianificata;
+    /**
+     * Firma di snapshot e journal dopo l'ultima lettura o scrittura di questa
+     * istanza. Una scrittura la aggiorna solo se prima i file corrispondevano
+     * ancora a questa firma: altrimenti resta diversa finché le modifiche
+     * esterne non vengono lette, invece di coprirle.
+     */
+    private volatile FirmaFile firmaNota;
+
+    /** Politica della modalità residente, {@code null} in modalità classica */
+    private final PoliticaFlush politicaFlush;
+    private boolean caricato;
+    /** Ultima operazione non ancora salvata per ciascun ISBN modificato */
+    private final Map<String, Operazione> modifichePendenti = new LinkedHashMap<>();
+
+    private final AscoltatoriArchivio ascoltatori = new AscoltatoriArchivio();
+    /** Eventi delle modifiche in corso, notificati al rilascio del lock in scrittura */
+    private final List<EventoArchivio> daNotificare = new ArrayList<>();
+    /**
+     * Salvataggi automatici della politica, avviati alla prima modifica
+     * pendente e non nel costruttore, dove l'archivio non è ancora completo
+     */
+    private ScheduledExecutorService flushPeriodico;
+    private Thread flushAllaChiusura;
+    private boolean salvataggiAvviati;
 
+    /**
+     * @param filePath            percorso del file dei dati
+     * @param sogliaCompattazione numero di operazioni nel journal oltre il quale
+     *                            viene pianificata la compattazione nello snapshot
+     * @param politicaFlush       politica della modalità residente,
+     *                            {@code null} per la modalità classica
+     */
+    protected AbstractArchivioLibriFile(Path filePath, int sogliaCompattazione, PoliticaFlush politicaFlush)
+    {
+        if (sogliaCompattazione < 1)
+            throw new IllegalArgumentException("Soglia di compattazione non valida: " + sogliaCompattazione);
+        this.filePath = Objects.requireNonNull(filePath, "Percorso non può essere null");
+        this.journal = new JournalOperazioni(Paths.get(filePath + ESTENSIONE_JOURNAL));
+        this.sogliaCompattazione = sogliaCompattazione;
+        this.politicaFlush = politicaFlush;
+    }
 
+    /**
+     * Avvia il salvataggio periodico e quello alla chiusura della JVM previsti
+     * dalla politica, una sola volta e non dopo {@link #close()}.
+     * Va chiamato con il lock in scrittura.
+     */
+    private void avviaSalvataggiAutomatici()
+    {
+        if (salvataggiAvviati) return;
+        salvataggiAvviati = true;
+        if (politicaFlush.getOgniMillisecondi() > 0)
+        {
+            flushPeriodico = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "flush-archivio");
+                t.setDaemon(true);
+                return t;
+            });
+            long periodo = politicaFlush.getOgniMillisecondi();
+            flushPeriodico.scheduleWithFixedDelay(this::flushSilenzioso, periodo, periodo, TimeUnit.MILLISECONDS);
+        }
+        if (politicaFlush.isAllaChiusura())
+        {
+            flushAllaChiusura = new Thread(this::flushSilenzioso, "flush-archivio-chiusura");
+            Runtime.getRuntime().addShutdownHook(flushAllaChiusura);
+        }
+    }
 
+    /**
+     * @return {@code true} se l'archivio è in modalità residente
+     */
+    public boolean isResidente()
+    {
+        return politicaFlush != null;
+    }
 
     @Override
     public void aggiungiLibro(String titolo, String autoreSingolo, String editore, String isbn, String genere) throws IOException
     {
-        caricaLibri();
-        // Converti autoreSingolo in Set<String>
-        Set<String> autori = new TreeSet<>();
-        for (String a : autoreSingolo.split(","))
+        long stamp = bloccaPerScrittura();
+        try
         {
-            autori.add(a.trim());
+            sincronizza();
+            // Converti autoreSingolo in Set<String>
+            Set<String> autori = new TreeSet<>();
+            for (String a : autoreSingolo.split(","))
+            {
+                autori.add(a.trim());
+            }
+            Libro libro = new Libro(titolo, autori, editore, isbn, genere);
+            if (giaPresente(libro.getIsbn()))
+            {
+                throw new LibroGiaPresenteException(libro.getIsbn());
+            }
+            libri = libri.conAggiunto(libro);
+            indice.aggiungi(libro);
+            notificaDopo(EventoArchivio.aggiunto(libro, libri.size() - 1));
+            registra(Operazione.salva(libro));
         }
-        Libro libro = new Libro(titolo, autori, editore, isbn, genere);
-        if (libri.contains(libro))
+        finally
         {
-            throw new LibroGiaPresenteException(libro.getIsbn());
+            sbloccaENotifica(stamp);
         }
-        libri.add(libro);
-        salvaLibri();
     }
 
     public boolean rimuoviLibro(String isbn) throws IOException
     {
-        caricaLibri();
-        Iterator<Libro> it = libri.iterator();
-        while (it.hasNext())
+        long stamp = bloccaPerScrittura();
+        try
         {
-            if (it.next().getIsbn().equals(isbn))
+            sincronizza();
+            int posizione = indice.posizione(isbn);
+            Libro libro = indice.rimuovi(isbn);
+            if (libro == null)
             {
-                it.remove();
-                salvaLibri();
-                return true;
+                return false;
             }
+            libri = libri.senza(posizione);
+            notificaDopo(EventoArchivio.rimosso(libro, posizione));
+            registra(Operazione.rimuovi(isbn));
+            return true;
+        }
+        finally
+        {
+            sbloccaENotifica(stamp);
         }
-        salvaLibri();
-        return false;
     }
 
     @Override
     public void modificaValutazione(String isbn, String valutazione) throws IOException
     {
-        caricaLibri();
-        for(Libro l: libri)
+        long stamp = bloccaPerScrittura();
+        try
+        {
+            sincronizza();
+            Libro l = indice.cerca(isbn);
+            if (l != null)
+            {
+                Libro modificato = copia(l);
+                modificato.setValutazione(valutazioneDa(valutazione));
+                sostituisci(l, modificato, EventoArchivio.Tipo.VALUTAZIONE_MODIFICATA);
+            }
+        }
+        finally
+        {
+            sbloccaENotifica(stamp);
+        }
+    }
+
+    @Override
+    public void svuota() throws IOException
+    {
+        long stamp = bloccaPerScrittura();
+        try
+        {
+            sincronizza();
+            libri = ElencoLibri.vuoto();
+            indice.svuota();
+            notificaDopo(EventoArchivio.ricaricato());
+            salvaTutto();
+        }
+        finally
+        {
+            sbloccaENotifica(stamp);
+        }
+    }
+
+    @Override
+    public void modificaStato(String isbn, String stato) throws IOException
+    {
+        long stamp = bloccaPerScrittura();
+        try
         {
-            if (l.getIsbn().equals(isbn))
+            sincronizza();
+            Libro l = indice.cerca(isbn);
+            if (l != null)
             {
-                switch (valutazione.trim().toLowerCase())
+                Libro modificato = copia(l);
+                modificato.setStatoLibro(statoDa(stato));
+                sostituisci(l, modificato, EventoArchivio.Tipo.STATO_MODIFICATO);
+            }
+        }
+        finally
+        {
+            sbloccaENotifica(stamp);
+        }
+    }
+
+    @Override
+    public EsitoBatch applicaModifiche(List<RichiestaModifica> modifiche) throws IOException
+    {
+        Objects.requireNonNull(modifiche, "Lotto non può essere null");
+        EsitoBatch esito = new EsitoBatch();
+        long stamp = bloccaPerScrittura();
+        try
+        {
+            sincronizza();
+            List<Operazione> operazioni = new ArrayList<>();
+            Set<String> inCoda = new LinkedHashSet<>();
+            for (int i = 0; i < modifiche.size(); i++)
+            {
+                RichiestaModifica richiesta = modifiche.get(i);
+                try
+                {
+                    operazioni.add(applica(richiesta, inCoda));
+                    esito.applicata();
+                }
+                catch (RuntimeException e)
                 {
-                    case "1", "uno" -> l.setValutazione(Valutazione.uno);
-                    case "2", "due" -> l.setValutazione(Valutazione.due);
-                    case "3", "tre" -> l.setValutazione(Valutazione.tre);
-                    case "4", "quattro" -> l.setValutazione(Valutazione.quattro);
-                    case "5", "cinque" -> l.setValutazione(Valutazione.cinque);
-                    case "Non valutato " -> l.setValutazione(Valutazione.nonValutato);
-                    default -> l.setValutazione(Valutazione.nonValutato);
+                    esito.scartata(i, richiesta, e);
                 }
-                ;
             }
+            if (!operazioni.isEmpty())
+            {
+                libri = ricomponi(inCoda);
+                notificaDopo(EventoArchivio.ricaricato());
+                registra(operazioni);
+            }
+            return esito;
+        }
+        finally
+        {
+            sbloccaENotifica(stamp);
         }
-        salvaLibri();
+    }
 
+    /**
+     * Applica una richiesta del lotto all'indice, che resta l'unico riferimento
+     * aggiornato fino a {@link #ricomponi(Set)}.
+     *
+     * @param inCoda ISBN aggiunti nel lotto, nell'ordine in cui vanno in coda all'elenco
+     * @return l'operazione da rendere persistente
+     * @throws RuntimeException se la richiesta non è valida
+     */
+    private Operazione applica(RichiestaModifica richiesta, Set<String> inCoda)
+    {
+        Objects.requireNonNull(richiesta, "Richiesta nulla trovata");
+        String isbn = richiesta.getIsbn();
+        switch (richiesta.getTipo())
+        {
+            case AGGIUNGI:
+            {
+                Libro libro = richiesta.creaLibro();
+                if (giaPresente(libro.getIsbn()))
+                {
+                    throw new LibroGiaPresenteException(libro.getIsbn());
+                }
+                indice.aggiungi(libro);
+                inCoda.remove(libro.getIsbn());
+                inCoda.add(libro.getIsbn());
+                return Operazione.salva(libro);
+            }
+            case RIMUOVI:
+            {
+                if (indice.rimuovi(isbn) == null)
+                {
+                    throw new LibroNonPresente(isbn);
+                }
+                return Operazione.rimuovi(isbn);
+            }
+            default:
+            {
+                Libro l = indice.cerca(isbn);
+                if (l == null)
+                {
+                    throw new LibroNonPresente(isbn);
+                }
+                Libro modificato = copia(l);
+                if (richiesta.getTipo() == RichiestaModifica.Tipo.STATO)
+                    modificato.setStatoLibro(statoDa(richiesta.getValore()));
+                else
+                    modificato.setValutazione(valutazioneDa(richiesta.getValore()));
+                indice.aggiorna(modificato);
+                return Operazione.salva(modificato);
+            }
+        }
     }
 
-    @Override
-    public void svuota() throws IOException
+    /**
+     * @return {@code true} se l'ISBN è già presente, anche nell'altra forma
+     *         (ISBN-10 o ISBN-13) dello stesso codice
+     */
+    private boolean giaPresente(String isbn)
+    {
+        if (indice.contiene(isbn)) return true;
+        String altra = Isbn.altraForma(isbn);
+        return altra != null && indice.contiene(altra);
+    }
+
+    /**
+     * Ricostruisce l'elenco dopo un lotto con un solo passaggio: ogni libro
+     * prende la versione presente nell'indice, i rimossi spariscono e quelli
+     * aggiunti nel lotto vanno in coda, come nell'indice.
+     */
+    private ElencoLibri ricomponi(Set<String> inCoda)
     {
-        caricaLibri();
-        libri.clear();
-        salvaLibri();
+        List<Libro> nuovi = new ArrayList<>(libri.size() + inCoda.size());
+        for (Libro l : libri)
+        {
+            if (inCoda.contains(l.getIsbn())) continue;
+            Libro corrente = indice.cerca(l.getIsbn());
+            if (corrente != null) nuovi.add(corrente);
+        }
+        for (String isbn : inCoda)
+        {
+            Libro corrente = indice.cerca(isbn);
+            if (corrente != null) nuovi.add(corrente);
+        }
+        return ElencoLibri.di(nuovi);
+    }
 
+    /**
+     * I libri già pubblicati non vengono modificati, perché fanno parte delle
+     * versioni dell'elenco in mano ai lettori: al loro posto va una copia.
+     */
+    static Libro copia(Libro l)
+    {
+        Libro copia = new Libro(l.getTitolo(), l.getAutori(), l.getEditore(), l.getIsbn(), l.getGenere().name());
+        copia.setValutazione(l.getValutazione());
+        copia.setStatoLibro(l.getStatoLibro());
+        return copia;
+    }
+
+    private void sostituisci(Libro vecchio, Libro nuovo, EventoArchivio.Tipo modifica) throws IOException
+    {
+        int posizione = indice.posizione(vecchio.getIsbn());
+        libri = libri.conSostituito(posizione, nuovo);
+        indice.aggiorna(nuovo);
+        notificaDopo(modifica == EventoArchivio.Tipo.STATO_MODIFICATO
+                ? EventoArchivio.statoModificato(nuovo, posizione)
+                : EventoArchivio.valutazioneModificata(nuovo, posizione));
+        registra(Operazione.salva(nuovo));
+    }
+
+    /**
+     * Interpreta la valutazione indicata dall'utente ("4", "quattro", ...);
+     * i valori non riconosciuti valgono {@link Valutazione#nonValutato}.
+     */
+    static Valutazione valutazioneDa(String valutazione)
+    {
+        return switch (valutazione.trim().toLowerCase())
+        {
+            case "1", "uno" -> Valutazione.uno;
+            case "2", "due" -> Valutazione.due;
+            case "3", "tre" -> Valutazione.tre;
+            case "4", "quattro" -> Valutazione.quattro;
+            case "5", "cinque" -> Valutazione.cinque;
+            default -> Valutazione.nonValutato;
+        };
+    }
+
+    /**
+     * Interpreta lo stato indicato dall'utente, come nome dell'enum
+     * ("IN_LETTURA") o in forma leggibile ("in lettura").
+     *
+     * @throws IllegalArgumentException se lo stato non è riconosciuto
+     */
+    static Stato statoDa(String stato)
+    {
+        try {
+            return Stato.valueOf(stato.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return switch (stato.trim().toLowerCase()) {
+                case "letto" -> Stato.LETTO;
+                case "in lettura" -> Stato.IN_LETTURA;
+                case "non letto" -> Stato.NON_LETTO;
+                default -> throw new IllegalArgumentException("Stato non valido: " + stato);
+            };
+        }
     }
 
+    /**
+     * Carica i libri dal file, sostituendo l'elenco in memoria.
+     * In modalità residente le modifiche pendenti vengono prima salvate,
+     * per non perderle con la rilettura.
+     */
     @Override
-    public void modificaStato(String isbn, String stato) throws IOException
+    public void caricaLibri() throws IOException
+    {
+        long stamp = bloccaPerScrittura();
+        try
+        {
+            ricarica();
+            notificaDopo(EventoArchivio.ricaricato());
+        }
+        finally
+        {
+            sbloccaENotifica(stamp);
+        }
+    }
+
+    private void ricarica() throws IOException
+    {
+        salvaPendenti();
+        Collection<Libro> letti = leggiLibri();
+        libri = ElencoLibri.di(letti);
+        indice.ricostruisci(libri);
+        caricato = true;
+    }
+
+    /**
+     * Rilegge il file e applica all'elenco in memoria solo le differenze,
+     * confrontando i libri per ISBN: gli indici vengono aggiornati libro per
+     * libro e agli ascoltatori arriva un evento per ogni libro aggiunto,
+     * rimosso o modificato. Serve quando il file viene modificato da un altro
+     * processo; in modalità residente le modifiche pendenti vengono prima salvate.
+     * Se il file corrisponde ancora all'ultima lettura o scrittura di questo
+     * archivio non viene riletto.
+     * <p>
+     * I libri rimasti conservano il loro ordine e quelli nuovi vanno in coda.
+     * Le posizioni degli eventi sono quelle dell'elenco dopo gli eventi
+     * precedenti, per cui applicarli in ordine produce il nuovo elenco.
+     * Oltre {@link #SOGLIA_EVENTI_SINGOLI} libri cambiati gli ascoltatori
+     * ricevono invece un unico evento di archivio ricaricato.
+     *
+     * @return il numero di libri aggiunti, rimossi o modificati
+     * @throws IOException se il file non è accessibile o è corrotto
+     */
+    public int aggiornaDaFile() throws IOException
+    {
+        long stamp = bloccaPerScrittura();
+        try
+        {
+            if (!caricato)
+            {
+                ricarica();
+                notificaDopo(EventoArchivio.ricaricato());
+                return libri.size();
+            }
+            salvaPendenti();
+            if (!fileCambiato())
+            {
+                return 0;
+            }
+            return applicaDifferenze();
+        }
+        finally
+        {
+            sbloccaENotifica(stamp);
+        }
+    }
+
+    /**
+     * Rilegge il file e applica le differenze come {@link #aggiornaDaFile()}.
+     * Va chiamato con il lock in scrittura, dopo aver salvato le modifiche pendenti.
+     *
+     * @return il numero di libri aggiunti, rimossi o modificati
+     */
+    private int applicaDifferenze() throws IOException
     {
-        caricaLibri();
+        int eventiPrecedenti = daNotificare.size();
+        Map<String, Libro> letti = new LinkedHashMap<>();
+        for (Libro l : leggiLibri())
+        {
+            letti.put(l.getIsbn(), l);
+        }
+
+        List<Libro> nuovi = new ArrayList<>(letti.size());
+        int modifiche = 0;
         for (Libro l : libri)
         {
-            if (l.getIsbn().equals(isbn)) {
-                try {
-                    l.setStatoLibro(Stato.valueOf(stato.trim().toUpperCase()));
-                } catch (IllegalArgumentException e) {
-                    switch (stato.trim().toLowerCase()) {
-                        case "letto" -> l.setStatoLibro(Stato.LETTO);
-                        case "in lettura" -> l.setStatoLibro(Stato.IN_LETTURA);
-                        case "non letto" -> l.setStatoLibro(Stato.NON_LETTO);
-                        default -> throw new IllegalArgumentException("Stato non valido: " + stato);
-                    }
-                }
-                break;
+            Libro letto = letti.remove(l.getIsbn());
+            if (letto == null)
+            {
+                indice.rimuovi(l.getIsbn());
+                notificaDopo(EventoArchivio.rimosso(l, nuovi.size()));
+                modifiche++;
+                continue;
+            }
+            EventoArchivio.Tipo differenza = differenza(l, letto);
+            if (differenza == null)
+            {
+                nuovi.add(l);
+                continue;
+            }
+            indice.aggiorna(letto);
+            notificaDopo(switch (differenza)
+            {
+                case STATO_MODIFICATO -> EventoArchivio.statoModificato(letto, nuovi.size());
+                case VALUTAZIONE_MODIFICATA -> EventoArchivio.valutazioneModificata(letto, nuovi.size());
+                default -> EventoArchivio.modificato(letto, nuovi.size());
+            });
+            nuovi.add(letto);
+            modifiche++;
+        }
+        for (Libro aggiunto : letti.values())
+        {
+            indice.aggiungi(aggiunto);
+            notificaDopo(EventoArchivio.aggiunto(aggiunto, nuovi.size()));
+            nuovi.add(aggiunto);
+            modifiche++;
+        }
+        if (modifiche > 0)
+        {
+            libri = ElencoLibri.di(nuovi);
+        }
+        if (modifiche > SOGLIA_EVENTI_SINGOLI)
+        {
+            daNotificare.subList(eventiPrecedenti, daNotificare.size()).clear();
+            notificaDopo(EventoArchivio.ricaricato());
+        }
+        return modifiche;
+    }
+
+    /**
+     * @return {@code null} se i due libri hanno gli stessi dati, altrimenti il
+     *         tipo di modifica: cambio di stato o di valutazione se è cambiato
+     *         solo quello, {@link EventoArchivio.Tipo#MODIFICATO} negli altri casi
+     */
+    private static EventoArchivio.Tipo differenza(Libro vecchio, Libro nuovo)
+    {
+        boolean stato = vecchio.getStatoLibro() != nuovo.getStatoLibro();
+        boolean valutazione = vecchio.getValutazione() != nuovo.getValutazione();
+        boolean altro = !vecchio.getTitolo().equals(nuovo.getTitolo())
+                || !vecchio.getAutori().equals(nuovo.getAutori())
+                || !Objects.equals(vecchio.getEditore(), nuovo.getEditore())
+                || vecchio.getGenere() != nuovo.getGenere();
+        if (altro || (stato && valutazione)) return EventoArchivio.Tipo.MODIFICATO;
+        if (stato) return EventoArchivio.Tipo.STATO_MODIFICATO;
+        if (valutazione) return EventoArchivio.Tipo.VALUTAZIONE_MODIFICATA;
+        return null;
+    }
+
+    /**
+     * Legge lo snapshot e vi riapplica il journal.
+     *
+     * @return i libri salvati, nell'ordine in cui sono memorizzati
+     */
+    private Collection<Libro> leggiLibri() throws IOException
+    {
+        Map<String, Libro> letti = new LinkedHashMap<>();
+        synchronized (lockFile)
+        {
+            // firma presa prima della lettura: un cambiamento durante la
+            // lettura la rende diversa e provoca una nuova rilettura
+            firmaNota = firmaFile();
+            leggiSnapshot(letti);
+            journal.riapplica(letti);
+        }
+        return letti.values();
+    }
+
+    /**
+     * Legge lo snapshot completo dal file dei dati, creandolo vuoto se non esiste.
+     *
+     * @param letti mappa da riempire con i libri letti, indicizzati per ISBN,
+     *              nell'ordine in cui sono memorizzati
+     * @throws IOException se il file non è accessibile
+     */
+    protected abstract void leggiSnapshot(Map<String, Libro> letti) throws IOException;
+
+    /**
+     * Scrive lo snapshot completo dei libri indicati sullo stream.
+     * La sostituzione atomica del file è a carico della classe base.
+     *
+     * @param daScrivere i libri da salvare, nell'ordine di memorizzazione
+     * @param out        stream del file temporaneo; può essere chiuso
+     * @throws IOException se la scrittura non va a buon fine
+     */
+    protected abstract void scriviSnapshot(Collection<Libro> daScrivere, OutputStream out) throws IOException;
+
+    /**
+     * Sostituisce atomicamente lo snapshot e svuota il journal.
+     * In caso di errore il file precedente resta intatto. Le modifiche fatte
+     * al file da altri e non ancora lette vengono prima unite all'elenco in
+     * memoria, come con {@link #aggiornaDaFile()}, invece di essere sovrascritte.
+     */
+    @Override
+    public void salvaLibri() throws IOException
+    {
+        long stamp = bloccaPerScrittura();
+        try
+        {
+            if (caricato && fileCambiato())
+            {
+                // le modifiche esterne non ancora lette vanno unite, non sovrascritte
+                salvaPendenti();
+                applicaDifferenze();
+            }
+            salvaTutto();
+        }
+        finally
+        {
+            sbloccaENotifica(stamp);
+        }
+    }
+
+    private void salvaSnapshot(Collection<Libro> daScrivere) throws IOException
+    {
+        ScritturaAtomica.scrivi(filePath, generazioni, out -> scriviSnapshot(daScrivere, out));
+    }
+
+    /**
+     * @return la firma attuale di snapshot e journal
+     */
+    private FirmaFile firmaFile() throws IOException
+    {
+        return FirmaFile.di(filePath, journal.getPercorso());
+    }
+
+    /**
+     * @return {@code true} se snapshot o journal sono cambiati dall'ultima
+     *         lettura o scrittura di questa istanza
+     */
+    boolean fileCambiato() throws IOException
+    {
+        return !firmaFile().equals(firmaNota);
+    }
+
+    /**
+     * Registra la firma dopo una scrittura di questa istanza, se prima della
+     * scrittura i file non erano stati cambiati da altri. Va chiamato con
+     * {@link #lockFile}.
+     *
+     * @param allineati esito di {@link #fileCambiato()}, negato, prima della scrittura
+     */
+    private void registraFirma(boolean allineati) throws IOException
+    {
+        if (allineati)
+        {
+            firmaNota = firmaFile();
+        }
+    }
+
+    /**
+     * @param generazioni numero di versioni precedenti dello snapshot da
+     *                    conservare accanto al file, 0 per nessuna
+     */
+    public void setGenerazioni(int generazioni)
+    {
+        if (generazioni < 0)
+            throw new IllegalArgumentException("Numero di generazioni non valido: " + generazioni);
+        this.generazioni = generazioni;
+    }
+
+    /**
+     * Allinea l'elenco in memoria al file prima di un'operazione:
+     * la prima volta lo legge, poi in modalità classica lo rilegge solo se
+     * il file è cambiato, in modalità residente mai. Va chiamato con il
+     * lock in scrittura.
+     */
+    protected void sincronizza() throws IOException
+    {
+        if (!caricato || (politicaFlush == null && fileCambiato()))
+        {
+            ricarica();
+        }
+    }
+
+    /**
+     * Accoda un evento da notificare al rilascio del lock in scrittura,
+     * se ci sono ascoltatori. Va chiamato con il lock acquisito.
+     */
+    private void notificaDopo(EventoArchivio evento)
+    {
+        if (!ascoltatori.isVuoto()) daNotificare.add(evento);
+    }
+
+    /**
+     * Rilascia il lock in scrittura e notifica gli eventi accodati: gli
+     * ascoltatori vengono chiamati senza lock, per cui possono rileggere
+     * l'archivio.
+     */
+    private void sbloccaENotifica(long stamp)
+    {
+        List<EventoArchivio> eventi = List.of();
+        if (!daNotificare.isEmpty())
+        {
+            eventi = new ArrayList<>(daNotificare);
+            daNotificare.clear();
+        }
+        lock.unlockWrite(stamp);
+        for (EventoArchivio e : eventi)
+        {
+            ascoltatori.notifica(e);
+        }
+    }
+
+    /**
+     * Acquisisce il lock in scrittura, segnalando l'attesa ai nuovi lettori.
+     *
+     * @return lo stamp da rilasciare con {@code lock.unlockWrite(stamp)}
+     */
+    protected long bloccaPerScrittura()
+    {
+        scrittoriInAttesa.incrementAndGet();
+        try
+        {
+            return lock.writeLock();
+        }
+        finally
+        {
+            scrittoriInAttesa.decrementAndGet();
+        }
+    }
+
+    /**
+     * Acquisisce il lock condiviso. {@link StampedLock} concede la lettura
+     * a chiunque finché nessuno scrive, per cui un flusso continuo di lettori
+     * lascerebbe in attesa le modifiche: se uno scrittore aspetta, il lettore
+     * si accoda dietro di lui passando brevemente per il lock in scrittura.
+     */
+    private long bloccaCondiviso()
+    {
+        if (scrittoriInAttesa.get() > 0)
+        {
+            lock.unlockWrite(lock.writeLock());
+        }
+        return lock.readLock();
+    }
+
+    /**
+     * Acquisisce il lock per un'operazione di sola lettura. Ad archivio
+     * caricato il lock è condiviso e più thread leggono in parallelo la
+     * versione pubblicata; solo se la lettura deve prima caricare il file,
+     * o in modalità classica rileggerlo perché è cambiato, il lock viene
+     * convertito in scrittura.
+     *
+     * @return lo stamp da rilasciare con {@code lock.unlock(stamp)}
+     */
+    protected long bloccaPerLettura() throws IOException
+    {
+        long stamp = bloccaCondiviso();
+        try
+        {
+            if (caricato && (politicaFlush != null || !fileCambiato()))
+            {
+                return stamp;
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            lock.unlockRead(stamp);
+            throw e;
+        }
+        long scrittura = lock.tryConvertToWriteLock(stamp);
+        if (scrittura == 0L)
+        {
+            lock.unlockRead(stamp);
+            scrittura = bloccaPerScrittura();
+        }
+        try
+        {
+            sincronizza();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            lock.unlockWrite(scrittura);
+            throw e;
+        }
+        return scrittura;
+    }
+
+    /**
+     * Registra una modifica già applicata a {@link #libri}: in modalità classica
+     * la rende subito persistente, in modalità residente annota il libro
+     * modificato e salva quando viene raggiunta la soglia della politica.
+     */
+    private void registra(Operazione operazione) throws IOException
+    {
+        registra(List.of(operazione));
+    }
+
+    /**
+     * Registra più modifiche già applicate, con un'unica scrittura
+     * in modalità classica e un solo controllo della politica in
+     * modalità residente.
+     */
+    private void registra(List<Operazione> operazioni) throws IOException
+    {
+        if (politicaFlush == null)
+        {
+            persisti(operazioni);
+            return;
+        }
+        avviaSalvataggiAutomatici();
+        for (Operazione operazione : operazioni)
+        {
+            modifichePendenti.remove(operazione.getIsbn());
+            modifichePendenti.put(operazione.getIsbn(), operazione);
+        }
+        if (politicaFlush.getOgniModifiche() > 0 && modifichePendenti.size() >= politicaFlush.getOgniModifiche())
+        {
+            salvaPendenti();
+        }
+    }
+
+    /**
+     * Rende persistenti le modifiche già applicate a {@link #libri},
+     * accodandole al journal invece di riscrivere l'intero snapshot.
+     *
+     * @param operazioni le modifiche da rendere persistenti, in ordine
+     * @throws IOException se si verifica un errore di I/O durante la scrittura
+     */
+    protected void persisti(List<Operazione> operazioni) throws IOException
+    {
+        synchronized (lockFile)
+        {
+            boolean allineati = !fileCambiato();
+            journal.accoda(operazioni);
+            registraFirma(allineati);
+            // dopo la chiusura la compattazione viene rimandata alla prossima apertura
+            if (journal.dimensione() >= sogliaCompattazione && !compattazionePianificata
+                    && !compattatore.isShutdown())
+            {
+                compattazionePianificata = true;
+                compattatore.execute(this::compattaInBackground);
             }
         }
-        salvaLibri();
+    }
 
+    /**
+     * Incorpora il journal nello snapshot e lo svuota.
+     * Lavora sui file e non sull'elenco in memoria, per cui può essere
+     * eseguita da un thread diverso da quello che modifica l'archivio.
+     *
+     * @throws IOException se lo snapshot o il journal non sono accessibili
+     */
+    public void compatta() throws IOException
+    {
+        synchronized (lockFile)
+        {
+            boolean allineati = !fileCambiato();
+            Map<String, Libro> correnti = new LinkedHashMap<>();
+            leggiSnapshot(correnti);
+            journal.riapplica(correnti);
+            salvaSnapshot(correnti.values());
+            journal.svuota();
+            registraFirma(allineati);
+        }
     }
+
+    private void compattaInBackground()
+    {
+        try
+        {
+            compatta();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Errore durante la compattazione del journal: " + e.getMessage());
+        }
+        finally
+        {
+            synchronized (lockFile)
+            {
+                compattazionePianificata = false;
+            }
+        }
+    }
+
+    /**
+     * Sostituisce l'intero contenuto dell'archivio con i libri indicati
+     * e lo riscrive subito nello snapshot.
+     *
+     * @param nuovi i libri che compongono il nuovo archivio
+     */
+    protected void sostituisciLibri(Collection<Libro> nuovi) throws IOException
+    {
+        long stamp = bloccaPerScrittura();
+        try
+        {
+            libri = ElencoLibri.di(nuovi);
+            indice.ricostruisci(libri);
+            caricato = true;
+            notificaDopo(EventoArchivio.ricaricato());
+            salvaTutto();
+        }
+        finally
+        {
+            sbloccaENotifica(stamp);
+        }
+    }
+
+    /**
+     * Riscrive l'intero archivio; le modifiche pendenti sono già incluse.
+     */
+    private void salvaTutto() throws IOException
+    {
+        modifichePendenti.clear();
+        synchronized (lockFile)
+        {
+            boolean allineati = !fileCambiato();
+            salvaSnapshot(libri);
+            journal.svuota();
+            registraFirma(allineati);
+        }
+    }
+
+    /**
+     * Salva le modifiche pendenti della modalità residente.
+     * Non ha effetto se non ci sono modifiche da salvare.
+     *
+     * @throws IOException se si verifica un errore di I/O durante la scrittura
+     */
+    public void flush() throws IOException
+    {
+        long stamp = bloccaPerScrittura();
+        try
+        {
+            salvaPendenti();
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void salvaPendenti() throws IOException
+    {
+        if (modifichePendenti.isEmpty())
+        {
+            return;
+        }
+        persisti(new ArrayList<>(modifichePendenti.values()));
+        modifichePendenti.clear();
+    }
+
+    /**
+     * Lettura ottimistica: non blocca né viene bloccata dagli altri lettori
+     * e ripiega sul lock condiviso solo se nel frattempo c'è stata una scrittura.
+     *
+     * @return numero di libri modificati non ancora salvati
+     */
+    public int getModifichePendenti()
+    {
+        long stamp = lock.tryOptimisticRead();
+        int pendenti = modifichePendenti.size();
+        if (!lock.validate(stamp))
+        {
+            stamp = bloccaCondiviso();
+            try
+            {
+                pendenti = modifichePendenti.size();
+            }
+            finally
+            {
+                lock.unlockRead(stamp);
+            }
+        }
+        return pendenti;
+    }
+
+    private void flushSilenzioso()
+    {
+        try
+        {
+            flush();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Errore durante il salvataggio delle modifiche: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Arresta il salvataggio periodico, salva le modifiche pendenti e
+     * attende la fine della compattazione in corso, arrestandone il thread.
+     * Le modifiche successive restano possibili ma vengono salvate solo
+     * con {@link #flush()} e il journal non viene più compattato.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        ScheduledExecutorService periodico;
+        Thread allaChiusura;
+        long stamp = bloccaPerScrittura();
+        try
+        {
+            salvataggiAvviati = true;
+            periodico = flushPeriodico;
+            allaChiusura = flushAllaChiusura;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+        // fuori dal lock: un salvataggio periodico in corso deve poterlo acquisire
+        if (periodico != null)
+        {
+            periodico.close();
+        }
+        if (allaChiusura != null)
+        {
+            try
+            {
+                Runtime.getRuntime().removeShutdownHook(allaChiusura);
+            }
+            catch (IllegalStateException e)
+            {
+                // JVM già in fase di spegnimento: l'hook salverà comunque
+            }
+        }
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            synchronized (lockFile)
+            {
+                compattatore.shutdown();
+            }
+            compattatore.close();
+        }
+    }
+
+    @Override
+    public void aggiungiAscoltatore(AscoltatoreArchivio ascoltatore)
+    {
+        ascoltatori.aggiungi(ascoltatore);
+    }
+
+    @Override
+    public void rimuoviAscoltatore(AscoltatoreArchivio ascoltatore)
+    {
+        ascoltatori.rimuovi(ascoltatore);
+    }
+
+    /**
+     * Restituisce la versione corrente dell'elenco, senza lock né copie:
+     * è immutabile e resta coerente anche se l'archivio cambia nel frattempo.
+     */
     @Override
     public List<Libro> getLibri()
     {
-        return new ArrayList<>(libri);
+        return libri;
     }
 
     @Override
-    public List<Libro> cerca(String titolo) throws IOException
+    public Stream<Libro> scorriLibri() throws IOException
     {
-        caricaLibri();
-        String normTitolo = normalize(titolo);
-        return libri.stream()
-                .filter(l -> normalize(l.getTitolo()).equals(normTitolo))
-                .collect(Collectors.toList());
+        return versioneCorrente().stream();
     }
 
     /**
-     * Rimuove spazi iniziali/finali, sostituisce più spazi con uno solo
-     * e mette tutto in minuscolo.
+     * La versione viene presa sotto lock e scritta senza: le modifiche
+     * concorrenti non attendono la fine dell'esportazione.
      */
-    private String normalize(String s) {
-        if (s == null) return "";
-        return s.trim()               // toglie spazi estremi
-                .replaceAll("\\s+", " ") // collassa spazi ripetuti
-                .toLowerCase();          // minuscolo
+    @Override
+    public void esporta(FormatoEsportazione formato, OutputStream out) throws IOException
+    {
+        Objects.requireNonNull(formato, "Formato non può essere null");
+        formato.scrivi(versioneCorrente(), out);
     }
 
+    /**
+     * @return la versione corrente dell'elenco, dopo aver caricato
+     *         l'archivio se necessario
+     */
+    protected final ElencoLibri versioneCorrente() throws IOException
+    {
+        long stamp = bloccaPerLettura();
+        try
+        {
+            return libri;
+        }
+        finally
+        {
+            lock.unlock(stamp);
+        }
+    }
 
-    public List<Libro> filtraPerGenerePerStato(String genere, String stato) throws IOException
+    @Override
+    public List<Libro> cerca(String titolo) throws IOException
     {
-        caricaLibri();
-        List<Libro>filtraGe=new ArrayList<>(filtroGenere.filtra(libri,genere));
-        List<Libro> filtroSt = new ArrayList<>(filtroStato.filtra(libri,stato));
-        List<Libro> ret = new ArrayList<>();
-        for (Libro l: libri)
-            if (l.getStatoLibro().equals(Stato.valueOf(stato)) &&  l.getGenere().equals(Genere.valueOf(genere))&& (! ret.contains(l))  )
-                ret.add(l);
+        long stamp = bloccaPerLettura();
+        try
+        {
+            return indice.libri(indice.conTitolo(titolo));
+        }
+        finally
+        {
+            lock.unlock(stamp);
+        }
+    }
 
+    @Override
+    public List<Libro> cercaTesto(String testo, CriterioRicerca criterio) throws IOException
+    {
+        Objects.requireNonNull(criterio, "Criterio non può essere null");
+        long stamp = bloccaPerLettura();
+        try
+        {
+            return indice.libri(indice.cercaTesto(testo, criterio));
+        }
+        finally
+        {
+            lock.unlock(stamp);
+        }
+    }
 
-        return ret;
 
+    @Override
+    public List<Libro> suggerisci(String prefisso, int massimo) throws IOException
+    {
+        long stamp = bloccaPerLettura();
+        try
+        {
+            return indice.suggerisci(prefisso, massimo);
+        }
+        finally
+        {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * Libri del genere e nello stato indicati.
+     *
+     * @see #filtra(CriterioFiltro, String, String)
+     */
+    public List<Libro> filtraPerGenerePerStato(String genere, String stato) throws IOException
+    {
+        return filtra(CriterioFiltro.GENERE_E_STATO, genere, stato);
     }
 
     @Override
     public List<Libro> filtra(CriterioFiltro criterio,String parametro) throws IOException {
-        caricaLibri();
-        List<Libro> risultato;
+        if (criterio == CriterioFiltro.GENERE_E_STATO)
+            throw new IllegalArgumentException("Il criterio " + criterio + " richiede due parametri");
+        return filtra(criterio, parametro, null);
+    }
+
+    @Override
+    public List<Libro> filtra(CriterioFiltro criterio, String parametro1, String parametro2) throws IOException
+    {
+        FiltroComposto filtro;
         switch (criterio) {
             case STATO:
-                risultato = filtroStato.filtra(libri, parametro);
+                filtro = FiltroComposto.condizione(filtroStato, parametro1);
                 break;
             case GENERE:
-                risultato = filtroGenere.filtra(libri, parametro);
+                filtro = FiltroComposto.condizione(filtroGenere, parametro1);
+                break;
+            case GENERE_E_STATO:
+                filtro = FiltroComposto.and(
+                        FiltroComposto.condizione(filtroGenere, parametro1),
+                        FiltroComposto.condizione(filtroStato, parametro2));
                 break;
             default:
                 throw new IllegalArgumentException("Criterio di filtro non riconosciuto: " + criterio);
         }
-        return new ArrayList<>(risultato);
+        return filtra(filtro);
     }
 
+    /**
+     * Risolve l'albero di filtri sugli indici: le condizioni su genere, stato e
+     * valutazione diventano intersezioni/unioni di bitset, le altre vengono
+     * verificate soltanto sui libri ancora candidati.
+     */
+    @Override
+    public List<Libro> filtra(FiltroComposto filtro) throws IOException
+    {
+        Objects.requireNonNull(filtro, "Filtro non può essere null");
+        long stamp = bloccaPerLettura();
+        try
+        {
+            return indice.libri(valuta(filtro, null));
+        }
+        finally
+        {
+            lock.unlock(stamp);
+        }
+    }
 
+    /**
+     * Intersezione diretta degli indici secondari, senza costruire un filtro.
+     */
     @Override
-    public List<Libro> ordina(CriterioOrdinamento criterio) throws IOException
+    public List<Libro> filtra(Stato stato, Valutazione valutazione, Genere genere) throws IOException
     {
-        caricaLibri();
-        switch (criterio)
+        long stamp = bloccaPerLettura();
+        try
         {
-            case AUTORE:
-                libri = new ArrayList<>(ordinamentoAutore.ordina(libri));
-                break;
-            case TITOLO:
-                libri = new ArrayList<>(ordinamentoTitolo.ordina(libri));
-                break;
+            return indice.libri(indice.seleziona(genere, stato, valutazione));
+        }
+        finally
+        {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * @param candidati slot tra cui cercare, {@code null} per tutti i libri
+     * @return gli slot, tra i candidati, che soddisfano il nodo
+     */
+    private BitSet valuta(FiltroComposto nodo, BitSet candidati)
+    {
+        switch (nodo.getTipo())
+        {
+            case AND:
+            {
+                // prima le condizioni indicizzate, che restringono i candidati a costo minimo
+                List<FiltroComposto> figli = new ArrayList<>(nodo.getFigli());
+                figli.sort(Comparator.comparing(f -> !indicizzato(f)));
+                BitSet risultato = candidati;
+                for (FiltroComposto f : figli)
+                {
+                    risultato = valuta(f, risultato);
+                    if (risultato.isEmpty()) break;
+                }
+                return risultato;
+            }
+            case OR:
+            {
+                BitSet risultato = new BitSet();
+                for (FiltroComposto f : nodo.getFigli())
+                    risultato.or(valuta(f, candidati));
+                return risultato;
+            }
             default:
-                throw new IllegalArgumentException("Criterio non riconosciuto :  " + criterio);
+            {
+                if (!indicizzato(nodo))
+                    return indice.seleziona(nodo.predicato(), candidati);
+
+                Class<?> tipo = nodo.getStrategia().getClass();
+                String p = nodo.getParametro();
+                BitSet risultato;
+                if (tipo == FiltraPerGenere.class)
+                    risultato = indice.seleziona(Genere.valueOf(p), null, null);
+                else if (tipo == FiltraPerStato.class)
+                    risultato = indice.seleziona(null, Stato.valueOf(p), null);
+                else
+                    risultato = indice.seleziona(null, null, Valutazione.valueOf(p));
+                if (candidati != null) risultato.and(candidati);
+                return risultato;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} se il nodo è una condizione risolvibile sugli indici
+     */
+    private static boolean indicizzato(FiltroComposto nodo)
+    {
+        if (nodo.getTipo() != FiltroComposto.Tipo.CONDIZIONE) return false;
+        Class<?> tipo = nodo.getStrategia().getClass();
+        return tipo == FiltraPerGenere.class || tipo == FiltraPerStato.class || tipo == FiltraPerValutazione.class;
+    }
+
+
+    /**
+     * Restituisce i libri ordinati da una vista mantenuta dall'indice: non
+     * riordina né salva l'archivio, che conserva il proprio ordine.
+     */
+    @Override
+    public List<Libro> ordina(CriterioOrdinamento criterio) throws IOException
+    {
+        Objects.requireNonNull(criterio, "Criterio non può essere null");
+        long stamp = bloccaPerLettura();
+        try
+        {
+            return indice.ordinati(criterio);
+        }
+        finally
+        {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * La vista ordinata dell'indice è già in ordine: viene scorsa soltanto
+     * fino all'ultimo libro della pagina, senza costruire l'elenco completo.
+     */
+    @Override
+    public Pagina ordina(CriterioOrdinamento criterio, int offset, int limite) throws IOException
+    {
+        Objects.requireNonNull(criterio, "Criterio non può essere null");
+        long stamp = bloccaPerLettura();
+        try
+        {
+            return indice.ordinati(criterio, offset, limite);
+        }
+        finally
+        {
+            lock.unlock(stamp);
         }
-        salvaLibri();
-        return new ArrayList<>(libri);
     }
 }
@@ -1,10 +1,20 @@
 package persistenza;
 
+import Strategy.FiltroComposto;
 import model.Libro;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+import model.Genere;
 import model.Stato;
+import model.Valutazione;
 public interface ArchivioLibri
 {
 
@@ -62,6 +72,56 @@ public interface ArchivioLibri
      */
     void modificaStato(String isbn, String stato) throws IOException;
 
+    /**
+     * Applica un lotto di modifiche (aggiunte, rimozioni, cambi di stato e di
+     * valutazione) nell'ordine indicato, caricando l'archivio una sola volta e
+     * rendendo persistenti le modifiche con un'unica scrittura.
+     * <p>
+     * Le richieste vengono validate tutte insieme: ogni richiesta vede l'effetto
+     * delle precedenti dello stesso lotto. Quelle non valide (ISBN già presente o
+     * assente, campi o valori non validi) vengono scartate singolarmente e
+     * riportate nell'esito, senza interrompere le altre.
+     *
+     * @param modifiche le richieste da applicare, in ordine
+     * @return quante richieste sono state applicate e gli errori di quelle scartate
+     * @throws IOException se si verifica un errore di I/O durante il caricamento o il salvataggio
+     */
+    EsitoBatch applicaModifiche(List<RichiestaModifica> modifiche) throws IOException;
+
+    /**
+     * Aggiunge più libri con un'unica scrittura; i duplicati vengono
+     * riportati nell'esito invece di interrompere l'operazione.
+     *
+     * @param libri i libri da aggiungere, con il loro stato e la loro valutazione
+     * @return l'esito del lotto
+     * @throws IOException se si verifica un errore di I/O durante il caricamento o il salvataggio
+     * @see #applicaModifiche(List)
+     */
+    default EsitoBatch aggiungiLibri(Collection<Libro> libri) throws IOException
+    {
+        List<RichiestaModifica> richieste = new ArrayList<>(libri.size());
+        for (Libro l : libri)
+        {
+            richieste.add(RichiestaModifica.aggiungi(l));
+        }
+        return applicaModifiche(richieste);
+    }
+
+    /**
+     * Registra un ascoltatore delle modifiche: aggiunte, rimozioni, cambi di
+     * stato e di valutazione, con ISBN e posizione del libro, e ricaricamenti
+     * in blocco. Permette di aggiornare solo ciò che è cambiato invece di
+     * rileggere l'intero elenco.
+     *
+     * @param ascoltatore chiamato dopo ogni modifica, sul thread che l'ha eseguita
+     */
+    void aggiungiAscoltatore(AscoltatoreArchivio ascoltatore);
+
+    /**
+     * Rimuove un ascoltatore registrato con {@link #aggiungiAscoltatore(AscoltatoreArchivio)}.
+     */
+    void rimuoviAscoltatore(AscoltatoreArchivio ascoltatore);
+
     /**
      * Restituisce l’elenco completo dei libri presenti in libreria.
      *
@@ -69,6 +129,36 @@ public interface ArchivioLibri
      */
     List<Libro> getLibri();
 
+    /**
+     * Scorre i libri della versione corrente dell'archivio, caricandolo se
+     * necessario, senza copiarli in una nuova lista: modifiche successive
+     * non sono visibili nello stream.
+     *
+     * @return stream sequenziale dei libri, nell'ordine dell'archivio
+     * @throws IOException se si verifica un errore di I/O durante il caricamento
+     */
+    Stream<Libro> scorriLibri() throws IOException;
+
+    /**
+     * Scrive la versione corrente dell'archivio nel formato indicato, un
+     * libro alla volta; la memoria usata non dipende dal numero di libri
+     * (a parte il dizionario e la tabella delle posizioni del formato binario).
+     * Lo stream viene svuotato ma non chiuso.
+     *
+     * @param formato formato di esportazione
+     * @param out     destinazione
+     * @throws IOException se si verifica un errore di I/O durante il caricamento o la scrittura
+     */
+    void esporta(FormatoEsportazione formato, OutputStream out) throws IOException;
+
+    /**
+     * Come {@link #esporta(FormatoEsportazione, OutputStream)}, su un canale.
+     */
+    default void esporta(FormatoEsportazione formato, WritableByteChannel canale) throws IOException
+    {
+        esporta(formato, Channels.newOutputStream(canale));
+    }
+
     /**
      * Cerca libri il cui titolo contiene la stringa specificata (case-insensitive).
      *
@@ -77,12 +167,39 @@ public interface ArchivioLibri
      */
     List<Libro> cerca(String titolo)throws IOException;
 
+    /**
+     * Cerca libri per parole di titolo, autori o editore (case-insensitive).
+     * Il testo viene diviso in parole e ogni parola deve trovare corrispondenza
+     * nel libro secondo il criterio indicato.
+     *
+     * @param testo    parole da cercare (es. «signore anelli», «tolk»)
+     * @param criterio corrispondenza richiesta per ciascuna parola
+     * @return lista di libri corrispondenti; vuota se il testo non contiene parole
+     * @throws IOException se si verifica un errore di I/O durante il caricamento
+     */
+    List<Libro> cercaTesto(String testo, CriterioRicerca criterio) throws IOException;
+
+    /**
+     * Suggerimenti per la ricerca durante la digitazione: i primi libri,
+     * in ordine alfabetico, il cui titolo o uno degli autori inizia con il
+     * prefisso indicato (case-insensitive, spazi normalizzati).
+     *
+     * @param prefisso testo digitato finora
+     * @param massimo  numero massimo di libri da restituire
+     * @return lista di al più {@code massimo} libri; vuota se il prefisso è vuoto
+     * @throws IOException se si verifica un errore di I/O durante il caricamento
+     */
+    List<Libro> suggerisci(String prefisso, int massimo) throws IOException;
+
     /**
      * Salva lo stato corrente della libreria su memoria persistente
      * (file, database, ecc.). Normalmente viene invocato internamente dai metodi
      * mutatori, ma può essere richiamato esplicitamente.
+     *
+     * @throws IOException se il salvataggio non va a buon fine; i dati
+     *         salvati in precedenza restano intatti
      */
-    void salvaLibri();
+    void salvaLibri() throws IOException;
 
     /**
      * Carica i libri precedentemente salvati, sostituendo l’elenco in memoria.
@@ -92,17 +209,55 @@ public interface ArchivioLibri
     void caricaLibri() throws IOException;
 
     /**
-     * Ordina la collezione di libri secondo il criterio specificato.
+     * Filtra la collezione di libri secondo il criterio specificato.
      *
-     * @param criterio il criterio di ordinamento:
-     *                 - {@link CriterioOrdinamento#AUTORE} Autore
-     *                 - {@link CriterioOrdinamento#TITOLO} Titolo
-     * @return lista di {@code Libro} ordinata secondo il criterio.
-     * @throws IOException              errori di I/O durante caricamento o salvataggio.
-     * @throws IllegalArgumentException criterio non riconosciuto.
+     * @param criterio  il criterio di filtro:
+     *                  - {@link CriterioFiltro#STATO} Stato
+     *                  - {@link CriterioFiltro#GENERE} Genere
+     * @param parametro valore richiesto (es. «LETTO», «FANTASY»)
+     * @return lista di {@code Libro} che soddisfano il criterio.
+     * @throws IOException              errori di I/O durante il caricamento.
+     * @throws IllegalArgumentException criterio non riconosciuto o che richiede due parametri.
      */
     List<Libro> filtra(CriterioFiltro criterio, String parametro) throws IOException;
 
+    /**
+     * Filtra la collezione di libri secondo un criterio a due parametri,
+     * come {@link CriterioFiltro#GENERE_E_STATO}. Per i criteri a un solo
+     * parametro il secondo viene ignorato.
+     *
+     * @param criterio   il criterio di filtro
+     * @param parametro1 primo valore richiesto (es. il genere)
+     * @param parametro2 secondo valore richiesto (es. lo stato)
+     * @return lista di {@code Libro} che soddisfano il criterio.
+     * @throws IOException              errori di I/O durante il caricamento.
+     * @throws IllegalArgumentException criterio non riconosciuto.
+     */
+    List<Libro> filtra(CriterioFiltro criterio, String parametro1, String parametro2) throws IOException;
+
+    /**
+     * Filtra la collezione di libri con un albero di condizioni AND/OR,
+     * valutato in un unico passaggio.
+     *
+     * @param filtro l'albero di condizioni
+     * @return lista di {@code Libro} che soddisfano il filtro, nell'ordine della collezione.
+     * @throws IOException errori di I/O durante il caricamento.
+     */
+    List<Libro> filtra(FiltroComposto filtro) throws IOException;
+
+    /**
+     * Filtra la collezione di libri per stato, valutazione e genere, senza
+     * passare dai nomi dei valori: i libri devono soddisfare tutti i criteri
+     * indicati, e un criterio {@code null} non filtra.
+     *
+     * @param stato       stato di lettura richiesto, {@code null} per ogni stato
+     * @param valutazione valutazione richiesta, {@code null} per ogni valutazione
+     * @param genere      genere richiesto, {@code null} per ogni genere
+     * @return lista di {@code Libro} che soddisfano i criteri, nell'ordine della collezione.
+     * @throws IOException errori di I/O durante il caricamento.
+     */
+    List<Libro> filtra(Stato stato, Valutazione valutazione, Genere genere) throws IOException;
+
     /**
      * Ordina la collezione di libri secondo il criterio specificato.
      *
@@ -115,6 +270,59 @@ public interface ArchivioLibri
      */
     List<Libro> ordina(CriterioOrdinamento criterio) throws IOException;
 
+    /**
+     * Una pagina dei libri il cui titolo contiene la stringa specificata,
+     * come {@link #cerca(String)}.
+     *
+     * @param titolo parte o intero del titolo da cercare
+     * @param ordine ordine dei risultati; {@code null} per l'ordine della collezione
+     * @param offset posizione del primo libro da restituire
+     * @param limite numero massimo di libri da restituire
+     * @return la pagina richiesta e il numero totale di risultati
+     * @throws IOException              errori di I/O durante il caricamento.
+     * @throws IllegalArgumentException offset o limite negativi.
+     */
+    default Pagina cerca(String titolo, CriterioOrdinamento ordine, int offset, int limite) throws IOException
+    {
+        return Pagina.di(cerca(titolo), ordine == null ? null : IndiceLibri.ordinamento(ordine), offset, limite);
+    }
+
+    /**
+     * Una pagina dei libri che soddisfano il filtro, come {@link #filtra(FiltroComposto)}.
+     * Con un ordine vengono selezionati soltanto i primi {@code offset + limite}
+     * libri, senza ordinare l'intero risultato.
+     *
+     * @param filtro l'albero di condizioni
+     * @param ordine ordine dei risultati; {@code null} per l'ordine della collezione
+     * @param offset posizione del primo libro da restituire
+     * @param limite numero massimo di libri da restituire
+     * @return la pagina richiesta e il numero totale di risultati
+     * @throws IOException              errori di I/O durante il caricamento.
+     * @throws IllegalArgumentException offset o limite negativi.
+     */
+    default Pagina filtra(FiltroComposto filtro, CriterioOrdinamento ordine, int offset, int limite) throws IOException
+    {
+        return Pagina.di(filtra(filtro), ordine == null ? null : IndiceLibri.ordinamento(ordine), offset, limite);
+    }
+
+    /**
+     * Una pagina della collezione ordinata secondo il criterio, come
+     * {@link #ordina(CriterioOrdinamento)}; vengono selezionati soltanto
+     * i primi {@code offset + limite} libri.
+     *
+     * @param criterio il criterio di ordinamento
+     * @param offset   posizione del primo libro da restituire
+     * @param limite   numero massimo di libri da restituire
+     * @return la pagina richiesta e il numero totale di libri
+     * @throws IOException              errori di I/O durante il caricamento.
+     * @throws IllegalArgumentException criterio non riconosciuto, offset o limite negativi.
+     */
+    default Pagina ordina(CriterioOrdinamento criterio, int offset, int limite) throws IOException
+    {
+        Objects.requireNonNull(criterio, "Criterio non può essere null");
+        return Pagina.di(getLibri(), IndiceLibri.ordinamento(criterio), offset, limite);
+    }
+
 
 
 
@@ -0,0 +1,211 @@
+package persistenza;
+
+import Strategy.FiltroComposto;
+import model.Libro;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Esegue le operazioni di un {@link ArchivioLibri} su un executor dedicato,
+ * restituendo {@link CompletableFuture} invece di bloccare il chiamante
+ * (ad esempio il thread grafico) durante letture e salvataggi.
+ * <p>
+ * Per default ogni operazione gira su un proprio thread virtuale; la
+ * sincronizzazione resta quella dell'archivio. Un future annullato prima
+ * che l'operazione inizi la salta; un'operazione già iniziata viene invece
+ * portata a termine, così un salvataggio non resta a metà, e il suo
+ * risultato viene scartato.
+ */
+public class ArchivioLibriAsincrono implements Closeable
+{
+    /**
+     * Operazione da eseguire sull'archivio.
+     */
+    @FunctionalInterface
+    public interface Operazione<T>
+    {
+        T esegui(ArchivioLibri archivio) throws IOException;
+    }
+
+    private final ArchivioLibri archivio;
+    private final ExecutorService executor;
+
+    public ArchivioLibriAsincrono(ArchivioLibri archivio)
+    {
+        this(archivio, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * @param executor executor su cui eseguire le operazioni; viene chiuso da {@link #close()}
+     */
+    public ArchivioLibriAsincrono(ArchivioLibri archivio, ExecutorService executor)
+    {
+        this.archivio = Objects.requireNonNull(archivio, "Archivio non può essere null");
+        this.executor = Objects.requireNonNull(executor, "Executor non può essere null");
+    }
+
+    /**
+     * @return l'archivio su cui vengono eseguite le operazioni
+     */
+    public ArchivioLibri getArchivio()
+    {
+        return archivio;
+    }
+
+    /**
+     * Esegue un'operazione qualsiasi sull'archivio; più chiamate che devono
+     * avvenire in sequenza (es. aggiunta e cambio di stato) vanno riunite
+     * in un'unica operazione.
+     *
+     * @return future completato con il risultato, o eccezionalmente con
+     *         l'{@link IOException} o l'eccezione lanciata dall'operazione
+     */
+    public <T> CompletableFuture<T> esegui(Operazione<T> operazione)
+    {
+        Objects.requireNonNull(operazione, "Operazione non può essere null");
+        CompletableFuture<T> risultato = new CompletableFuture<>();
+        executor.execute(() ->
+        {
+            if (risultato.isDone()) return; // annullata prima di iniziare
+            try
+            {
+                risultato.complete(operazione.esegui(archivio));
+            }
+            catch (Throwable t)
+            {
+                risultato.completeExceptionally(t);
+            }
+        });
+        return risultato;
+    }
+
+    /**
+     * Carica l'archivio e ne restituisce l'elenco dei libri.
+     *
+     * @see ArchivioLibri#caricaLibri()
+     */
+    public CompletableFuture<List<Libro>> caricaLibri()
+    {
+        return esegui(a ->
+        {
+            a.caricaLibri();
+            return a.getLibri();
+        });
+    }
+
+    /**
+     * @see ArchivioLibri#getLibri()
+     */
+    public CompletableFuture<List<Libro>> getLibri()
+    {
+        return esegui(ArchivioLibri::getLibri);
+    }
+
+    /**
+     * @see ArchivioLibri#cerca(String)
+     */
+    public CompletableFuture<List<Libro>> cerca(String titolo)
+    {
+        return esegui(a -> a.cerca(titolo));
+    }
+
+    /**
+     * @see ArchivioLibri#suggerisci(String, int)
+     */
+    public CompletableFuture<List<Libro>> suggerisci(String prefisso, int massimo)
+    {
+        return esegui(a -> a.suggerisci(prefisso, massimo));
+    }
+
+    /**
+     * @see ArchivioLibri#filtra(FiltroComposto)
+     */
+    public CompletableFuture<List<Libro>> filtra(FiltroComposto filtro)
+    {
+        return esegui(a -> a.filtra(filtro));
+    }
+
+    /**
+     * @see ArchivioLibri#ordina(CriterioOrdinamento)
+     */
+    public CompletableFuture<List<Libro>> ordina(CriterioOrdinamento criterio)
+    {
+        return esegui(a -> a.ordina(criterio));
+    }
+
+    /**
+     * @see ArchivioLibri#ordina(CriterioOrdinamento, int, int)
+     */
+    public CompletableFuture<Pagina> ordina(CriterioOrdinamento criterio, int offset, int limite)
+    {
+        return esegui(a -> a.ordina(criterio, offset, limite));
+    }
+
+    /**
+     * @see ArchivioLibri#rimuoviLibro(String)
+     */
+    public CompletableFuture<Boolean> rimuoviLibro(String isbn)
+    {
+        return esegui(a -> a.rimuoviLibro(isbn));
+    }
+
+    /**
+     * @see ArchivioLibri#modificaStato(String, String)
+     */
+    public CompletableFuture<Void> modificaStato(String isbn, String stato)
+    {
+        return esegui(a ->
+        {
+            a.modificaStato(isbn, stato);
+            return null;
+        });
+    }
+
+    /**
+     * @see ArchivioLibri#modificaValutazione(String, String)
+     */
+    public CompletableFuture<Void> modificaValutazione(String isbn, String valutazione)
+    {
+        return esegui(a ->
+        {
+            a.modificaValutazione(isbn, valutazione);
+            return null;
+        });
+    }
+
+    /**
+     * @see ArchivioLibri#applicaModifiche(List)
+     */
+    public CompletableFuture<EsitoBatch> applicaModifiche(List<RichiestaModifica> modifiche)
+    {
+        return esegui(a -> a.applicaModifiche(modifiche));
+    }
+
+    /**
+     * @see ArchivioLibri#salvaLibri()
+     */
+    public CompletableFuture<Void> salvaLibri()
+    {
+        return esegui(a ->
+        {
+            a.salvaLibri();
+            return null;
+        });
+    }
+
+    /**
+     * Non accetta nuove operazioni e attende la fine di quelle già
+     * avviate; l'archivio non viene chiuso.
+     */
+    @Override
+    public void close()
+    {
+        executor.close();
+    }
+}
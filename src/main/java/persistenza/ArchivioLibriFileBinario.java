@@ -0,0 +1,119 @@
+package persistenza;
+
+import model.Libro;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Implementazione di ArchivioLibri che conserva lo snapshot nel formato
+ * binario descritto da {@link FormatoBinario} (<code>dati.bin</code>).
+ * <p>
+ * Rispetto al CSV la lettura non richiede parsing di testo: gli enum sono
+ * ordinali su un byte, editori e autori vengono decodificati una sola volta
+ * dal dizionario e l'ISBN è un numero. Journal, modalità residente e indici
+ * sono quelli di {@link AbstractArchivioLibriFile}.
+ * I metodi {@link #importaCsv(Path)} ed {@link #esportaCsv(Path)} convertono
+ * da e verso il formato di {@link ArchivioLibriFileCsv}.
+ */
+public class ArchivioLibriFileBinario extends AbstractArchivioLibriFile
+{
+
+    /** Percorso di default del file nella directory del progetto */
+    private static final Path FILE_PATH = Paths.get("dati.bin");
+
+    public ArchivioLibriFileBinario()
+    {
+        this(FILE_PATH);
+    }
+
+    /**
+     * @param filePath percorso del file binario
+     */
+    public ArchivioLibriFileBinario(Path filePath)
+    {
+        this(filePath, SOGLIA_COMPATTAZIONE, null);
+    }
+
+    /**
+     * Crea un archivio in modalità residente.
+     *
+     * @param filePath      percorso del file binario
+     * @param politicaFlush politica di salvataggio delle modifiche pendenti
+     */
+    public ArchivioLibriFileBinario(Path filePath, PoliticaFlush politicaFlush)
+    {
+        this(filePath, SOGLIA_COMPATTAZIONE, Objects.requireNonNull(politicaFlush, "Politica non può essere null"));
+    }
+
+    /**
+     * @param filePath            percorso del file binario
+     * @param sogliaCompattazione numero di operazioni nel journal oltre il quale
+     *                            viene pianificata la compattazione nello snapshot
+     * @param politicaFlush       politica della modalità residente,
+     *                            {@code null} per la modalità classica
+     */
+    public ArchivioLibriFileBinario(Path filePath, int sogliaCompattazione, PoliticaFlush politicaFlush)
+    {
+        super(filePath, sogliaCompattazione, politicaFlush);
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                              SALVA                                 */
+    /* ------------------------------------------------------------------ */
+    @Override
+    protected void scriviSnapshot(Collection<Libro> daScrivere, OutputStream out) throws IOException
+    {
+        FormatoBinario.scrivi(daScrivere, out);
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                              CARICA                                */
+    /* ------------------------------------------------------------------ */
+    @Override
+    protected void leggiSnapshot(Map<String, Libro> letti) throws IOException
+    {
+        if (Files.notExists(filePath)) {
+            return;
+        }
+        new FormatoBinario.Lettore(ByteBuffer.wrap(Files.readAllBytes(filePath))).leggiTutti(letti);
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                          IMPORT / EXPORT                           */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * Sostituisce il contenuto dell'archivio con i libri di un file CSV
+     * (compreso il suo eventuale journal) e lo salva in formato binario.
+     *
+     * @param csv file nel formato di {@link ArchivioLibriFileCsv}
+     * @throws IOException se il CSV non è leggibile
+     */
+    public void importaCsv(Path csv) throws IOException
+    {
+        ArchivioLibriFileCsv sorgente = new ArchivioLibriFileCsv(csv);
+        sorgente.caricaLibri();
+        sostituisciLibri(sorgente.getLibri());
+    }
+
+    /**
+     * Scrive il contenuto corrente dell'archivio in un file CSV
+     * leggibile da {@link ArchivioLibriFileCsv}.
+     *
+     * @param csv file di destinazione, sovrascritto se esiste
+     * @throws IOException se il CSV non è scrivibile
+     */
+    public void esportaCsv(Path csv) throws IOException
+    {
+        ElencoLibri versione = versioneCorrente();
+        ScritturaAtomica.scrivi(csv, 0, out -> FormatoEsportazione.CSV.scrivi(versione, out));
+    }
+}
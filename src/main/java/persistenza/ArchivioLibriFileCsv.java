@@ -4,7 +4,11 @@ import com.opencsv.*;
 import com.opencsv.exceptions.CsvValidationException;
 import model.*;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -14,53 +18,173 @@ import java.util.stream.Collectors;
  * in un file CSV chiamato <code>dati.csv</code> posizionato nella
  * cartella radice del progetto (working directory).
  * La classe fornisce unicamente i due metodi di persistenza richiesti:
- * {@link #salvaLibri()} e {@link #caricaLibri()}.
+ * {@link #scriviSnapshot(Collection, OutputStream)} e {@link #leggiSnapshot(Map)}.
+ * <p>
+ * Le singole modifiche non riscrivono il CSV: vengono accodate a un
+ * {@link JournalOperazioni} (<code>dati.csv.journal</code>) che, superata la
+ * soglia di compattazione, viene incorporato nello snapshot in background.
+ * <p>
+ * Con {@link #osservaModificheEsterne()} l'archivio si aggiorna da solo
+ * quando il CSV viene modificato da un altro processo.
  */
 public class ArchivioLibriFileCsv extends AbstractArchivioLibriFile
 {
 
-    /** Percorso del file nella directory del progetto */
+    /** Percorso di default del file nella directory del progetto */
     private static final Path FILE_PATH = Paths.get("dati.csv");
 
+    /** Attesa senza nuove modifiche del file prima di rileggerlo */
+    private static final long QUIETE_OSSERVAZIONE_MS = 200;
+
+    private OsservatoreFile osservatore;
+
+    private static final String[] INTESTAZIONE = {
+            "isbn", "titolo", "autori", "editore",
+            "valutazione", "stato", "genere"
+    };
+
+    public ArchivioLibriFileCsv()
+    {
+        this(FILE_PATH);
+    }
+
+    /**
+     * @param filePath percorso del file CSV
+     */
+    public ArchivioLibriFileCsv(Path filePath)
+    {
+        this(filePath, SOGLIA_COMPATTAZIONE);
+    }
+
+    /**
+     * @param filePath            percorso del file CSV
+     * @param sogliaCompattazione numero di operazioni nel journal oltre il quale
+     *                            viene pianificata la compattazione nello snapshot
+     */
+    public ArchivioLibriFileCsv(Path filePath, int sogliaCompattazione)
+    {
+        this(filePath, sogliaCompattazione, null);
+    }
+
+    /**
+     * Crea un archivio in modalità residente: il CSV viene letto una sola volta
+     * e le modifiche vengono accodate al journal secondo la politica indicata.
+     *
+     * @param filePath      percorso del file CSV
+     * @param politicaFlush politica di salvataggio delle modifiche pendenti
+     */
+    public ArchivioLibriFileCsv(Path filePath, PoliticaFlush politicaFlush)
+    {
+        this(filePath, SOGLIA_COMPATTAZIONE, Objects.requireNonNull(politicaFlush, "Politica non può essere null"));
+    }
+
+    /**
+     * @param filePath            percorso del file CSV
+     * @param sogliaCompattazione numero di operazioni nel journal oltre il quale
+     *                            viene pianificata la compattazione nello snapshot
+     * @param politicaFlush       politica della modalità residente,
+     *                            {@code null} per la modalità classica
+     */
+    public ArchivioLibriFileCsv(Path filePath, int sogliaCompattazione, PoliticaFlush politicaFlush)
+    {
+        super(filePath, sogliaCompattazione, politicaFlush);
+    }
+
     /* ------------------------------------------------------------------ */
-    /*                              SALVA                                 */
+    /*                       MODIFICHE ESTERNE                            */
     /* ------------------------------------------------------------------ */
+
+    /**
+     * Attiva il ricaricamento automatico: quando il CSV o il suo journal
+     * vengono creati o modificati, ad esempio da un altro processo, il file
+     * viene riletto in background con {@link #aggiornaDaFile()}, che applica
+     * agli indici e notifica agli ascoltatori solo i libri cambiati.
+     * <p>
+     * Anche i salvataggi dell'archivio stesso vengono rilevati, ma il file
+     * corrisponde ancora alla firma registrata dopo la scrittura e l'evento
+     * viene ignorato senza rileggerlo né acquisire il lock.
+     *
+     * @throws IOException se la cartella del file non può essere osservata
+     */
+    public synchronized void osservaModificheEsterne() throws IOException
+    {
+        if (osservatore != null) return;
+        Path assoluto = filePath.toAbsolutePath();
+        Path nome = assoluto.getFileName();
+        osservatore = new OsservatoreFile(
+                assoluto.getParent(),
+                Set.of(nome, Paths.get(nome + ESTENSIONE_JOURNAL)),
+                QUIETE_OSSERVAZIONE_MS,
+                this::aggiornaSilenzioso);
+    }
+
+    /**
+     * Disattiva il ricaricamento automatico.
+     */
+    public synchronized void fermaOsservazione() throws IOException
+    {
+        if (osservatore != null)
+        {
+            osservatore.close();
+            osservatore = null;
+        }
+    }
+
+    /**
+     * Ferma l'osservazione del file e salva le modifiche pendenti.
+     */
     @Override
-    public void salvaLibri()
+    public void close() throws IOException
     {
-        try {
-            Path parent = FILE_PATH.getParent();
-            if (parent != null) Files.createDirectories(parent);
-
-            try (CSVWriter writer = new CSVWriter(
-                    Files.newBufferedWriter(FILE_PATH),
-                    ';',
-                    CSVWriter.NO_QUOTE_CHARACTER,
-                    CSVWriter.DEFAULT_ESCAPE_CHARACTER,
-                    CSVWriter.DEFAULT_LINE_END)) {
-
-                // intestazione
-                writer.writeNext(new String[]{
-                        "isbn", "titolo", "autori", "editore",
-                        "valutazione", "stato", "genere"
-                });
-
-                // record
-                for (Libro l : libri) {
-                    writer.writeNext(new String[]{
-                            nullable(l.getIsbn()),
-                            nullable(l.getTitolo()),
-                            String.join(",", l.getAutori()), // serializzazione autori
-                            nullable(l.getEditore()),
-                            enumOrBlank(l.getValutazione()),
-                            enumOrBlank(l.getStatoLibro()),
-                            enumOrBlank(l.getGenere())
-                    });
-                }
+        fermaOsservazione();
+        super.close();
+    }
+
+    private void aggiornaSilenzioso()
+    {
+        try
+        {
+            if (fileCambiato())
+            {
+                aggiornaDaFile();
             }
-        } catch (IOException e) {
-            System.err.println("Errore durante il salvataggio: " + e.getMessage());
         }
+        catch (IOException | RuntimeException e)
+        {
+            System.err.println("Errore durante il ricaricamento di " + filePath + ": " + e.getMessage());
+        }
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                              SALVA                                 */
+    /* ------------------------------------------------------------------ */
+    @Override
+    protected void scriviSnapshot(Collection<Libro> daScrivere, OutputStream out) throws IOException
+    {
+        scriviCsv(daScrivere, out);
+    }
+
+    /**
+     * Scrive intestazione e record nel formato di questo archivio, un libro
+     * alla volta; lo stream viene svuotato ma non chiuso.
+     */
+    static void scriviCsv(Iterable<Libro> daScrivere, OutputStream out) throws IOException
+    {
+        CSVWriter writer = new CSVWriter(
+                new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)),
+                ';',
+                CSVWriter.NO_QUOTE_CHARACTER,
+                CSVWriter.DEFAULT_ESCAPE_CHARACTER,
+                CSVWriter.DEFAULT_LINE_END);
+
+        // intestazione
+        writer.writeNext(INTESTAZIONE);
+
+        // record
+        for (Libro l : daScrivere) {
+            writer.writeNext(aRecord(l));
+        }
+        writer.flush();
     }
 
 
@@ -68,19 +192,17 @@ public class ArchivioLibriFileCsv extends AbstractArchivioLibriFile
     /*                              CARICA                                */
     /* ------------------------------------------------------------------ */
     @Override
-    public void caricaLibri() throws IOException
+    protected void leggiSnapshot(Map<String, Libro> letti) throws IOException
     {
-        if (Files.notExists(FILE_PATH)) {
-            Files.writeString(FILE_PATH,
-                    "isbn;titolo;autori;editore;valutazione;stato;genere\n");
+        if (Files.notExists(filePath)) {
+            Files.writeString(filePath, String.join(";", INTESTAZIONE) + "\n");
         }
 
         try (CSVReader reader = new CSVReaderBuilder(
-                Files.newBufferedReader(FILE_PATH))
+                Files.newBufferedReader(filePath))
                 .withCSVParser(new CSVParserBuilder().withSeparator(';').build())
                 .build()) {
 
-            libri.clear();
             String[] rec;
             int line = 0;
 
@@ -96,32 +218,8 @@ public class ArchivioLibriFileCsv extends AbstractArchivioLibriFile
                 }
 
                 try {
-                    // parsing autori
-                    Set<String> autori = Arrays.stream(rec[2].split(","))
-                            .map(String::trim)
-                            .filter(s -> !s.isEmpty())
-                            .collect(Collectors.toCollection(TreeSet::new));
-
-                    // parsing enum
-                    Valutazione val = rec[4].isBlank() ? null : Valutazione.valueOf(rec[4].trim());
-                    Stato sta = rec[5].isBlank() ? null : Stato.valueOf(rec[5].trim());
-                    Genere gen = rec[6].isBlank() ? null : Genere.valueOf(rec[6].trim());
-
-                    // costruzione libro
-                    Libro libro = new Libro(
-                            rec[1],     // titolo
-                            autori,     // autori
-                            rec[3],     // editore
-                            rec[0],     // isbn
-                            rec[6]      // genere come stringa
-                    );
-
-                    // campi opzionali
-                    if (val != null) libro.setValutazione(val);
-                    if (sta != null) libro.setStatoLibro(sta);
-
-                    libri.add(libro);
-
+                    Libro libro = daRecord(rec);
+                    letti.put(libro.getIsbn(), libro);
                 } catch (Exception e) {
                     System.err.println("Errore creazione libro alla riga " + line + ": " + e.getMessage());
                 }
@@ -131,6 +229,62 @@ public class ArchivioLibriFileCsv extends AbstractArchivioLibriFile
         }
     }
 
+    /* ------------------------------------------------------------------ */
+    /*                        CONVERSIONE RECORD                          */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * Converte un libro nel record CSV
+     * (isbn, titolo, autori, editore, valutazione, stato, genere).
+     */
+    static String[] aRecord(Libro l)
+    {
+        return new String[]{
+                nullable(l.getIsbn()),
+                nullable(l.getTitolo()),
+                String.join(",", l.getAutori()), // serializzazione autori
+                nullable(l.getEditore()),
+                enumOrBlank(l.getValutazione()),
+                enumOrBlank(l.getStatoLibro()),
+                enumOrBlank(l.getGenere())
+        };
+    }
+
+    /**
+     * Ricostruisce un libro dal record CSV prodotto da {@link #aRecord(Libro)}.
+     *
+     * @throws IllegalArgumentException se il record non descrive un libro valido
+     */
+    static Libro daRecord(String[] rec)
+    {
+        if (rec.length < 7)
+            throw new IllegalArgumentException("Record incompleto: " + Arrays.toString(rec));
+
+        // parsing autori
+        Set<String> autori = Arrays.stream(rec[2].split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toCollection(TreeSet::new));
+
+        // parsing enum
+        Valutazione val = rec[4].isBlank() ? null : Valutazione.valueOf(rec[4].trim());
+        Stato sta = rec[5].isBlank() ? null : Stato.valueOf(rec[5].trim());
+
+        // costruzione libro
+        Libro libro = new Libro(
+                rec[1],     // titolo
+                autori,     // autori
+                rec[3],     // editore
+                rec[0],     // isbn
+                rec[6]      // genere come stringa
+        );
+
+        // campi opzionali
+        if (val != null) libro.setValutazione(val);
+        if (sta != null) libro.setStatoLibro(sta);
+        return libro;
+    }
+
     /* ------------------------------------------------------------------ */
     /*                           HELPER PRIVATI                            */
     /* ------------------------------------------------------------------ */
@@ -0,0 +1,747 @@
+package persistenza;
+
+import Strategy.*;
+import model.Genere;
+import model.Isbn;
+import model.Libro;
+import model.Stato;
+import model.Valutazione;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Implementazione di ArchivioLibri per cataloghi molto grandi: lo snapshot
+ * binario di {@link FormatoBinario} viene mappato in memoria con
+ * {@link FileChannel#map} e i libri vengono decodificati soltanto quando
+ * richiesti, senza mai costruire l'elenco completo.
+ * <p>
+ * Le modifiche successive allo snapshot vivono in una piccola sovrapposizione
+ * in memoria (libri modificati, aggiunti e posizioni rimosse) e vengono
+ * accodate a un {@link JournalOperazioni}; superata la soglia di compattazione
+ * lo snapshot viene riscritto e rimappato. L'unica struttura proporzionale al
+ * numero di libri è la tabella hash degli ISBN, da 24 a 48 byte per libro,
+ * costruita alla prima ricerca per ISBN.
+ * <p>
+ * Ricerche, filtri e ordinamenti scorrono la mappatura decodificando un libro
+ * alla volta. {@link #ordina(CriterioOrdinamento)} restituisce l'elenco ordinato
+ * senza riscrivere il file. La mappatura è limitata a file di 2 GB.
+ */
+public class ArchivioLibriMappato implements ArchivioLibri, Closeable
+{
+
+    /** Percorso di default del file nella directory del progetto */
+    private static final Path FILE_PATH = Paths.get("dati.bin");
+
+    private static final String ESTENSIONE_JOURNAL = ".journal";
+
+    private final OrdinamentoStrategy ordinamentoAutore = new OrdinamentoPerAutore();
+    private final OrdinamentoStrategy ordinamentoTitolo = new OrdinamentoPerTitolo();
+    private final FiltroStrategy filtroGenere = new FiltraPerGenere();
+    private final FiltroStrategy filtroStato = new FiltraPerStato();
+
+    private final Path filePath;
+    private final JournalOperazioni journal;
+    private final int sogliaCompattazione;
+
+    private FileChannel canale;
+    private FormatoBinario.Lettore lettore;
+
+    /** Libri dello snapshot modificati dopo la mappatura, per ISBN */
+    private final Map<String, Libro> modificati = new HashMap<>();
+    /** Libri assenti dallo snapshot, nell'ordine di inserimento */
+    private final LinkedHashMap<String, Libro> aggiunti = new LinkedHashMap<>();
+    /** Posizioni dello snapshot dei libri rimossi */
+    private final BitSet rimossi = new BitSet();
+
+    private final AscoltatoriArchivio ascoltatori = new AscoltatoriArchivio();
+
+    /** Tabella hash ad indirizzamento aperto: chiave ISBN + 1 e posizione nello snapshot */
+    private long[] chiaviIsbn;
+    private int[] posizioniIsbn;
+
+    public ArchivioLibriMappato()
+    {
+        this(FILE_PATH);
+    }
+
+    /**
+     * @param filePath percorso dello snapshot binario
+     */
+    public ArchivioLibriMappato(Path filePath)
+    {
+        this(filePath, AbstractArchivioLibriFile.SOGLIA_COMPATTAZIONE);
+    }
+
+    /**
+     * @param filePath            percorso dello snapshot binario
+     * @param sogliaCompattazione numero di operazioni nel journal oltre il quale
+     *                            lo snapshot viene riscritto
+     */
+    public ArchivioLibriMappato(Path filePath, int sogliaCompattazione)
+    {
+        if (sogliaCompattazione < 1)
+            throw new IllegalArgumentException("Soglia di compattazione non valida: " + sogliaCompattazione);
+        this.filePath = Objects.requireNonNull(filePath, "Percorso non può essere null");
+        this.journal = new JournalOperazioni(Paths.get(filePath + ESTENSIONE_JOURNAL));
+        this.sogliaCompattazione = sogliaCompattazione;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                              MODIFICHE                             */
+    /* ------------------------------------------------------------------ */
+
+    @Override
+    public synchronized void aggiungiLibro(String titolo, String autoreSingolo, String editore, String isbn, String genere) throws IOException
+    {
+        sincronizza();
+        Set<String> autori = new TreeSet<>();
+        for (String a : autoreSingolo.split(","))
+        {
+            autori.add(a.trim());
+        }
+        Libro libro = new Libro(titolo, autori, editore, isbn, genere);
+        if (giaPresente(libro.getIsbn()))
+        {
+            throw new LibroGiaPresenteException(libro.getIsbn());
+        }
+        registra(Operazione.salva(libro));
+        ascoltatori.notifica(EventoArchivio.aggiunto(libro,
+                lettore.numeroLibri() - rimossi.cardinality() + aggiunti.size() - 1));
+    }
+
+    @Override
+    public synchronized boolean rimuoviLibro(String isbn) throws IOException
+    {
+        sincronizza();
+        Libro l = trova(isbn);
+        if (l == null)
+        {
+            return false;
+        }
+        registra(Operazione.rimuovi(isbn));
+        ascoltatori.notifica(EventoArchivio.rimosso(l, -1));
+        return true;
+    }
+
+    @Override
+    public synchronized void modificaValutazione(String isbn, String valutazione) throws IOException
+    {
+        sincronizza();
+        Libro l = trova(isbn);
+        if (l != null)
+        {
+            Libro modificato = AbstractArchivioLibriFile.copia(l);
+            modificato.setValutazione(AbstractArchivioLibriFile.valutazioneDa(valutazione));
+            registra(Operazione.salva(modificato));
+            ascoltatori.notifica(EventoArchivio.valutazioneModificata(modificato, -1));
+        }
+    }
+
+    @Override
+    public synchronized void modificaStato(String isbn, String stato) throws IOException
+    {
+        sincronizza();
+        Libro l = trova(isbn);
+        if (l != null)
+        {
+            Libro modificato = AbstractArchivioLibriFile.copia(l);
+            modificato.setStatoLibro(AbstractArchivioLibriFile.statoDa(stato));
+            registra(Operazione.salva(modificato));
+            ascoltatori.notifica(EventoArchivio.statoModificato(modificato, -1));
+        }
+    }
+
+    /**
+     * Applica le richieste alla sovrapposizione una alla volta e accoda
+     * le operazioni al journal con un'unica scrittura.
+     */
+    @Override
+    public synchronized EsitoBatch applicaModifiche(List<RichiestaModifica> modifiche) throws IOException
+    {
+        Objects.requireNonNull(modifiche, "Lotto non può essere null");
+        sincronizza();
+        EsitoBatch esito = new EsitoBatch();
+        List<Operazione> operazioni = new ArrayList<>();
+        for (int i = 0; i < modifiche.size(); i++)
+        {
+            RichiestaModifica richiesta = modifiche.get(i);
+            try
+            {
+                Operazione op = operazione(richiesta);
+                applica(op);
+                operazioni.add(op);
+                esito.applicata();
+            }
+            catch (RuntimeException e)
+            {
+                esito.scartata(i, richiesta, e);
+            }
+        }
+        if (!operazioni.isEmpty())
+        {
+            journal.accoda(operazioni);
+            compattaSeNecessario();
+            ascoltatori.notifica(EventoArchivio.ricaricato());
+        }
+        return esito;
+    }
+
+    @Override
+    public synchronized void svuota() throws IOException
+    {
+        sincronizza();
+        riscrivi(List.of());
+        ascoltatori.notifica(EventoArchivio.ricaricato());
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                          SALVA / CARICA                            */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * Incorpora le modifiche nello snapshot, svuota il journal e rimappa il file.
+     */
+    @Override
+    public synchronized void salvaLibri() throws IOException
+    {
+        sincronizza();
+        riscrivi(vista());
+    }
+
+    /**
+     * Mappa lo snapshot (creandolo vuoto se non esiste) e vi sovrappone il journal.
+     * Non decodifica alcun libro.
+     */
+    @Override
+    public synchronized void caricaLibri() throws IOException
+    {
+        if (Files.notExists(filePath))
+        {
+            scriviSnapshot(List.of());
+        }
+        mappa();
+        for (Operazione op : journal.leggi())
+        {
+            applica(op);
+        }
+        ascoltatori.notifica(EventoArchivio.ricaricato());
+    }
+
+    /**
+     * Gli ascoltatori vengono chiamati mentre l'archivio è ancora bloccato
+     * dal thread che lo ha modificato, che può quindi rileggerlo.
+     */
+    @Override
+    public void aggiungiAscoltatore(AscoltatoreArchivio ascoltatore)
+    {
+        ascoltatori.aggiungi(ascoltatore);
+    }
+
+    @Override
+    public void rimuoviAscoltatore(AscoltatoreArchivio ascoltatore)
+    {
+        ascoltatori.rimuovi(ascoltatore);
+    }
+
+    /**
+     * Rilascia il canale del file mappato.
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (canale != null)
+        {
+            canale.close();
+            canale = null;
+            lettore = null;
+        }
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                              LETTURE                               */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * @return vista immutabile dei libri, decodificati dalla mappatura a ogni accesso
+     */
+    @Override
+    public synchronized List<Libro> getLibri()
+    {
+        try
+        {
+            sincronizza();
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Impossibile mappare " + filePath, e);
+        }
+        return vista();
+    }
+
+    /**
+     * I libri dello snapshot vengono decodificati uno alla volta mentre lo
+     * stream viene consumato.
+     */
+    @Override
+    public synchronized Stream<Libro> scorriLibri() throws IOException
+    {
+        sincronizza();
+        return vista().stream();
+    }
+
+    @Override
+    public void esporta(FormatoEsportazione formato, OutputStream out) throws IOException
+    {
+        Objects.requireNonNull(formato, "Formato non può essere null");
+        List<Libro> versione;
+        synchronized (this)
+        {
+            sincronizza();
+            versione = vista();
+        }
+        formato.scrivi(versione, out);
+    }
+
+    @Override
+    public synchronized List<Libro> cerca(String titolo) throws IOException
+    {
+        String cercato = IndiceTestuale.normalizza(titolo);
+        return scorri(l -> IndiceTestuale.normalizza(l.getTitolo()).equals(cercato));
+    }
+
+    @Override
+    public synchronized List<Libro> cercaTesto(String testo, CriterioRicerca criterio) throws IOException
+    {
+        Objects.requireNonNull(criterio, "Criterio non può essere null");
+        List<String> cercate = IndiceTestuale.tokenizza(testo);
+        if (cercate.isEmpty()) return new ArrayList<>();
+        return scorri(l -> corrisponde(l, cercate, criterio));
+    }
+
+    /**
+     * Scorre la mappatura conservando, per ogni libro, la più piccola chiave
+     * (titolo o autore normalizzato) che inizia con il prefisso.
+     */
+    @Override
+    public synchronized List<Libro> suggerisci(String prefisso, int massimo) throws IOException
+    {
+        String p = IndiceTestuale.normalizza(prefisso);
+        if (p.isEmpty() || massimo <= 0) return new ArrayList<>();
+
+        List<Map.Entry<String, Libro>> trovati = new ArrayList<>();
+        for (Libro l : getLibri())
+        {
+            String chiave = null;
+            String titolo = IndiceTestuale.normalizza(l.getTitolo());
+            if (titolo.startsWith(p)) chiave = titolo;
+            for (String a : l.getAutori())
+            {
+                String autore = IndiceTestuale.normalizza(a);
+                if (autore.startsWith(p) && (chiave == null || autore.compareTo(chiave) < 0)) chiave = autore;
+            }
+            if (chiave != null) trovati.add(Map.entry(chiave, l));
+        }
+        trovati.sort(Map.Entry.comparingByKey());
+
+        List<Libro> ret = new ArrayList<>();
+        for (int i = 0; i < trovati.size() && i < massimo; i++)
+            ret.add(trovati.get(i).getValue());
+        return ret;
+    }
+
+    @Override
+    public List<Libro> filtra(CriterioFiltro criterio, String parametro) throws IOException
+    {
+        if (criterio == CriterioFiltro.GENERE_E_STATO)
+            throw new IllegalArgumentException("Il criterio " + criterio + " richiede due parametri");
+        return filtra(criterio, parametro, null);
+    }
+
+    @Override
+    public List<Libro> filtra(CriterioFiltro criterio, String parametro1, String parametro2) throws IOException
+    {
+        FiltroComposto filtro;
+        switch (criterio) {
+            case STATO:
+                filtro = FiltroComposto.condizione(filtroStato, parametro1);
+                break;
+            case GENERE:
+                filtro = FiltroComposto.condizione(filtroGenere, parametro1);
+                break;
+            case GENERE_E_STATO:
+                filtro = FiltroComposto.and(
+                        FiltroComposto.condizione(filtroGenere, parametro1),
+                        FiltroComposto.condizione(filtroStato, parametro2));
+                break;
+            default:
+                throw new IllegalArgumentException("Criterio di filtro non riconosciuto: " + criterio);
+        }
+        return filtra(filtro);
+    }
+
+    @Override
+    public synchronized List<Libro> filtra(FiltroComposto filtro) throws IOException
+    {
+        Objects.requireNonNull(filtro, "Filtro non può essere null");
+        return scorri(filtro.predicato());
+    }
+
+    @Override
+    public synchronized List<Libro> filtra(Stato stato, Valutazione valutazione, Genere genere) throws IOException
+    {
+        return scorri(l -> (stato == null || l.getStatoLibro() == stato)
+                && (valutazione == null || l.getValutazione() == valutazione)
+                && (genere == null || l.getGenere() == genere));
+    }
+
+    /**
+     * Restituisce i libri ordinati; a differenza degli archivi in memoria
+     * l'ordine non viene reso persistente, per non riscrivere l'intero snapshot.
+     */
+    @Override
+    public synchronized List<Libro> ordina(CriterioOrdinamento criterio) throws IOException
+    {
+        switch (criterio)
+        {
+            case AUTORE:
+                return new ArrayList<>(ordinamentoAutore.ordina(new ArrayList<>(getLibri())));
+            case TITOLO:
+                return new ArrayList<>(ordinamentoTitolo.ordina(new ArrayList<>(getLibri())));
+            default:
+                throw new IllegalArgumentException("Criterio non riconosciuto :  " + criterio);
+        }
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                           HELPER PRIVATI                            */
+    /* ------------------------------------------------------------------ */
+
+    private void sincronizza() throws IOException
+    {
+        if (lettore == null)
+        {
+            caricaLibri();
+        }
+    }
+
+    private void mappa() throws IOException
+    {
+        close();
+        modificati.clear();
+        aggiunti.clear();
+        rimossi.clear();
+        chiaviIsbn = null;
+        posizioniIsbn = null;
+
+        canale = FileChannel.open(filePath, StandardOpenOption.READ);
+        if (canale.size() > Integer.MAX_VALUE)
+            throw new IOException("Snapshot troppo grande per la mappatura: " + canale.size() + " byte");
+        MappedByteBuffer dati = canale.map(FileChannel.MapMode.READ_ONLY, 0, canale.size());
+        lettore = new FormatoBinario.Lettore(dati);
+    }
+
+    /**
+     * Sostituisce atomicamente lo snapshot: la mappatura esistente resta
+     * valida sul vecchio file fino alla nuova {@link #mappa()}.
+     */
+    private void scriviSnapshot(Collection<Libro> daScrivere) throws IOException
+    {
+        ScritturaAtomica.scrivi(filePath, AbstractArchivioLibriFile.GENERAZIONI,
+                out -> FormatoBinario.scrivi(daScrivere, out));
+    }
+
+    private void riscrivi(Collection<Libro> daScrivere) throws IOException
+    {
+        scriviSnapshot(daScrivere);
+        journal.svuota();
+        mappa();
+    }
+
+    private void registra(Operazione operazione) throws IOException
+    {
+        journal.accoda(List.of(operazione));
+        applica(operazione);
+        compattaSeNecessario();
+    }
+
+    private void compattaSeNecessario() throws IOException
+    {
+        if (journal.dimensione() >= sogliaCompattazione)
+        {
+            riscrivi(vista());
+        }
+    }
+
+    /**
+     * Traduce una richiesta del lotto nell'operazione corrispondente,
+     * controllandola sullo stato corrente della sovrapposizione.
+     *
+     * @throws RuntimeException se la richiesta non è valida
+     */
+    private Operazione operazione(RichiestaModifica richiesta)
+    {
+        Objects.requireNonNull(richiesta, "Richiesta nulla trovata");
+        String isbn = richiesta.getIsbn();
+        if (richiesta.getTipo() == RichiestaModifica.Tipo.AGGIUNGI)
+        {
+            Libro libro = richiesta.creaLibro();
+            if (giaPresente(libro.getIsbn()))
+            {
+                throw new LibroGiaPresenteException(libro.getIsbn());
+            }
+            return Operazione.salva(libro);
+        }
+        Libro l = trova(isbn);
+        if (l == null)
+        {
+            throw new LibroNonPresente(isbn);
+        }
+        if (richiesta.getTipo() == RichiestaModifica.Tipo.RIMUOVI)
+        {
+            return Operazione.rimuovi(isbn);
+        }
+        // le viste già restituite condividono le istanze della sovrapposizione
+        Libro modificato = AbstractArchivioLibriFile.copia(l);
+        if (richiesta.getTipo() == RichiestaModifica.Tipo.STATO)
+            modificato.setStatoLibro(AbstractArchivioLibriFile.statoDa(richiesta.getValore()));
+        else
+            modificato.setValutazione(AbstractArchivioLibriFile.valutazioneDa(richiesta.getValore()));
+        return Operazione.salva(modificato);
+    }
+
+    /**
+     * Applica un'operazione alla sovrapposizione: un libro rimosso e poi
+     * reinserito finisce in coda, come negli archivi in memoria.
+     */
+    private void applica(Operazione op)
+    {
+        String isbn = op.getIsbn();
+        int posizione = posizione(isbn);
+        boolean nelloSnapshot = posizione >= 0 && !rimossi.get(posizione);
+        if (op.getTipo() == Operazione.Tipo.SALVA)
+        {
+            if (nelloSnapshot) modificati.put(isbn, op.getLibro());
+            else aggiunti.put(isbn, op.getLibro());
+        }
+        else if (aggiunti.remove(isbn) == null && nelloSnapshot)
+        {
+            rimossi.set(posizione);
+            modificati.remove(isbn);
+        }
+    }
+
+    /**
+     * @return {@code true} se l'ISBN è già presente, anche nell'altra forma
+     *         (ISBN-10 o ISBN-13) dello stesso codice
+     */
+    private boolean giaPresente(String isbn)
+    {
+        if (trova(isbn) != null) return true;
+        String altra = Isbn.altraForma(isbn);
+        return altra != null && trova(altra) != null;
+    }
+
+    /**
+     * @return il libro corrente con l'ISBN indicato, {@code null} se assente
+     */
+    private Libro trova(String isbn)
+    {
+        Libro l = aggiunti.get(isbn);
+        if (l != null) return l;
+        l = modificati.get(isbn);
+        if (l != null) return l;
+        int posizione = posizione(isbn);
+        return posizione < 0 || rimossi.get(posizione) ? null : lettore.libro(posizione);
+    }
+
+    /**
+     * @return la posizione dell'ISBN nello snapshot mappato, -1 se assente
+     */
+    private int posizione(String isbn)
+    {
+        if (isbn == null || isbn.isEmpty() || isbn.length() > 15) return -1;
+        long chiave;
+        try
+        {
+            chiave = FormatoBinario.chiaveIsbn(isbn) + 1;
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+        if (chiaviIsbn == null) costruisciTabellaIsbn();
+
+        int maschera = chiaviIsbn.length - 1;
+        for (int i = hash(chiave) & maschera; chiaviIsbn[i] != 0; i = (i + 1) & maschera)
+        {
+            if (chiaviIsbn[i] == chiave) return posizioniIsbn[i];
+        }
+        return -1;
+    }
+
+    private void costruisciTabellaIsbn()
+    {
+        int n = lettore.numeroLibri();
+        int capacita = Integer.highestOneBit(Math.max(n, 8) * 2 - 1) << 1;
+        chiaviIsbn = new long[capacita];
+        posizioniIsbn = new int[capacita];
+        int maschera = capacita - 1;
+        for (int p = 0; p < n; p++)
+        {
+            long chiave = lettore.chiaveIsbn(p) + 1;
+            int i = hash(chiave) & maschera;
+            while (chiaviIsbn[i] != 0) i = (i + 1) & maschera;
+            chiaviIsbn[i] = chiave;
+            posizioniIsbn[i] = p;
+        }
+    }
+
+    private static int hash(long chiave)
+    {
+        long h = chiave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private List<Libro> scorri(Predicate<Libro> condizione) throws IOException
+    {
+        List<Libro> ret = new ArrayList<>();
+        for (Libro l : getLibri())
+            if (condizione.test(l))
+                ret.add(l);
+        return ret;
+    }
+
+    private static boolean corrisponde(Libro libro, List<String> cercate, CriterioRicerca criterio)
+    {
+        List<String> parole = new ArrayList<>(IndiceTestuale.tokenizza(libro.getTitolo()));
+        for (String autore : libro.getAutori())
+            parole.addAll(IndiceTestuale.tokenizza(autore));
+        parole.addAll(IndiceTestuale.tokenizza(libro.getEditore()));
+
+        for (String cercata : cercate)
+        {
+            boolean trovata = false;
+            for (String parola : parole)
+            {
+                trovata = switch (criterio)
+                {
+                    case PAROLA -> parola.equals(cercata);
+                    case PREFISSO -> parola.startsWith(cercata);
+                    case SOTTOSTRINGA -> parola.contains(cercata);
+                };
+                if (trovata) break;
+            }
+            if (!trovata) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return il numero di elementi di {@code validePrima}, crescente, non maggiori di {@code indice}
+     */
+    private static int rimossePrima(int[] validePrima, int indice)
+    {
+        int basso = 0;
+        int alto = validePrima.length;
+        while (basso < alto)
+        {
+            int medio = (basso + alto) >>> 1;
+            if (validePrima[medio] <= indice) basso = medio + 1;
+            else alto = medio;
+        }
+        return basso;
+    }
+
+    /**
+     * Vista sullo stato corrente: i libri dello snapshot non rimossi (sostituiti
+     * dalla versione modificata, se presente) seguiti da quelli aggiunti.
+     * Cattura una copia della sovrapposizione, per cui non cambia con le
+     * modifiche successive.
+     */
+    private List<Libro> vista()
+    {
+        FormatoBinario.Lettore snapshot = lettore;
+        BitSet esclusi = (BitSet) rimossi.clone();
+        Map<String, Libro> sostituiti = new HashMap<>(modificati);
+        List<Libro> coda = new ArrayList<>(aggiunti.values());
+        // per la j-esima posizione rimossa, quante posizioni valide la precedono:
+        // la sequenza non decresce e si può cercare per bisezione
+        int[] validePrima = new int[esclusi.cardinality()];
+        for (int j = 0, p = esclusi.nextSetBit(0); p >= 0; j++, p = esclusi.nextSetBit(p + 1))
+        {
+            validePrima[j] = p - j;
+        }
+        int nelloSnapshot = snapshot.numeroLibri() - validePrima.length;
+
+        return new AbstractList<Libro>()
+        {
+            @Override
+            public Libro get(int indice)
+            {
+                if (indice < 0 || indice >= size())
+                    throw new IndexOutOfBoundsException("Indice: " + indice + ", libri: " + size());
+                if (indice >= nelloSnapshot)
+                    return coda.get(indice - nelloSnapshot);
+
+                // posizione nello snapshot: l'indice più le posizioni rimosse
+                // precedute da al più "indice" posizioni valide
+                int posizione = indice + rimossePrima(validePrima, indice);
+                if (!sostituiti.isEmpty())
+                {
+                    Libro modificato = sostituiti.get(snapshot.isbn(posizione));
+                    if (modificato != null) return modificato;
+                }
+                return snapshot.libro(posizione);
+            }
+
+            @Override
+            public int size()
+            {
+                return nelloSnapshot + coda.size();
+            }
+
+            /**
+             * Scorrimento sequenziale: salta le posizioni rimosse una volta
+             * sola invece di ricalcolarle per ogni indice.
+             */
+            @Override
+            public Iterator<Libro> iterator()
+            {
+                return new Iterator<>()
+                {
+                    private int posizione = esclusi.nextClearBit(0);
+                    private int inCoda;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return posizione < snapshot.numeroLibri() || inCoda < coda.size();
+                    }
+
+                    @Override
+                    public Libro next()
+                    {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        if (posizione >= snapshot.numeroLibri())
+                            return coda.get(inCoda++);
+                        int p = posizione;
+                        posizione = esclusi.nextClearBit(p + 1);
+                        Libro modificato = sostituiti.isEmpty() ? null : sostituiti.get(snapshot.isbn(p));
+                        return modificato != null ? modificato : snapshot.libro(p);
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,14 @@
+package persistenza;
+
+/**
+ * Riceve le modifiche di un {@link ArchivioLibri}.
+ * <p>
+ * Viene chiamato sul thread che ha eseguito la modifica, a modifica
+ * conclusa; non deve bloccarsi a lungo. Le eccezioni lanciate vengono
+ * segnalate senza interrompere la notifica agli altri ascoltatori.
+ */
+@FunctionalInterface
+public interface AscoltatoreArchivio
+{
+    void modificato(EventoArchivio evento);
+}
@@ -0,0 +1,44 @@
+package persistenza;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Ascoltatori registrati su un archivio; la lista può essere modificata
+ * anche durante una notifica.
+ */
+final class AscoltatoriArchivio
+{
+    private final List<AscoltatoreArchivio> ascoltatori = new CopyOnWriteArrayList<>();
+
+    void aggiungi(AscoltatoreArchivio ascoltatore)
+    {
+        ascoltatori.add(Objects.requireNonNull(ascoltatore, "Ascoltatore non può essere null"));
+    }
+
+    void rimuovi(AscoltatoreArchivio ascoltatore)
+    {
+        ascoltatori.remove(ascoltatore);
+    }
+
+    boolean isVuoto()
+    {
+        return ascoltatori.isEmpty();
+    }
+
+    void notifica(EventoArchivio evento)
+    {
+        for (AscoltatoreArchivio a : ascoltatori)
+        {
+            try
+            {
+                a.modificato(evento);
+            }
+            catch (RuntimeException e)
+            {
+                System.err.println("Errore nella notifica di " + evento + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package persistenza;
+
+/**
+ * Modalità di corrispondenza per la ricerca testuale su titolo, autori ed editore.
+ * Il testo cercato viene diviso in parole e ogni parola deve trovare
+ * corrispondenza in almeno una parola del libro.
+ */
+public enum CriterioRicerca
+{
+    /**
+     * La parola del libro deve coincidere con quella cercata.
+     */
+    PAROLA,
+
+    /**
+     * La parola del libro deve iniziare con quella cercata.
+     */
+    PREFISSO,
+
+    /**
+     * La parola del libro deve contenere quella cercata.
+     */
+    SOTTOSTRINGA
+}
@@ -0,0 +1,227 @@
+package persistenza;
+
+import model.Libro;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Elenco immutabile e persistente di libri: ogni modifica restituisce una
+ * nuova versione e lascia intatta quella di partenza, che i lettori possono
+ * continuare a usare senza copie né lock.
+ * <p>
+ * I libri sono divisi in blocchi di al più {@value #DIMENSIONE_BLOCCO}
+ * elementi e le versioni successive condividono i blocchi non toccati:
+ * una modifica copia un solo blocco più l'elenco dei blocchi, cioè circa
+ * N/{@value #DIMENSIONE_BLOCCO} riferimenti invece di N.
+ */
+public final class ElencoLibri extends AbstractList<Libro> implements RandomAccess
+{
+    static final int DIMENSIONE_BLOCCO = 128;
+
+    private static final ElencoLibri VUOTO = new ElencoLibri(new Libro[0][], new int[0], 0, 0);
+
+    private final Libro[][] blocchi;
+    /** Indice nell'elenco del primo libro di ciascun blocco */
+    private final int[] inizi;
+    private final int dimensione;
+    private final long versione;
+
+    private ElencoLibri(Libro[][] blocchi, int[] inizi, int dimensione, long versione)
+    {
+        this.blocchi = blocchi;
+        this.inizi = inizi;
+        this.dimensione = dimensione;
+        this.versione = versione;
+    }
+
+    public static ElencoLibri vuoto()
+    {
+        return VUOTO;
+    }
+
+    /**
+     * @return un elenco con i libri indicati, nello stesso ordine
+     */
+    public static ElencoLibri di(Collection<Libro> libri)
+    {
+        Libro[] tutti = libri.toArray(new Libro[0]);
+        int numeroBlocchi = (tutti.length + DIMENSIONE_BLOCCO - 1) / DIMENSIONE_BLOCCO;
+        Libro[][] blocchi = new Libro[numeroBlocchi][];
+        int[] inizi = new int[numeroBlocchi];
+        for (int k = 0; k < numeroBlocchi; k++)
+        {
+            inizi[k] = k * DIMENSIONE_BLOCCO;
+            blocchi[k] = Arrays.copyOfRange(tutti, inizi[k], Math.min(inizi[k] + DIMENSIONE_BLOCCO, tutti.length));
+            for (Libro l : blocchi[k])
+                Objects.requireNonNull(l, "Libro nullo trovato");
+        }
+        return new ElencoLibri(blocchi, inizi, tutti.length, 0);
+    }
+
+    /**
+     * @return numero di modifiche che separano questa versione dalla sua
+     *         origine ({@link #vuoto()} o {@link #di(Collection)})
+     */
+    public long getVersione()
+    {
+        return versione;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                        NUOVE VERSIONI                              */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * @return una nuova versione con il libro aggiunto in coda
+     */
+    public ElencoLibri conAggiunto(Libro libro)
+    {
+        Objects.requireNonNull(libro, "Libro non può essere null");
+        int n = blocchi.length;
+        if (n > 0 && blocchi[n - 1].length < DIMENSIONE_BLOCCO)
+        {
+            Libro[] ultimo = Arrays.copyOf(blocchi[n - 1], blocchi[n - 1].length + 1);
+            ultimo[ultimo.length - 1] = libro;
+            Libro[][] nuovi = blocchi.clone();
+            nuovi[n - 1] = ultimo;
+            return new ElencoLibri(nuovi, inizi, dimensione + 1, versione + 1);
+        }
+        Libro[][] nuovi = Arrays.copyOf(blocchi, n + 1);
+        nuovi[n] = new Libro[]{libro};
+        int[] nuoviInizi = Arrays.copyOf(inizi, n + 1);
+        nuoviInizi[n] = dimensione;
+        return new ElencoLibri(nuovi, nuoviInizi, dimensione + 1, versione + 1);
+    }
+
+    /**
+     * @return una nuova versione con il libro in posizione {@code indice} sostituito
+     */
+    public ElencoLibri conSostituito(int indice, Libro libro)
+    {
+        Objects.requireNonNull(libro, "Libro non può essere null");
+        int k = blocco(indice);
+        Libro[] blocco = blocchi[k].clone();
+        blocco[indice - inizi[k]] = libro;
+        Libro[][] nuovi = blocchi.clone();
+        nuovi[k] = blocco;
+        return new ElencoLibri(nuovi, inizi, dimensione, versione + 1);
+    }
+
+    /**
+     * @return una nuova versione senza il libro in posizione {@code indice}
+     */
+    public ElencoLibri senza(int indice)
+    {
+        int k = blocco(indice);
+        Libro[][] nuovi;
+        int[] nuoviInizi;
+        if (blocchi[k].length == 1)
+        {
+            // il blocco resterebbe vuoto: lo si elimina
+            nuovi = new Libro[blocchi.length - 1][];
+            System.arraycopy(blocchi, 0, nuovi, 0, k);
+            System.arraycopy(blocchi, k + 1, nuovi, k, blocchi.length - k - 1);
+            nuoviInizi = new int[inizi.length - 1];
+            System.arraycopy(inizi, 0, nuoviInizi, 0, k);
+            for (int j = k; j < nuoviInizi.length; j++)
+                nuoviInizi[j] = inizi[j + 1] - 1;
+        }
+        else
+        {
+            Libro[] vecchio = blocchi[k];
+            int pos = indice - inizi[k];
+            Libro[] blocco = new Libro[vecchio.length - 1];
+            System.arraycopy(vecchio, 0, blocco, 0, pos);
+            System.arraycopy(vecchio, pos + 1, blocco, pos, vecchio.length - pos - 1);
+            nuovi = blocchi.clone();
+            nuovi[k] = blocco;
+            nuoviInizi = inizi.clone();
+            for (int j = k + 1; j < nuoviInizi.length; j++)
+                nuoviInizi[j]--;
+        }
+        return new ElencoLibri(nuovi, nuoviInizi, dimensione - 1, versione + 1);
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                              LETTURA                               */
+    /* ------------------------------------------------------------------ */
+
+    @Override
+    public Libro get(int indice)
+    {
+        int k = blocco(indice);
+        return blocchi[k][indice - inizi[k]];
+    }
+
+    @Override
+    public int size()
+    {
+        return dimensione;
+    }
+
+    @Override
+    public int indexOf(Object o)
+    {
+        int i = 0;
+        for (Libro[] blocco : blocchi)
+        {
+            for (Libro l : blocco)
+            {
+                if (l.equals(o)) return i;
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Iterator<Libro> iterator()
+    {
+        return new Iterator<>()
+        {
+            private int k;
+            private int pos;
+
+            @Override
+            public boolean hasNext()
+            {
+                return k < blocchi.length;
+            }
+
+            @Override
+            public Libro next()
+            {
+                if (!hasNext()) throw new NoSuchElementException();
+                Libro l = blocchi[k][pos++];
+                if (pos == blocchi[k].length)
+                {
+                    k++;
+                    pos = 0;
+                }
+                return l;
+            }
+        };
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                           HELPER PRIVATI                            */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * @return il blocco che contiene la posizione indicata; i blocchi non
+     *         sono mai vuoti, per cui gli inizi sono strettamente crescenti
+     */
+    private int blocco(int indice)
+    {
+        if (indice < 0 || indice >= dimensione)
+            throw new IndexOutOfBoundsException("Indice: " + indice + ", libri: " + dimensione);
+        int k = Arrays.binarySearch(inizi, indice);
+        return k >= 0 ? k : -k - 2;
+    }
+}
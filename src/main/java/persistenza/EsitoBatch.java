@@ -0,0 +1,105 @@
+package persistenza;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Risultato di un lotto di modifiche: quante sono state applicate e,
+ * per ciascuna scartata, la posizione nel lotto e il motivo.
+ */
+public final class EsitoBatch
+{
+    /**
+     * Modifica scartata.
+     */
+    public static final class Errore
+    {
+        private final int posizione;
+        private final RichiestaModifica richiesta;
+        private final RuntimeException causa;
+
+        public Errore(int posizione, RichiestaModifica richiesta, RuntimeException causa)
+        {
+            this.posizione = posizione;
+            this.richiesta = richiesta;
+            this.causa = causa;
+        }
+
+        /**
+         * @return posizione della richiesta nel lotto, a partire da 0
+         */
+        public int getPosizione()
+        {
+            return posizione;
+        }
+
+        public RichiestaModifica getRichiesta()
+        {
+            return richiesta;
+        }
+
+        /**
+         * @return l'eccezione che ha fatto scartare la richiesta
+         *         (es. {@link LibroGiaPresenteException})
+         */
+        public RuntimeException getCausa()
+        {
+            return causa;
+        }
+
+        public String getMessaggio()
+        {
+            return causa.getMessage();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "#" + posizione + " " + richiesta + ": " + causa.getMessage();
+        }
+    }
+
+    private int applicate;
+    private final List<Errore> errori = new ArrayList<>();
+
+    void applicata()
+    {
+        applicate++;
+    }
+
+    void scartata(int posizione, RichiestaModifica richiesta, RuntimeException causa)
+    {
+        errori.add(new Errore(posizione, richiesta, causa));
+    }
+
+    /**
+     * @return numero di modifiche applicate e rese persistenti
+     */
+    public int getApplicate()
+    {
+        return applicate;
+    }
+
+    /**
+     * @return le modifiche scartate, nell'ordine del lotto
+     */
+    public List<Errore> getErrori()
+    {
+        return Collections.unmodifiableList(errori);
+    }
+
+    /**
+     * @return {@code true} se tutte le modifiche del lotto sono state applicate
+     */
+    public boolean isCompleto()
+    {
+        return errori.isEmpty();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "EsitoBatch{applicate=" + applicate + ", scartate=" + errori.size() + "}";
+    }
+}
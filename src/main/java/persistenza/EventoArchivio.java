@@ -0,0 +1,110 @@
+package persistenza;
+
+import model.Libro;
+
+/**
+ * Modifica avvenuta in un {@link ArchivioLibri}, notificata agli
+ * {@link AscoltatoreArchivio} registrati.
+ */
+public final class EventoArchivio
+{
+    /**
+     * Tipo di modifica.
+     */
+    public enum Tipo
+    {
+        AGGIUNTO,
+        RIMOSSO,
+        STATO_MODIFICATO,
+        VALUTAZIONE_MODIFICATA,
+        /**
+         * Sono cambiati altri dati del libro (titolo, autori, editore, genere),
+         * ad esempio per una modifica esterna del file.
+         */
+        MODIFICATO,
+        /**
+         * Il contenuto è cambiato in blocco (caricamento, svuotamento, lotto
+         * di modifiche): i libri vanno riletti dall'archivio.
+         */
+        RICARICATO
+    }
+
+    private final Tipo tipo;
+    private final Libro libro;
+    private final int posizione;
+
+    private EventoArchivio(Tipo tipo, Libro libro, int posizione)
+    {
+        this.tipo = tipo;
+        this.libro = libro;
+        this.posizione = posizione;
+    }
+
+    static EventoArchivio aggiunto(Libro libro, int posizione)
+    {
+        return new EventoArchivio(Tipo.AGGIUNTO, libro, posizione);
+    }
+
+    static EventoArchivio rimosso(Libro libro, int posizione)
+    {
+        return new EventoArchivio(Tipo.RIMOSSO, libro, posizione);
+    }
+
+    static EventoArchivio statoModificato(Libro libro, int posizione)
+    {
+        return new EventoArchivio(Tipo.STATO_MODIFICATO, libro, posizione);
+    }
+
+    static EventoArchivio valutazioneModificata(Libro libro, int posizione)
+    {
+        return new EventoArchivio(Tipo.VALUTAZIONE_MODIFICATA, libro, posizione);
+    }
+
+    static EventoArchivio modificato(Libro libro, int posizione)
+    {
+        return new EventoArchivio(Tipo.MODIFICATO, libro, posizione);
+    }
+
+    static EventoArchivio ricaricato()
+    {
+        return new EventoArchivio(Tipo.RICARICATO, null, -1);
+    }
+
+    public Tipo getTipo()
+    {
+        return tipo;
+    }
+
+    /**
+     * @return il libro aggiunto, rimosso o nella sua nuova versione;
+     *         {@code null} per {@link Tipo#RICARICATO}
+     */
+    public Libro getLibro()
+    {
+        return libro;
+    }
+
+    /**
+     * @return ISBN del libro, {@code null} per {@link Tipo#RICARICATO}
+     */
+    public String getIsbn()
+    {
+        return libro == null ? null : libro.getIsbn();
+    }
+
+    /**
+     * @return posizione del libro nell'elenco dell'archivio ({@link ArchivioLibri#getLibri()}),
+     *         prima della rimozione per {@link Tipo#RIMOSSO}; -1 se l'archivio
+     *         non la conosce senza scorrere i libri
+     */
+    public int getPosizione()
+    {
+        return posizione;
+    }
+
+    @Override
+    public String toString()
+    {
+        return libro == null ? tipo.name() : tipo + " " + libro.getIsbn() + " @" + posizione;
+    }
+}
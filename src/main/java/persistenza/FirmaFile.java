@@ -0,0 +1,72 @@
+package persistenza;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+/**
+ * Stato di un gruppo di file (identità, dimensione e data di modifica) in un
+ * dato istante: due firme uguali indicano che nessuno dei file è stato
+ * riscritto nel frattempo, senza doverne leggere il contenuto.
+ * <p>
+ * L'identità del file (l'inode, dove il file system la fornisce) distingue
+ * anche un file sostituito da uno nuovo con la stessa dimensione nello
+ * stesso intervallo di risoluzione della data di modifica.
+ */
+final class FirmaFile
+{
+    private final Object[] attributi;
+
+    private FirmaFile(Object[] attributi)
+    {
+        this.attributi = attributi;
+    }
+
+    /**
+     * Legge la firma dei file indicati; un file mancante ha una firma propria.
+     *
+     * @throws IOException se gli attributi di un file esistente non sono leggibili
+     */
+    static FirmaFile di(Path... file) throws IOException
+    {
+        Object[] attributi = new Object[file.length * 3];
+        for (int i = 0; i < file.length; i++)
+        {
+            try
+            {
+                BasicFileAttributes a = Files.readAttributes(file[i], BasicFileAttributes.class);
+                attributi[i * 3] = a.fileKey();
+                attributi[i * 3 + 1] = a.size();
+                attributi[i * 3 + 2] = a.lastModifiedTime();
+            }
+            catch (NoSuchFileException e)
+            {
+                attributi[i * 3 + 1] = -1L;
+            }
+        }
+        return new FirmaFile(attributi);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof FirmaFile)) return false;
+        return Arrays.equals(attributi, ((FirmaFile) o).attributi);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(attributi);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "FirmaFile" + Arrays.toString(attributi);
+    }
+}
@@ -0,0 +1,264 @@
+package persistenza;
+
+import model.Genere;
+import model.Libro;
+import model.Stato;
+import model.Valutazione;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Formato binario compatto per lo snapshot dei libri.
+ * <p>
+ * Struttura del file (interi big-endian):
+ * <pre>
+ * int    MAGIA ("LIBR")
+ * short  VERSIONE
+ * int    numero di stringhe del dizionario, poi per ciascuna: int lunghezza + byte UTF-8
+ * int    numero di libri
+ * record per ciascun libro:
+ *        int   lunghezza del record (escluso questo campo)
+ *        long  ISBN come numero, byte numero di cifre (10 o 13)
+ *        int   lunghezza + byte UTF-8 del titolo
+ *        int   indice dell'editore nel dizionario
+ *        short numero di autori, poi un int per ciascun autore nel dizionario
+ *        byte  ordinale di genere, stato e valutazione (-1 se assente)
+ * long[] posizione di ogni record dall'inizio del file
+ * long   posizione della tabella precedente
+ * </pre>
+ * Editori e autori, che si ripetono tra i libri, sono scritti una sola volta
+ * nel dizionario; la tabella finale delle posizioni permette di leggere
+ * un singolo record senza decodificare quelli precedenti.
+ */
+public final class FormatoBinario
+{
+    /** "LIBR" in ASCII */
+    public static final int MAGIA = 0x4C494252;
+    public static final short VERSIONE = 1;
+
+    private static final Genere[] GENERI = Genere.values();
+    private static final Stato[] STATI = Stato.values();
+    private static final Valutazione[] VALUTAZIONI = Valutazione.values();
+
+    private FormatoBinario()
+    {
+    }
+
+    /**
+     * Scrive i libri nel formato binario. Lo stream non viene chiuso.
+     */
+    public static void scrivi(Collection<Libro> libri, OutputStream destinazione) throws IOException
+    {
+        Map<String, Integer> dizionario = new LinkedHashMap<>();
+        for (Libro l : libri)
+        {
+            dizionario.putIfAbsent(l.getEditore(), dizionario.size());
+            for (String autore : l.getAutori())
+                dizionario.putIfAbsent(autore, dizionario.size());
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(destinazione, 1 << 16));
+        long posizione = 0;
+        out.writeInt(MAGIA);
+        out.writeShort(VERSIONE);
+        posizione += 6;
+
+        out.writeInt(dizionario.size());
+        posizione += 4;
+        for (String s : dizionario.keySet())
+            posizione += scriviStringa(out, s);
+
+        out.writeInt(libri.size());
+        posizione += 4;
+
+        long[] posizioni = new long[libri.size()];
+        int i = 0;
+        for (Libro l : libri)
+        {
+            posizioni[i++] = posizione;
+            byte[] titolo = l.getTitolo().getBytes(StandardCharsets.UTF_8);
+            int lunghezza = 8 + 1 + 4 + titolo.length + 4 + 2 + 4 * l.getAutori().size() + 3;
+
+            out.writeInt(lunghezza);
+            out.writeLong(l.getChiaveIsbn() >>> 4);
+            out.writeByte((int) (l.getChiaveIsbn() & 15));
+            out.writeInt(titolo.length);
+            out.write(titolo);
+            out.writeInt(dizionario.get(l.getEditore()));
+            out.writeShort(l.getAutori().size());
+            for (String autore : l.getAutori())
+                out.writeInt(dizionario.get(autore));
+            out.writeByte(ordinale(l.getGenere()));
+            out.writeByte(ordinale(l.getStatoLibro()));
+            out.writeByte(ordinale(l.getValutazione()));
+            posizione += 4 + lunghezza;
+        }
+
+        for (long p : posizioni)
+            out.writeLong(p);
+        out.writeLong(posizione);
+        out.flush();
+    }
+
+    /**
+     * Vista in lettura su uno snapshot binario: il dizionario viene decodificato
+     * subito, i record soltanto quando richiesti.
+     */
+    public static final class Lettore
+    {
+        private final ByteBuffer dati;
+        private final String[] dizionario;
+        private final int numeroLibri;
+        private final int inizioTabella;
+
+        /**
+         * @param dati il contenuto dello snapshot, dalla posizione 0
+         * @throws IOException se il contenuto non è uno snapshot valido
+         */
+        public Lettore(ByteBuffer dati) throws IOException
+        {
+            this.dati = dati;
+            try
+            {
+                if (dati.getInt(0) != MAGIA)
+                    throw new IOException("Il file non è uno snapshot binario dei libri");
+                if (dati.getShort(4) != VERSIONE)
+                    throw new IOException("Versione dello snapshot non supportata: " + dati.getShort(4));
+
+                ByteBuffer b = dati.duplicate().position(6);
+                dizionario = new String[b.getInt()];
+                for (int i = 0; i < dizionario.length; i++)
+                    dizionario[i] = leggiStringa(b);
+                numeroLibri = b.getInt();
+                inizioTabella = Math.toIntExact(dati.getLong(dati.limit() - 8));
+            }
+            catch (BufferUnderflowException | IndexOutOfBoundsException | ArithmeticException e)
+            {
+                throw new IOException("Snapshot binario troncato o corrotto", e);
+            }
+        }
+
+        public int numeroLibri()
+        {
+            return numeroLibri;
+        }
+
+        /**
+         * Decodifica il libro in posizione {@code indice}, in tempo costante
+         * grazie alla tabella delle posizioni.
+         */
+        public Libro libro(int indice)
+        {
+            if (indice < 0 || indice >= numeroLibri)
+                throw new IndexOutOfBoundsException("Indice: " + indice + ", libri: " + numeroLibri);
+            int posizione = Math.toIntExact(dati.getLong(inizioTabella + 8 * indice));
+            return leggiRecord(dati.duplicate().position(posizione + 4));
+        }
+
+        /**
+         * @return l'ISBN del libro in posizione {@code indice}, senza decodificare il resto del record
+         */
+        public String isbn(int indice)
+        {
+            int posizione = Math.toIntExact(dati.getLong(inizioTabella + 8 * indice));
+            return componiIsbn(dati.getLong(posizione + 4), dati.get(posizione + 12));
+        }
+
+        /**
+         * @return la chiave numerica dell'ISBN in posizione {@code indice},
+         *         come {@link FormatoBinario#chiaveIsbn(String)}, senza creare stringhe
+         */
+        public long chiaveIsbn(int indice)
+        {
+            int posizione = Math.toIntExact(dati.getLong(inizioTabella + 8 * indice));
+            return dati.getLong(posizione + 4) * 16 + dati.get(posizione + 12);
+        }
+
+        /**
+         * Decodifica tutti i libri con un unico passaggio sequenziale.
+         */
+        public void leggiTutti(Map<String, Libro> letti)
+        {
+            ByteBuffer b = dati.duplicate();
+            if (numeroLibri > 0)
+                b.position(Math.toIntExact(dati.getLong(inizioTabella)));
+            for (int i = 0; i < numeroLibri; i++)
+            {
+                b.getInt();
+                Libro l = leggiRecord(b);
+                letti.put(l.getIsbn(), l);
+            }
+        }
+
+        private Libro leggiRecord(ByteBuffer b)
+        {
+            String isbn = componiIsbn(b.getLong(), b.get());
+            String titolo = leggiStringa(b);
+            String editore = dizionario[b.getInt()];
+            int numeroAutori = b.getShort();
+            Set<String> autori = new TreeSet<>();
+            for (int i = 0; i < numeroAutori; i++)
+                autori.add(dizionario[b.getInt()]);
+            byte genere = b.get();
+            byte stato = b.get();
+            byte valutazione = b.get();
+
+            Libro libro = new Libro(titolo, autori, editore, isbn, GENERI[genere].name());
+            if (stato >= 0) libro.setStatoLibro(STATI[stato]);
+            if (valutazione >= 0) libro.setValutazione(VALUTAZIONI[valutazione]);
+            return libro;
+        }
+    }
+
+    /**
+     * Codifica un ISBN come numero, distinguendo le cifre iniziali a zero:
+     * valore numerico moltiplicato per 16 più il numero di cifre
+     * (la stessa rappresentazione di {@link Libro#getChiaveIsbn()}).
+     *
+     * @throws NumberFormatException se l'ISBN non è composto da cifre
+     */
+    public static long chiaveIsbn(String isbn)
+    {
+        return Long.parseLong(isbn) * 16 + isbn.length();
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                           HELPER PRIVATI                            */
+    /* ------------------------------------------------------------------ */
+    private static int scriviStringa(DataOutputStream out, String s) throws IOException
+    {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+        return 4 + b.length;
+    }
+
+    private static String leggiStringa(ByteBuffer b)
+    {
+        byte[] s = new byte[b.getInt()];
+        b.get(s);
+        return new String(s, StandardCharsets.UTF_8);
+    }
+
+    private static byte ordinale(Enum<?> e)
+    {
+        return (byte) (e == null ? -1 : e.ordinal());
+    }
+
+    private static String componiIsbn(long numero, int cifre)
+    {
+        String s = Long.toString(numero);
+        return s.length() >= cifre ? s : "0".repeat(cifre - s.length()) + s;
+    }
+}
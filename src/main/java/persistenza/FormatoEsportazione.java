@@ -0,0 +1,123 @@
+package persistenza;
+
+import model.Libro;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Formati in cui l'archivio può essere esportato con
+ * {@link ArchivioLibri#esporta(FormatoEsportazione, OutputStream)}.
+ * I libri vengono scritti uno alla volta direttamente sullo stream.
+ */
+public enum FormatoEsportazione
+{
+    /**
+     * Lo stesso CSV di {@link ArchivioLibriFileCsv}, con intestazione.
+     */
+    CSV,
+    /**
+     * Un oggetto JSON per riga, con i campi isbn, titolo, autori, editore,
+     * genere, stato e valutazione.
+     */
+    JSON_LINES,
+    /**
+     * Lo snapshot di {@link FormatoBinario}, leggibile da
+     * {@link ArchivioLibriFileBinario} e {@link ArchivioLibriMappato}.
+     * Richiede due passaggi sui libri: il primo raccoglie il dizionario
+     * di autori ed editori.
+     */
+    BINARIO;
+
+    /**
+     * Scrive i libri indicati nel formato; lo stream viene svuotato ma non chiuso.
+     *
+     * @param libri versione da esportare; non deve cambiare durante la scrittura
+     */
+    public void scrivi(Collection<Libro> libri, OutputStream out) throws IOException
+    {
+        switch (this)
+        {
+            case CSV:
+                ArchivioLibriFileCsv.scriviCsv(libri, out);
+                break;
+            case JSON_LINES:
+                scriviJsonLines(libri, out);
+                break;
+            case BINARIO:
+                FormatoBinario.scrivi(libri, out);
+                break;
+        }
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                           HELPER PRIVATI                            */
+    /* ------------------------------------------------------------------ */
+
+    private static void scriviJsonLines(Iterable<Libro> libri, OutputStream out) throws IOException
+    {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        for (Libro l : libri)
+        {
+            w.write("{\"isbn\":");
+            stringa(w, l.getIsbn());
+            w.write(",\"titolo\":");
+            stringa(w, l.getTitolo());
+            w.write(",\"autori\":[");
+            boolean primo = true;
+            for (String autore : l.getAutori())
+            {
+                if (!primo) w.write(',');
+                stringa(w, autore);
+                primo = false;
+            }
+            w.write("],\"editore\":");
+            stringa(w, l.getEditore());
+            w.write(",\"genere\":");
+            enumerato(w, l.getGenere());
+            w.write(",\"stato\":");
+            enumerato(w, l.getStatoLibro());
+            w.write(",\"valutazione\":");
+            enumerato(w, l.getValutazione());
+            w.write("}\n");
+        }
+        w.flush();
+    }
+
+    private static void enumerato(Writer w, Enum<?> e) throws IOException
+    {
+        if (e == null) w.write("null");
+        else stringa(w, e.name());
+    }
+
+    private static void stringa(Writer w, String s) throws IOException
+    {
+        if (s == null)
+        {
+            w.write("null");
+            return;
+        }
+        w.write('"');
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            switch (c)
+            {
+                case '"': w.write("\\\""); break;
+                case '\\': w.write("\\\\"); break;
+                case '\n': w.write("\\n"); break;
+                case '\r': w.write("\\r"); break;
+                case '\t': w.write("\\t"); break;
+                default:
+                    if (c < 0x20) w.write(String.format("\\u%04x", (int) c));
+                    else w.write(c);
+            }
+        }
+        w.write('"');
+    }
+}
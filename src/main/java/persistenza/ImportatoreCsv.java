@@ -0,0 +1,243 @@
+package persistenza;
+
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.exceptions.CsvValidationException;
+import model.Isbn;
+import model.Libro;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Importazione in streaming di file CSV di grandi dimensioni
+ * (stesso formato di {@link ArchivioLibriFileCsv}, separatore <code>;</code>).
+ * <p>
+ * Il file viene letto a blocchi di righe: mentre un blocco viene convertito
+ * in libri e validato in parallelo su un {@link ForkJoinPool}, si legge il
+ * blocco successivo. I libri validi di ogni blocco vengono aggiunti
+ * all'archivio con {@link ArchivioLibri#aggiungiLibri(java.util.Collection)},
+ * cioè con una sola scrittura per blocco. In memoria restano al più due
+ * blocchi di righe, più gli ISBN già incontrati per scartare i duplicati.
+ * <p>
+ * Gli ISBN vengono normalizzati (senza trattini né spazi), verificati con la
+ * cifra di controllo e convertiti nella forma a 13 cifre, per cui le due forme
+ * dello stesso codice vengono riconosciute come duplicati. A parità di ISBN
+ * vale la prima riga del file; i libri già presenti nell'archivio, anche con
+ * l'ISBN nell'altra forma, non vengono sovrascritti.
+ */
+public final class ImportatoreCsv
+{
+    /** Righe lette e validate insieme */
+    public static final int DIMENSIONE_BLOCCO = 10_000;
+
+    /** Righe sotto le quali la validazione di un blocco non viene più divisa */
+    private static final int SOGLIA_DIVISIONE = 512;
+
+    private final ArchivioLibri archivio;
+    private final int dimensioneBlocco;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param archivio archivio di destinazione
+     */
+    public ImportatoreCsv(ArchivioLibri archivio)
+    {
+        this(archivio, DIMENSIONE_BLOCCO, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param archivio         archivio di destinazione
+     * @param dimensioneBlocco numero di righe lette e aggiunte insieme
+     * @param pool             pool su cui convertire e validare le righe
+     */
+    public ImportatoreCsv(ArchivioLibri archivio, int dimensioneBlocco, ForkJoinPool pool)
+    {
+        if (dimensioneBlocco <= 0)
+            throw new IllegalArgumentException("Dimensione del blocco non valida: " + dimensioneBlocco);
+        this.archivio = Objects.requireNonNull(archivio, "Archivio non può essere null");
+        this.dimensioneBlocco = dimensioneBlocco;
+        this.pool = Objects.requireNonNull(pool, "Pool non può essere null");
+    }
+
+    /**
+     * Importa il file CSV indicato.
+     *
+     * @throws IOException se il file non è leggibile o l'archivio non può essere salvato
+     */
+    public RapportoImportazione importa(Path csv) throws IOException
+    {
+        try (Reader sorgente = Files.newBufferedReader(csv)) {
+            return importa(sorgente);
+        }
+    }
+
+    /**
+     * Importa le righe CSV lette da {@code sorgente}; l'intestazione, se
+     * presente, viene saltata. Lo stream non viene chiuso.
+     *
+     * @throws IOException se la lettura non va a buon fine o l'archivio non può essere salvato
+     */
+    public RapportoImportazione importa(Reader sorgente) throws IOException
+    {
+        long inizio = System.nanoTime();
+        RapportoImportazione rapporto = new RapportoImportazione();
+        Set<String> visti = new HashSet<>();
+
+        CSVReader reader = new CSVReaderBuilder(sorgente)
+                .withCSVParser(new CSVParserBuilder().withSeparator(';').build())
+                .build();
+        try {
+            int[] riga = {0};
+            Blocco corrente = leggiBlocco(reader, riga);
+            while (corrente != null) {
+                ForkJoinTask<?> analisi = pool.submit(corrente.analisi());
+                // si legge il blocco successivo mentre quello corrente viene validato
+                Blocco successivo = leggiBlocco(reader, riga);
+                analisi.join();
+                unisci(corrente, visti, rapporto);
+                corrente = successivo;
+            }
+        } catch (CsvValidationException e) {
+            throw new IOException("CSV non valido: " + e.getMessage(), e);
+        }
+
+        rapporto.concludi(System.nanoTime() - inizio);
+        return rapporto;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                           HELPER PRIVATI                            */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * @return le prossime righe (al più {@link #dimensioneBlocco}),
+     *         {@code null} a fine file
+     */
+    private Blocco leggiBlocco(CSVReader reader, int[] riga) throws IOException, CsvValidationException
+    {
+        Blocco blocco = new Blocco(riga[0] + 1);
+        String[] rec;
+        while (blocco.record.size() < dimensioneBlocco && (rec = reader.readNext()) != null) {
+            riga[0]++;
+            if (riga[0] == 1 && rec.length > 0 && "isbn".equalsIgnoreCase(rec[0].trim())) {
+                blocco.primaRiga++;
+                continue;
+            }
+            blocco.record.add(rec);
+        }
+        return blocco.record.isEmpty() ? null : blocco;
+    }
+
+    /**
+     * Scarta i duplicati del blocco e aggiunge all'archivio i libri rimasti.
+     */
+    private void unisci(Blocco blocco, Set<String> visti, RapportoImportazione rapporto) throws IOException
+    {
+        List<Libro> nuovi = new ArrayList<>();
+        List<Integer> righe = new ArrayList<>();
+        for (int i = 0; i < blocco.libri.length; i++) {
+            rapporto.rigaLetta();
+            Libro libro = blocco.libri[i];
+            if (libro == null) {
+                rapporto.scartata(blocco.primaRiga + i, blocco.errori[i]);
+            } else if (!visti.add(libro.getIsbn())) {
+                rapporto.duplicata();
+            } else {
+                nuovi.add(libro);
+                righe.add(blocco.primaRiga + i);
+            }
+        }
+        if (nuovi.isEmpty()) {
+            return;
+        }
+
+        EsitoBatch esito = archivio.aggiungiLibri(nuovi);
+        rapporto.importati(esito.getApplicate());
+        for (EsitoBatch.Errore e : esito.getErrori()) {
+            if (e.getCausa() instanceof LibroGiaPresenteException)
+                rapporto.giaPresente();
+            else
+                rapporto.scartata(righe.get(e.getPosizione()), e.getMessaggio());
+        }
+    }
+
+    /**
+     * Righe lette dal file e, dopo l'analisi, il libro o l'errore di ciascuna.
+     */
+    private static final class Blocco
+    {
+        /** Numero nel file della prima riga del blocco, a partire da 1 */
+        int primaRiga;
+        final List<String[]> record = new ArrayList<>();
+        Libro[] libri;
+        String[] errori;
+
+        Blocco(int primaRiga)
+        {
+            this.primaRiga = primaRiga;
+        }
+
+        /**
+         * @return il task che converte e valida tutte le righe del blocco
+         */
+        Analisi analisi()
+        {
+            libri = new Libro[record.size()];
+            errori = new String[record.size()];
+            return new Analisi(this, 0, record.size());
+        }
+    }
+
+    /**
+     * Converte e valida un intervallo di righe di un blocco, dividendolo
+     * a metà finché è più lungo di {@link #SOGLIA_DIVISIONE}.
+     */
+    private static final class Analisi extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        /** Righe e risultati condivisi tra i sotto-compiti; non vengono mai serializzati */
+        private final transient Blocco blocco;
+        private final int da;
+        private final int a;
+
+        Analisi(Blocco blocco, int da, int a)
+        {
+            this.blocco = blocco;
+            this.da = da;
+            this.a = a;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (a - da > SOGLIA_DIVISIONE) {
+                int meta = (da + a) >>> 1;
+                invokeAll(new Analisi(blocco, da, meta), new Analisi(blocco, meta, a));
+                return;
+            }
+            for (int i = da; i < a; i++) {
+                try {
+                    String[] rec = blocco.record.get(i);
+                    if (rec.length > 0)
+                        rec[0] = Isbn.aIsbn13(Isbn.normalizza(rec[0].trim()));
+                    blocco.libri[i] = ArchivioLibriFileCsv.daRecord(rec);
+                } catch (RuntimeException e) {
+                    blocco.errori[i] = e.getMessage();
+                }
+            }
+        }
+    }
+}
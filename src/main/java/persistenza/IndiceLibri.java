@@ -0,0 +1,472 @@
+package persistenza;
+
+import Strategy.OrdinamentoPerAutore;
+import Strategy.OrdinamentoPerChiave;
+import Strategy.OrdinamentoPerTitolo;
+import model.Genere;
+import model.Libro;
+import model.Stato;
+import model.Valutazione;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Indici in memoria affiancati all'elenco ordinato dei libri di un archivio.
+ * <p>
+ * Ogni libro occupa una posizione (slot) assegnata in ordine di inserimento,
+ * quindi l'ordine degli slot coincide con quello dell'elenco. Sugli slot sono
+ * definiti:
+ * <ul>
+ *     <li>un indice per ISBN, per individuare un libro in tempo costante;</li>
+ *     <li>un {@link BitSet} per ciascun valore di {@link Genere}, {@link Stato}
+ *     e {@link Valutazione}, per cui i filtri diventano intersezioni di bit
+ *     invece di scansioni dell'elenco;</li>
+ *     <li>un {@link IndiceTestuale} su titolo, autori ed editore e un
+ *     {@link IndiceSuggerimenti} per la ricerca durante la digitazione,
+ *     costruiti alla prima ricerca e poi mantenuti a ogni modifica;</li>
+ *     <li>una {@link VistaOrdinata} per ciascun {@link CriterioOrdinamento},
+ *     costruita al primo ordinamento e poi mantenuta a ogni modifica.</li>
+ * </ul>
+ * Le rimozioni lasciano lo slot vuoto; quando gli slot vuoti diventano
+ * troppi gli indici vengono ricompattati. La posizione di un libro
+ * nell'elenco è il suo slot meno gli slot vuoti che lo precedono, contati
+ * con un albero di Fenwick senza scorrere l'elenco. Vanno mantenuti allineati
+ * all'elenco a ogni modifica, e ricostruiti se l'elenco viene riordinato.
+ */
+public class IndiceLibri
+{
+    /** Slot vuoti oltre i quali conviene ricompattare */
+    private static final int SLOT_VUOTI_MINIMI = 64;
+
+    private final Map<String, Integer> slotPerIsbn = new HashMap<>();
+    private Libro[] slot = new Libro[16];
+    private int usati;
+    private int vuoti;
+    /** Albero di Fenwick degli slot vuoti, con indici a partire da 1 */
+    private int[] vuotiPrima = new int[slot.length + 1];
+
+    private final EnumMap<Genere, BitSet> perGenere = new EnumMap<>(Genere.class);
+    private final EnumMap<Stato, BitSet> perStato = new EnumMap<>(Stato.class);
+    private final EnumMap<Valutazione, BitSet> perValutazione = new EnumMap<>(Valutazione.class);
+    /**
+     * Indice testuale, {@code null} finché non serve a una ricerca.
+     * Gli indici pigri possono essere costruiti da più lettori contemporanei,
+     * per cui la loro creazione è sincronizzata.
+     */
+    private volatile IndiceTestuale testo;
+    /** Indice dei suggerimenti, {@code null} finché non serve a una ricerca */
+    private volatile IndiceSuggerimenti suggerimenti;
+    /**
+     * Viste ordinate costruite finora, una per criterio richiesto; la mappa
+     * viene sostituita, mai modificata, per essere letta senza sincronizzazione
+     */
+    private volatile Map<CriterioOrdinamento, VistaOrdinata> ordinate = Map.of();
+
+    public IndiceLibri()
+    {
+        for (Genere g : Genere.values()) perGenere.put(g, new BitSet());
+        for (Stato s : Stato.values()) perStato.put(s, new BitSet());
+        for (Valutazione v : Valutazione.values()) perValutazione.put(v, new BitSet());
+    }
+
+    /**
+     * Ricostruisce gli indici a partire dall'elenco completo dei libri.
+     *
+     * @param libri tutti i libri dell'archivio, nell'ordine dell'elenco
+     */
+    public void ricostruisci(Collection<Libro> libri)
+    {
+        svuota();
+        if (slot.length < libri.size())
+        {
+            slot = new Libro[libri.size()];
+            vuotiPrima = new int[slot.length + 1];
+        }
+        for (Libro l : libri)
+        {
+            aggiungi(l);
+        }
+    }
+
+    public void aggiungi(Libro libro)
+    {
+        if (usati == slot.length)
+        {
+            slot = Arrays.copyOf(slot, usati * 2);
+            ricostruisciVuoti();
+        }
+        int id = usati++;
+        slot[id] = libro;
+        slotPerIsbn.put(libro.getIsbn(), id);
+        imposta(libro, id);
+        if (testo != null) testo.aggiungi(id, libro);
+        if (suggerimenti != null) suggerimenti.aggiungi(id, libro);
+        for (VistaOrdinata vista : ordinate.values()) vista.aggiungi(id, libro);
+    }
+
+    /**
+     * @return il libro rimosso dall'indice, {@code null} se l'ISBN non era presente
+     */
+    public Libro rimuovi(String isbn)
+    {
+        Integer id = slotPerIsbn.remove(isbn);
+        if (id == null)
+        {
+            return null;
+        }
+        Libro libro = slot[id];
+        slot[id] = null;
+        cancella(id);
+        for (int k = id + 1; k < vuotiPrima.length; k += k & -k) vuotiPrima[k]++;
+        if (testo != null) testo.rimuovi(id, libro);
+        if (suggerimenti != null) suggerimenti.rimuovi(id, libro);
+        for (VistaOrdinata vista : ordinate.values()) vista.rimuovi(id);
+        vuoti++;
+
+        if (vuoti > SLOT_VUOTI_MINIMI && vuoti > usati / 2)
+        {
+            ricompatta();
+        }
+        return libro;
+    }
+
+    /**
+     * Riallinea gli indici dopo la modifica di un libro già indicizzato.
+     * Il libro può essere la stessa istanza modificata oppure una nuova
+     * istanza con lo stesso ISBN, che prende il posto della precedente; in
+     * questo caso, se titolo, autori o editore sono cambiati, vengono
+     * aggiornati anche l'indice testuale e quello dei suggerimenti.
+     */
+    public void aggiorna(Libro libro)
+    {
+        Integer id = slotPerIsbn.get(libro.getIsbn());
+        if (id == null)
+        {
+            return;
+        }
+        Libro vecchio = slot[id];
+        if (vecchio != libro && !stessoTesto(vecchio, libro))
+        {
+            if (testo != null)
+            {
+                testo.rimuovi(id, vecchio);
+                testo.aggiungi(id, libro);
+            }
+            if (suggerimenti != null)
+            {
+                suggerimenti.rimuovi(id, vecchio);
+                suggerimenti.aggiungi(id, libro);
+            }
+        }
+        slot[id] = libro;
+        cancella(id);
+        imposta(libro, id);
+        for (VistaOrdinata vista : ordinate.values()) vista.aggiorna(id, libro);
+    }
+
+    /**
+     * @return il libro con l'ISBN indicato, {@code null} se non presente
+     */
+    public Libro cerca(String isbn)
+    {
+        Integer id = slotPerIsbn.get(isbn);
+        return id == null ? null : slot[id];
+    }
+
+    public boolean contiene(String isbn)
+    {
+        return slotPerIsbn.containsKey(isbn);
+    }
+
+    /**
+     * @return la posizione nell'elenco del libro con l'ISBN indicato,
+     *         -1 se non presente
+     */
+    public int posizione(String isbn)
+    {
+        Integer id = slotPerIsbn.get(isbn);
+        if (id == null)
+        {
+            return -1;
+        }
+        int precedenti = 0;
+        for (int k = id; k > 0; k -= k & -k) precedenti += vuotiPrima[k];
+        return id - precedenti;
+    }
+
+    public void svuota()
+    {
+        slotPerIsbn.clear();
+        Arrays.fill(slot, 0, usati, null);
+        usati = 0;
+        vuoti = 0;
+        Arrays.fill(vuotiPrima, 0);
+        testo = null;
+        suggerimenti = null;
+        ordinate = Map.of();
+        perGenere.values().forEach(BitSet::clear);
+        perStato.values().forEach(BitSet::clear);
+        perValutazione.values().forEach(BitSet::clear);
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                             SELEZIONE                              */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * Seleziona gli slot dei libri che soddisfano tutti i criteri indicati,
+     * intersecando gli indici secondari. Un criterio {@code null} non filtra.
+     *
+     * @return insieme di slot, da convertire con {@link #libri(BitSet)}
+     */
+    public BitSet seleziona(Genere genere, Stato stato, Valutazione valutazione)
+    {
+        BitSet risultato = null;
+        risultato = interseca(risultato, genere == null ? null : perGenere.get(genere));
+        risultato = interseca(risultato, stato == null ? null : perStato.get(stato));
+        risultato = interseca(risultato, valutazione == null ? null : perValutazione.get(valutazione));
+
+        if (risultato == null)
+        {
+            risultato = new BitSet(usati);
+            for (int id = 0; id < usati; id++)
+            {
+                if (slot[id] != null) risultato.set(id);
+            }
+        }
+        return risultato;
+    }
+
+    /**
+     * Seleziona gli slot dei libri che soddisfano una condizione non coperta
+     * dagli indici, esaminando soltanto i candidati indicati.
+     *
+     * @param condizione condizione da verificare
+     * @param candidati  slot da esaminare, {@code null} per tutti i libri
+     */
+    public BitSet seleziona(Predicate<Libro> condizione, BitSet candidati)
+    {
+        BitSet risultato = new BitSet(usati);
+        if (candidati == null)
+        {
+            for (int id = 0; id < usati; id++)
+            {
+                if (slot[id] != null && condizione.test(slot[id])) risultato.set(id);
+            }
+        }
+        else
+        {
+            for (int id = candidati.nextSetBit(0); id >= 0 && id < usati; id = candidati.nextSetBit(id + 1))
+            {
+                if (slot[id] != null && condizione.test(slot[id])) risultato.set(id);
+            }
+        }
+        return risultato;
+    }
+
+    /**
+     * @return gli slot dei libri il cui titolo normalizzato coincide con quello indicato
+     * @see IndiceTestuale#normalizza(String)
+     */
+    public BitSet conTitolo(String titolo)
+    {
+        return testo().conTitolo(titolo);
+    }
+
+    /**
+     * @return gli slot dei libri in cui ogni parola del testo trova corrispondenza
+     *         nel titolo, negli autori o nell'editore
+     */
+    public BitSet cercaTesto(String testo, CriterioRicerca criterio)
+    {
+        return testo().cerca(testo, criterio);
+    }
+
+    /**
+     * @return i primi libri, in ordine alfabetico, il cui titolo o uno degli
+     *         autori inizia con il prefisso indicato
+     */
+    public List<Libro> suggerisci(String prefisso, int massimo)
+    {
+        IndiceSuggerimenti indiceSuggerimenti = suggerimenti;
+        if (indiceSuggerimenti == null)
+        {
+            synchronized (this)
+            {
+                if (suggerimenti == null)
+                {
+                    IndiceSuggerimenti nuovo = new IndiceSuggerimenti();
+                    nuovo.costruisci(slot, usati);
+                    suggerimenti = nuovo;
+                }
+                indiceSuggerimenti = suggerimenti;
+            }
+        }
+        int[] trovati = indiceSuggerimenti.cerca(prefisso, massimo);
+        List<Libro> ret = new ArrayList<>(trovati.length);
+        for (int id : trovati)
+        {
+            ret.add(slot[id]);
+        }
+        return ret;
+    }
+
+    /**
+     * @return i libri ordinati secondo il criterio, da una vista costruita alla
+     *         prima richiesta e poi mantenuta a ogni modifica
+     */
+    public ElencoLibri ordinati(CriterioOrdinamento criterio)
+    {
+        return vista(criterio).elenco();
+    }
+
+    /**
+     * @return la pagina dei libri ordinati secondo il criterio, scorrendo la
+     *         vista ordinata soltanto fino all'ultimo libro della pagina
+     */
+    public Pagina ordinati(CriterioOrdinamento criterio, int offset, int limite)
+    {
+        Pagina.controlla(offset, limite);
+        VistaOrdinata vista = vista(criterio);
+        return Pagina.estratta(vista.pagina(offset, limite), offset, vista.size());
+    }
+
+    private VistaOrdinata vista(CriterioOrdinamento criterio)
+    {
+        VistaOrdinata vista = ordinate.get(criterio);
+        if (vista == null)
+        {
+            synchronized (this)
+            {
+                vista = ordinate.get(criterio);
+                if (vista == null)
+                {
+                    vista = new VistaOrdinata(ordinamento(criterio));
+                    vista.costruisci(slot, usati);
+                    Map<CriterioOrdinamento, VistaOrdinata> nuove = new EnumMap<>(CriterioOrdinamento.class);
+                    nuove.putAll(ordinate);
+                    nuove.put(criterio, vista);
+                    ordinate = nuove;
+                }
+            }
+        }
+        return vista;
+    }
+
+    /**
+     * Converte un insieme di slot nei libri corrispondenti, nell'ordine dell'elenco.
+     */
+    public List<Libro> libri(BitSet selezione)
+    {
+        List<Libro> ret = new ArrayList<>(selezione.cardinality());
+        for (int id = selezione.nextSetBit(0); id >= 0; id = selezione.nextSetBit(id + 1))
+        {
+            ret.add(slot[id]);
+        }
+        return ret;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                           HELPER PRIVATI                            */
+    /* ------------------------------------------------------------------ */
+    private static BitSet interseca(BitSet parziale, BitSet indice)
+    {
+        if (indice == null) return parziale;
+        if (parziale == null) return (BitSet) indice.clone();
+        parziale.and(indice);
+        return parziale;
+    }
+
+    /**
+     * @return la strategia che ordina secondo il criterio
+     * @throws IllegalArgumentException criterio non riconosciuto
+     */
+    static OrdinamentoPerChiave ordinamento(CriterioOrdinamento criterio)
+    {
+        switch (criterio)
+        {
+            case AUTORE:
+                return new OrdinamentoPerAutore();
+            case TITOLO:
+                return new OrdinamentoPerTitolo();
+            default:
+                throw new IllegalArgumentException("Criterio non riconosciuto :  " + criterio);
+        }
+    }
+
+    private IndiceTestuale testo()
+    {
+        IndiceTestuale indiceTestuale = testo;
+        if (indiceTestuale == null)
+        {
+            synchronized (this)
+            {
+                if (testo == null)
+                {
+                    IndiceTestuale nuovo = new IndiceTestuale();
+                    for (int id = 0; id < usati; id++)
+                    {
+                        if (slot[id] != null) nuovo.aggiungi(id, slot[id]);
+                    }
+                    testo = nuovo;
+                }
+                indiceTestuale = testo;
+            }
+        }
+        return indiceTestuale;
+    }
+
+    /**
+     * @return {@code true} se i due libri hanno gli stessi campi indicizzati
+     *         per la ricerca testuale e i suggerimenti
+     */
+    private static boolean stessoTesto(Libro a, Libro b)
+    {
+        return a.getTitolo().equals(b.getTitolo())
+                && a.getAutori().equals(b.getAutori())
+                && Objects.equals(a.getEditore(), b.getEditore());
+    }
+
+        private void imposta(Libro libro, int id)
+    {
+        if (libro.getGenere() != null) perGenere.get(libro.getGenere()).set(id);
+        if (libro.getStatoLibro() != null) perStato.get(libro.getStatoLibro()).set(id);
+        if (libro.getValutazione() != null) perValutazione.get(libro.getValutazione()).set(id);
+    }
+
+    private void cancella(int id)
+    {
+        for (BitSet b : perGenere.values()) b.clear(id);
+        for (BitSet b : perStato.values()) b.clear(id);
+        for (BitSet b : perValutazione.values()) b.clear(id);
+    }
+
+    /**
+     * Ricrea l'albero degli slot vuoti per la nuova dimensione di {@link #slot}.
+     */
+    private void ricostruisciVuoti()
+    {
+        vuotiPrima = new int[slot.length + 1];
+        for (int id = 0; id < usati; id++)
+        {
+            if (slot[id] == null) vuotiPrima[id + 1]++;
+        }
+        // costruzione in tempo lineare: ogni nodo cede il conteggio al padre
+        for (int k = 1; k < vuotiPrima.length; k++)
+        {
+            int padre = k + (k & -k);
+            if (padre < vuotiPrima.length) vuotiPrima[padre] += vuotiPrima[k];
+        }
+    }
+
+    private void ricompatta()
+    {
+        List<Libro> presenti = new ArrayList<>(usati - vuoti);
+        for (int id = 0; id < usati; id++)
+        {
+            if (slot[id] != null) presenti.add(slot[id]);
+        }
+        ricostruisci(presenti);
+    }
+}
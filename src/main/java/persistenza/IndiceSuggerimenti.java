@@ -0,0 +1,157 @@
+package persistenza;
+
+import model.Libro;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Indice per la ricerca durante la digitazione: un array ordinato dei titoli
+ * e degli autori normalizzati, ciascuno associato allo slot del libro in
+ * {@link IndiceLibri}. Le chiavi che iniziano con un prefisso sono contigue,
+ * per cui una ricerca costa una ricerca binaria più i risultati restituiti.
+ * Inserimenti e rimozioni spostano gli elementi dell'array senza riordinarlo.
+ */
+public class IndiceSuggerimenti
+{
+    private String[] chiavi = new String[16];
+    private int[] slot = new int[16];
+    private int dimensione;
+
+    /**
+     * Costruisce l'indice in blocco, con un solo ordinamento.
+     *
+     * @param libri  libri indicizzati per slot; gli slot vuoti sono {@code null}
+     * @param usati  numero di slot occupati dell'array
+     */
+    public void costruisci(Libro[] libri, int usati)
+    {
+        int totale = 0;
+        String[][] perSlot = new String[usati][];
+        for (int id = 0; id < usati; id++)
+        {
+            if (libri[id] == null) continue;
+            perSlot[id] = chiavi(libri[id]);
+            totale += perSlot[id].length;
+        }
+
+        Integer[] ordine = new Integer[totale];
+        String[] tutteChiavi = new String[totale];
+        int[] tuttiSlot = new int[totale];
+        int n = 0;
+        for (int id = 0; id < usati; id++)
+        {
+            if (perSlot[id] == null) continue;
+            for (String c : perSlot[id])
+            {
+                tutteChiavi[n] = c;
+                tuttiSlot[n] = id;
+                ordine[n] = n;
+                n++;
+            }
+        }
+        Arrays.sort(ordine, Comparator.<Integer, String>comparing(i -> tutteChiavi[i])
+                .thenComparingInt(i -> tuttiSlot[i]));
+
+        chiavi = new String[Math.max(totale, 16)];
+        slot = new int[chiavi.length];
+        for (int i = 0; i < totale; i++)
+        {
+            chiavi[i] = tutteChiavi[ordine[i]];
+            slot[i] = tuttiSlot[ordine[i]];
+        }
+        dimensione = totale;
+    }
+
+    public void aggiungi(int id, Libro libro)
+    {
+        for (String c : chiavi(libro))
+        {
+            int pos = posizione(c, id);
+            if (pos >= 0) continue;
+            pos = -pos - 1;
+            if (dimensione == chiavi.length)
+            {
+                chiavi = Arrays.copyOf(chiavi, dimensione * 2);
+                slot = Arrays.copyOf(slot, dimensione * 2);
+            }
+            System.arraycopy(chiavi, pos, chiavi, pos + 1, dimensione - pos);
+            System.arraycopy(slot, pos, slot, pos + 1, dimensione - pos);
+            chiavi[pos] = c;
+            slot[pos] = id;
+            dimensione++;
+        }
+    }
+
+    public void rimuovi(int id, Libro libro)
+    {
+        for (String c : chiavi(libro))
+        {
+            int pos = posizione(c, id);
+            if (pos < 0) continue;
+            System.arraycopy(chiavi, pos + 1, chiavi, pos, dimensione - pos - 1);
+            System.arraycopy(slot, pos + 1, slot, pos, dimensione - pos - 1);
+            dimensione--;
+            chiavi[dimensione] = null;
+        }
+    }
+
+    /**
+     * Restituisce gli slot dei primi libri, in ordine alfabetico di chiave,
+     * il cui titolo o autore normalizzato inizia con il prefisso.
+     *
+     * @param prefisso testo digitato finora
+     * @param massimo  numero massimo di libri da restituire
+     * @return slot distinti, al più {@code massimo}
+     */
+    public int[] cerca(String prefisso, int massimo)
+    {
+        String p = IndiceTestuale.normalizza(prefisso);
+        if (p.isEmpty() || massimo <= 0) return new int[0];
+
+        Set<Integer> trovati = new LinkedHashSet<>();
+        int pos = posizione(p, Integer.MIN_VALUE);
+        for (int i = pos < 0 ? -pos - 1 : pos; i < dimensione && trovati.size() < massimo; i++)
+        {
+            if (!chiavi[i].startsWith(p)) break;
+            trovati.add(slot[i]);
+        }
+        return trovati.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                           HELPER PRIVATI                            */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * Ricerca binaria della coppia (chiave, slot).
+     *
+     * @return la posizione se presente, altrimenti {@code -(punto di inserimento) - 1}
+     */
+    private int posizione(String chiave, int id)
+    {
+        int basso = 0;
+        int alto = dimensione - 1;
+        while (basso <= alto)
+        {
+            int medio = (basso + alto) >>> 1;
+            int cmp = chiavi[medio].compareTo(chiave);
+            if (cmp == 0) cmp = Integer.compare(slot[medio], id);
+            if (cmp < 0) basso = medio + 1;
+            else if (cmp > 0) alto = medio - 1;
+            else return medio;
+        }
+        return -(basso + 1);
+    }
+
+    private static String[] chiavi(Libro libro)
+    {
+        Set<String> ret = new LinkedHashSet<>();
+        ret.add(IndiceTestuale.normalizza(libro.getTitolo()));
+        for (String autore : libro.getAutori())
+            ret.add(IndiceTestuale.normalizza(autore));
+        return ret.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,219 @@
+package persistenza;
+
+import model.Libro;
+
+import java.util.*;
+
+/**
+ * Indice invertito su titolo, autori ed editore dei libri, espresso
+ * sugli stessi slot di {@link IndiceLibri}.
+ * <p>
+ * Contiene:
+ * <ul>
+ *     <li>il titolo normalizzato di ogni libro, per la ricerca esatta di
+ *     {@link ArchivioLibri#cerca(String)};</li>
+ *     <li>per ogni parola, l'insieme degli slot che la contengono, in un
+ *     dizionario ordinato che risolve le ricerche per prefisso con un
+ *     intervallo di chiavi;</li>
+ *     <li>per ogni trigramma, le parole che lo contengono, per risolvere le
+ *     ricerche per sottostringa senza scorrere tutto il dizionario.</li>
+ * </ul>
+ * Le chiavi normalizzate vengono calcolate una sola volta, all'inserimento.
+ */
+public class IndiceTestuale
+{
+    private final Map<String, BitSet> perTitolo = new HashMap<>();
+    private final TreeMap<String, BitSet> perParola = new TreeMap<>();
+    private final Map<String, Set<String>> parolePerTrigramma = new HashMap<>();
+
+    public void aggiungi(int id, Libro libro)
+    {
+        perTitolo.computeIfAbsent(normalizza(libro.getTitolo()), k -> new BitSet()).set(id);
+        for (String parola : parole(libro))
+        {
+            BitSet slot = perParola.get(parola);
+            if (slot == null)
+            {
+                slot = new BitSet();
+                perParola.put(parola, slot);
+                for (String t : trigrammi(parola))
+                    parolePerTrigramma.computeIfAbsent(t, k -> new HashSet<>()).add(parola);
+            }
+            slot.set(id);
+        }
+    }
+
+    public void rimuovi(int id, Libro libro)
+    {
+        String titolo = normalizza(libro.getTitolo());
+        BitSet conTitolo = perTitolo.get(titolo);
+        if (conTitolo != null)
+        {
+            conTitolo.clear(id);
+            if (conTitolo.isEmpty()) perTitolo.remove(titolo);
+        }
+
+        for (String parola : parole(libro))
+        {
+            BitSet slot = perParola.get(parola);
+            if (slot == null) continue;
+            slot.clear(id);
+            if (slot.isEmpty())
+            {
+                perParola.remove(parola);
+                for (String t : trigrammi(parola))
+                {
+                    Set<String> conTrigramma = parolePerTrigramma.get(t);
+                    if (conTrigramma != null && conTrigramma.remove(parola) && conTrigramma.isEmpty())
+                        parolePerTrigramma.remove(t);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return gli slot dei libri il cui titolo normalizzato coincide con quello indicato
+     */
+    public BitSet conTitolo(String titolo)
+    {
+        BitSet slot = perTitolo.get(normalizza(titolo));
+        return slot == null ? new BitSet() : (BitSet) slot.clone();
+    }
+
+    /**
+     * @return gli slot dei libri in cui ogni parola del testo trova corrispondenza;
+     *         vuoto se il testo non contiene parole
+     */
+    public BitSet cerca(String testo, CriterioRicerca criterio)
+    {
+        List<String> cercate = tokenizza(testo);
+        if (cercate.isEmpty()) return new BitSet();
+
+        BitSet risultato = null;
+        for (String cercata : cercate)
+        {
+            BitSet perQuesta = new BitSet();
+            for (BitSet slot : corrispondenze(cercata, criterio))
+                perQuesta.or(slot);
+
+            if (risultato == null) risultato = perQuesta;
+            else risultato.and(perQuesta);
+            if (risultato.isEmpty()) break;
+        }
+        return risultato;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                           NORMALIZZAZIONE                          */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * Rimuove spazi iniziali/finali, sostituisce più spazi con uno solo
+     * e mette tutto in minuscolo, con un solo passaggio sulla stringa.
+     */
+    public static String normalizza(String s)
+    {
+        if (s == null) return "";
+        StringBuilder sb = new StringBuilder(s.length());
+        boolean spazio = false;
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c))
+            {
+                spazio = sb.length() > 0;
+            }
+            else
+            {
+                if (spazio) sb.append(' ');
+                spazio = false;
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Divide il testo in parole minuscole, separando su ogni carattere
+     * che non sia una lettera o una cifra.
+     */
+    public static List<String> tokenizza(String s)
+    {
+        List<String> ret = new ArrayList<>();
+        if (s == null) return ret;
+        int inizio = -1;
+        for (int i = 0; i <= s.length(); i++)
+        {
+            boolean lettera = i < s.length() && Character.isLetterOrDigit(s.charAt(i));
+            if (lettera && inizio < 0)
+            {
+                inizio = i;
+            }
+            else if (!lettera && inizio >= 0)
+            {
+                ret.add(s.substring(inizio, i).toLowerCase());
+                inizio = -1;
+            }
+        }
+        return ret;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                           HELPER PRIVATI                            */
+    /* ------------------------------------------------------------------ */
+    private static Set<String> parole(Libro libro)
+    {
+        Set<String> parole = new HashSet<>(tokenizza(libro.getTitolo()));
+        for (String autore : libro.getAutori())
+            parole.addAll(tokenizza(autore));
+        parole.addAll(tokenizza(libro.getEditore()));
+        return parole;
+    }
+
+    private static List<String> trigrammi(String parola)
+    {
+        List<String> ret = new ArrayList<>(Math.max(parola.length() - 2, 0));
+        for (int i = 0; i + 3 <= parola.length(); i++)
+            ret.add(parola.substring(i, i + 3));
+        return ret;
+    }
+
+    private Collection<BitSet> corrispondenze(String cercata, CriterioRicerca criterio)
+    {
+        switch (criterio)
+        {
+            case PAROLA:
+            {
+                BitSet slot = perParola.get(cercata);
+                return slot == null ? List.of() : List.of(slot);
+            }
+            case PREFISSO:
+                return perParola.subMap(cercata, true, cercata + Character.MAX_VALUE, false).values();
+            case SOTTOSTRINGA:
+            {
+                if (cercata.length() < 3)
+                {
+                    // troppo corta per i trigrammi: si scorre il dizionario delle parole
+                    List<BitSet> ret = new ArrayList<>();
+                    for (Map.Entry<String, BitSet> e : perParola.entrySet())
+                        if (e.getKey().contains(cercata)) ret.add(e.getValue());
+                    return ret;
+                }
+                Set<String> candidate = null;
+                for (String t : trigrammi(cercata))
+                {
+                    Set<String> conTrigramma = parolePerTrigramma.getOrDefault(t, Set.of());
+                    if (candidate == null) candidate = new HashSet<>(conTrigramma);
+                    else candidate.retainAll(conTrigramma);
+                    if (candidate.isEmpty()) return List.of();
+                }
+                List<BitSet> ret = new ArrayList<>();
+                for (String parola : candidate)
+                    if (parola.contains(cercata)) ret.add(perParola.get(parola));
+                return ret;
+            }
+            default:
+                throw new IllegalArgumentException("Criterio di ricerca non riconosciuto: " + criterio);
+        }
+    }
+}
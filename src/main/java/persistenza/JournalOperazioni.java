@@ -0,0 +1,185 @@
+package persistenza;
+
+import com.opencsv.*;
+import com.opencsv.exceptions.CsvValidationException;
+import model.Libro;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Journal append-only delle modifiche, conservato accanto al file CSV
+ * dell'archivio (es. <code>dati.csv.journal</code>).
+ * Ogni riga registra una {@link Operazione}: il salvataggio di un libro
+ * (stesso formato di record di <code>dati.csv</code>, preceduto da {@code S})
+ * oppure la rimozione di un ISBN (preceduta da {@code R}).
+ * Lo stato completo dell'archivio si ottiene riapplicando il journal
+ * allo snapshot; la compattazione riscrive lo snapshot e svuota il journal.
+ */
+public class JournalOperazioni
+{
+    private static final String SALVA = "S";
+    private static final String RIMUOVI = "R";
+
+    private final Path percorso;
+
+    /** Operazioni presenti nel journal dall'ultima compattazione */
+    private int dimensione = -1;
+
+    /**
+     * @param percorso file del journal; viene creato alla prima scrittura
+     */
+    public JournalOperazioni(Path percorso)
+    {
+        this.percorso = percorso;
+    }
+
+    public Path getPercorso()
+    {
+        return percorso;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                              SCRIVI                                */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * Accoda le operazioni al journal con un'unica scrittura.
+     *
+     * @param operazioni operazioni da registrare, nell'ordine di esecuzione
+     * @throws IOException se il journal non è scrivibile
+     */
+    public void accoda(List<Operazione> operazioni) throws IOException
+    {
+        if (operazioni.isEmpty()) return;
+        int presenti = dimensione();
+
+        try (Writer out = Files.newBufferedWriter(percorso,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+             CSVWriter writer = new CSVWriter(out,
+                     ';',
+                     CSVWriter.NO_QUOTE_CHARACTER,
+                     CSVWriter.DEFAULT_ESCAPE_CHARACTER,
+                     CSVWriter.DEFAULT_LINE_END)) {
+
+            for (Operazione op : operazioni) {
+                writer.writeNext(aRiga(op));
+            }
+        }
+        dimensione = presenti + operazioni.size();
+    }
+
+    /**
+     * Elimina il contenuto del journal, tipicamente dopo che le sue
+     * operazioni sono state incorporate nello snapshot.
+     */
+    public void svuota() throws IOException
+    {
+        Files.deleteIfExists(percorso);
+        dimensione = 0;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                              LEGGI                                 */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * Riapplica in ordine le operazioni del journal ai libri indicizzati per ISBN.
+     * Le righe illeggibili (es. l'ultima, troncata da un crash) vengono scartate.
+     *
+     * @param libri libri dello snapshot, indicizzati per ISBN; viene modificata
+     * @throws IOException se il journal esiste ma non è leggibile
+     */
+    public void riapplica(Map<String, Libro> libri) throws IOException
+    {
+        for (Operazione op : leggi()) {
+            if (op.getTipo() == Operazione.Tipo.SALVA) {
+                libri.put(op.getIsbn(), op.getLibro());
+            } else {
+                libri.remove(op.getIsbn());
+            }
+        }
+    }
+
+    /**
+     * Legge le operazioni del journal nell'ordine in cui sono state registrate.
+     * Le righe illeggibili (es. l'ultima, troncata da un crash) vengono scartate.
+     *
+     * @return le operazioni lette; vuota se il journal non esiste
+     * @throws IOException se il journal esiste ma non è leggibile
+     */
+    public List<Operazione> leggi() throws IOException
+    {
+        List<Operazione> operazioni = new ArrayList<>();
+        if (Files.notExists(percorso)) {
+            dimensione = 0;
+            return operazioni;
+        }
+
+        try (CSVReader reader = new CSVReaderBuilder(
+                Files.newBufferedReader(percorso))
+                .withCSVParser(new CSVParserBuilder().withSeparator(';').build())
+                .build()) {
+
+            String[] rec;
+            int line = 0;
+
+            while ((rec = reader.readNext()) != null) {
+                line++;
+                try {
+                    if (SALVA.equals(rec[0])) {
+                        operazioni.add(Operazione.salva(
+                                ArchivioLibriFileCsv.daRecord(Arrays.copyOfRange(rec, 1, rec.length))));
+                    } else if (RIMUOVI.equals(rec[0]) && rec.length > 1) {
+                        operazioni.add(Operazione.rimuovi(rec[1]));
+                    } else {
+                        System.err.println("Operazione sconosciuta nel journal (" + line + "): " + Arrays.toString(rec));
+                    }
+                } catch (Exception e) {
+                    System.err.println("Errore nel journal alla riga " + line + ": " + e.getMessage());
+                }
+            }
+            dimensione = line;
+        } catch (CsvValidationException e) {
+            throw new RuntimeException("Errore nella validazione del journal: " + e.getMessage(), e);
+        }
+        return operazioni;
+    }
+
+    /**
+     * @return numero di operazioni registrate dall'ultima compattazione
+     */
+    public int dimensione() throws IOException
+    {
+        if (dimensione < 0) {
+            if (Files.notExists(percorso)) {
+                dimensione = 0;
+            } else {
+                try (var righe = Files.lines(percorso)) {
+                    dimensione = (int) righe.count();
+                }
+            }
+        }
+        return dimensione;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                           HELPER PRIVATI                            */
+    /* ------------------------------------------------------------------ */
+    private static String[] aRiga(Operazione op)
+    {
+        if (op.getTipo() == Operazione.Tipo.RIMUOVI) {
+            return new String[]{RIMUOVI, op.getIsbn()};
+        }
+        String[] record = ArchivioLibriFileCsv.aRecord(op.getLibro());
+        String[] riga = new String[record.length + 1];
+        riga[0] = SALVA;
+        System.arraycopy(record, 0, riga, 1, record.length);
+        return riga;
+    }
+}
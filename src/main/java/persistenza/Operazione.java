@@ -0,0 +1,87 @@
+package persistenza;
+
+import model.Libro;
+
+import java.util.Objects;
+
+/**
+ * Singola modifica da rendere persistente: il salvataggio dello stato
+ * corrente di un {@link Libro} oppure la rimozione di un ISBN.
+ * Viene usata dagli archivi per registrare le modifiche senza riscrivere
+ * l'intero file dei dati.
+ */
+public final class Operazione
+{
+    /**
+     * Tipi di operazione registrabili.
+     */
+    public enum Tipo
+    {
+        /**
+         * Inserisce il libro o ne sostituisce lo stato precedente.
+         */
+        SALVA,
+        /**
+         * Elimina il libro con l'ISBN indicato.
+         */
+        RIMUOVI
+    }
+
+    private final Tipo tipo;
+    private final String isbn;
+    private final Libro libro;
+
+    private Operazione(Tipo tipo, String isbn, Libro libro)
+    {
+        this.tipo = tipo;
+        this.isbn = isbn;
+        this.libro = libro;
+    }
+
+    /**
+     * Crea l'operazione che salva lo stato corrente del libro.
+     *
+     * @param libro il libro da inserire o aggiornare
+     * @return l'operazione di salvataggio
+     */
+    public static Operazione salva(Libro libro)
+    {
+        Objects.requireNonNull(libro, "Libro non può essere null");
+        return new Operazione(Tipo.SALVA, libro.getIsbn(), libro);
+    }
+
+    /**
+     * Crea l'operazione che rimuove il libro con l'ISBN indicato.
+     *
+     * @param isbn codice ISBN del libro da eliminare
+     * @return l'operazione di rimozione
+     */
+    public static Operazione rimuovi(String isbn)
+    {
+        return new Operazione(Tipo.RIMUOVI, Objects.requireNonNull(isbn, "ISBN non può essere null"), null);
+    }
+
+    public Tipo getTipo()
+    {
+        return tipo;
+    }
+
+    public String getIsbn()
+    {
+        return isbn;
+    }
+
+    /**
+     * @return il libro da salvare, {@code null} per le rimozioni
+     */
+    public Libro getLibro()
+    {
+        return libro;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Operazione{" + tipo + ", isbn='" + isbn + "'}";
+    }
+}
@@ -0,0 +1,106 @@
+package persistenza;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Osserva alcuni file di una cartella con un {@link WatchService} ed
+ * esegue un'azione, su un thread dedicato, quando vengono creati o modificati.
+ * <p>
+ * Gli eventi ravvicinati vengono raggruppati: l'azione parte solo dopo un
+ * intervallo di quiete, così una scrittura in più passi produce un'unica
+ * esecuzione. Le cancellazioni vengono ignorate, perché chi riscrive un file
+ * di solito lo cancella e lo ricrea.
+ */
+final class OsservatoreFile implements Closeable
+{
+    private final WatchService servizio;
+    private final Set<Path> nomi;
+    private final long quieteMillisecondi;
+    private final Runnable azione;
+    private final Thread thread;
+
+    /**
+     * @param cartella           cartella che contiene i file
+     * @param nomi               nomi dei file da osservare, relativi alla cartella
+     * @param quieteMillisecondi attesa senza nuovi eventi prima di eseguire l'azione
+     * @param azione             azione da eseguire; le eccezioni vanno gestite dall'azione
+     */
+    OsservatoreFile(Path cartella, Set<Path> nomi, long quieteMillisecondi, Runnable azione) throws IOException
+    {
+        this.servizio = cartella.getFileSystem().newWatchService();
+        this.nomi = Set.copyOf(nomi);
+        this.quieteMillisecondi = quieteMillisecondi;
+        this.azione = azione;
+        try
+        {
+            cartella.register(servizio, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            servizio.close();
+            throw e;
+        }
+        thread = new Thread(this::osserva, "osservatore-" + cartella.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void osserva()
+    {
+        try
+        {
+            while (true)
+            {
+                if (!rilevante(servizio.take())) continue;
+                // raggruppa gli eventi finché il file non smette di cambiare
+                WatchKey altra;
+                while ((altra = servizio.poll(quieteMillisecondi, TimeUnit.MILLISECONDS)) != null)
+                {
+                    rilevante(altra);
+                }
+                azione.run();
+            }
+        }
+        catch (ClosedWatchServiceException | InterruptedException e)
+        {
+            // osservatore chiuso
+        }
+    }
+
+    /**
+     * Consuma gli eventi della chiave e la riattiva.
+     *
+     * @return {@code true} se almeno un evento riguarda i file osservati
+     */
+    private boolean rilevante(WatchKey chiave)
+    {
+        boolean rilevante = false;
+        for (WatchEvent<?> evento : chiave.pollEvents())
+        {
+            if (evento.kind() == StandardWatchEventKinds.OVERFLOW || nomi.contains((Path) evento.context()))
+            {
+                rilevante = true;
+            }
+        }
+        chiave.reset();
+        return rilevante;
+    }
+
+    /**
+     * Ferma l'osservazione; un'azione già in corso viene portata a termine.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        servizio.close();
+    }
+}
@@ -0,0 +1,113 @@
+package persistenza;
+
+import Strategy.OrdinamentoPerChiave;
+import model.Libro;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Una pagina del risultato di una ricerca, di un filtro o di un ordinamento:
+ * i libri dalla posizione {@link #getOffset()} in poi, al più quanti ne
+ * sono stati chiesti, e il numero totale di libri del risultato.
+ */
+public final class Pagina
+{
+    private final List<Libro> libri;
+    private final int offset;
+    private final int totale;
+
+    private Pagina(List<Libro> libri, int offset, int totale)
+    {
+        this.libri = Collections.unmodifiableList(libri);
+        this.offset = offset;
+        this.totale = totale;
+    }
+
+    /**
+     * Pagina di un risultato già nell'ordine voluto: ne viene copiata
+     * soltanto la parte richiesta.
+     */
+    public static Pagina di(List<Libro> risultato, int offset, int limite)
+    {
+        controlla(offset, limite);
+        int totale = risultato.size();
+        int da = Math.min(offset, totale);
+        int a = (int) Math.min((long) da + limite, totale);
+        return new Pagina(List.copyOf(risultato.subList(da, a)), offset, totale);
+    }
+
+    /**
+     * Pagina composta da libri già estratti dal risultato, usati senza copiarli.
+     *
+     * @param totale numero di libri dell'intero risultato
+     */
+    static Pagina estratta(List<Libro> libri, int offset, int totale)
+    {
+        return new Pagina(libri, offset, totale);
+    }
+
+    /**
+     * Pagina di un risultato da ordinare: vengono selezionati soltanto i primi
+     * {@code offset + limite} libri con {@link OrdinamentoPerChiave#primi(List, int)},
+     * senza ordinare il resto.
+     *
+     * @param ordinamento ordinamento da applicare; {@code null} per
+     *                    conservare l'ordine del risultato
+     */
+    public static Pagina di(List<Libro> risultato, OrdinamentoPerChiave ordinamento, int offset, int limite)
+    {
+        if (ordinamento == null) return di(risultato, offset, limite);
+        controlla(offset, limite);
+        int totale = risultato.size();
+        if (offset >= totale || limite == 0) return new Pagina(List.of(), offset, totale);
+
+        int k = (int) Math.min((long) offset + limite, totale);
+        List<Libro> primi = ordinamento.primi(risultato, k);
+        return new Pagina(primi.subList(offset, k), offset, totale);
+    }
+
+    /**
+     * @return i libri della pagina, in ordine
+     */
+    public List<Libro> getLibri()
+    {
+        return libri;
+    }
+
+    /**
+     * @return posizione nel risultato del primo libro della pagina
+     */
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * @return numero di libri dell'intero risultato
+     */
+    public int getTotale()
+    {
+        return totale;
+    }
+
+    /**
+     * @return {@code true} se nel risultato ci sono libri dopo questa pagina
+     */
+    public boolean haSuccessiva()
+    {
+        return (long) offset + libri.size() < totale;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Pagina[" + offset + "-" + (offset + libri.size()) + " di " + totale + "]";
+    }
+
+    static void controlla(int offset, int limite)
+    {
+        if (offset < 0) throw new IllegalArgumentException("Offset non valido: " + offset);
+        if (limite < 0) throw new IllegalArgumentException("Limite non valido: " + limite);
+    }
+}
@@ -0,0 +1,55 @@
+package persistenza;
+
+/**
+ * Politica di scrittura per un archivio in modalità residente: i libri
+ * vengono caricati una sola volta e le modifiche restano in memoria
+ * finché una delle condizioni configurate non ne provoca il salvataggio.
+ */
+public final class PoliticaFlush
+{
+    private final int ogniModifiche;
+    private final long ogniMillisecondi;
+    private final boolean allaChiusura;
+
+    /**
+     * @param ogniModifiche    numero di libri modificati che provoca il salvataggio;
+     *                         {@code 0} per disattivare la soglia
+     * @param ogniMillisecondi intervallo tra due salvataggi periodici;
+     *                         {@code 0} per disattivare il salvataggio periodico
+     * @param allaChiusura     se {@code true} le modifiche pendenti vengono salvate
+     *                         anche allo spegnimento della JVM
+     */
+    public PoliticaFlush(int ogniModifiche, long ogniMillisecondi, boolean allaChiusura)
+    {
+        if (ogniModifiche < 0)
+            throw new IllegalArgumentException("Numero di modifiche non valido: " + ogniModifiche);
+        if (ogniMillisecondi < 0)
+            throw new IllegalArgumentException("Intervallo non valido: " + ogniMillisecondi);
+        this.ogniModifiche = ogniModifiche;
+        this.ogniMillisecondi = ogniMillisecondi;
+        this.allaChiusura = allaChiusura;
+    }
+
+    public int getOgniModifiche()
+    {
+        return ogniModifiche;
+    }
+
+    public long getOgniMillisecondi()
+    {
+        return ogniMillisecondi;
+    }
+
+    public boolean isAllaChiusura()
+    {
+        return allaChiusura;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PoliticaFlush{ogniModifiche=" + ogniModifiche
+                + ", ogniMillisecondi=" + ogniMillisecondi
+                + ", allaChiusura=" + allaChiusura + "}";
+    }
+}
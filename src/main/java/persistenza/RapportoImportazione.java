@@ -0,0 +1,126 @@
+package persistenza;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Risultato di un'importazione con {@link ImportatoreCsv}: righe lette,
+ * importate e scartate per motivo, durata e velocità.
+ * Dei motivi di scarto vengono conservati soltanto i primi
+ * {@value #MASSIMO_ERRORI}, per non tenere in memoria un messaggio per
+ * ogni riga di un file completamente errato.
+ */
+public final class RapportoImportazione
+{
+    static final int MASSIMO_ERRORI = 100;
+
+    private long righeLette;
+    private long importati;
+    private long scartate;
+    private long duplicate;
+    private long giaPresenti;
+    private long durataNanos;
+    private final List<String> errori = new ArrayList<>();
+
+    void rigaLetta()
+    {
+        righeLette++;
+    }
+
+    void importati(int quanti)
+    {
+        importati += quanti;
+    }
+
+    void scartata(int riga, String motivo)
+    {
+        scartate++;
+        if (errori.size() < MASSIMO_ERRORI)
+            errori.add("Riga " + riga + ": " + motivo);
+    }
+
+    void duplicata()
+    {
+        duplicate++;
+    }
+
+    void giaPresente()
+    {
+        giaPresenti++;
+    }
+
+    void concludi(long durataNanos)
+    {
+        this.durataNanos = durataNanos;
+    }
+
+    /**
+     * @return righe di dati lette, intestazione esclusa
+     */
+    public long getRigheLette()
+    {
+        return righeLette;
+    }
+
+    /**
+     * @return libri aggiunti all'archivio
+     */
+    public long getImportati()
+    {
+        return importati;
+    }
+
+    /**
+     * @return righe scartate perché malformate o non valide
+     *         (campi mancanti, ISBN o enum non validi)
+     */
+    public long getScartate()
+    {
+        return scartate;
+    }
+
+    /**
+     * @return righe ignorate perché il loro ISBN compare prima nel file
+     */
+    public long getDuplicate()
+    {
+        return duplicate;
+    }
+
+    /**
+     * @return righe ignorate perché il loro ISBN era già nell'archivio
+     */
+    public long getGiaPresenti()
+    {
+        return giaPresenti;
+    }
+
+    public long getDurataMillis()
+    {
+        return durataNanos / 1_000_000;
+    }
+
+    /**
+     * @return righe lette al secondo
+     */
+    public double getRighePerSecondo()
+    {
+        return durataNanos == 0 ? 0 : righeLette * 1e9 / durataNanos;
+    }
+
+    /**
+     * @return i motivi delle prime righe scartate, nell'ordine del file
+     */
+    public List<String> getErrori()
+    {
+        return Collections.unmodifiableList(errori);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("RapportoImportazione{lette=%d, importati=%d, scartate=%d, duplicate=%d, giaPresenti=%d, %.0f righe/s}",
+                righeLette, importati, scartate, duplicate, giaPresenti, getRighePerSecondo());
+    }
+}
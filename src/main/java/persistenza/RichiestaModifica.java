@@ -0,0 +1,126 @@
+package persistenza;
+
+import model.Libro;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Singola modifica richiesta all'archivio all'interno di un lotto
+ * ({@link ArchivioLibri#applicaModifiche(java.util.List)}): l'aggiunta di un
+ * libro, la rimozione di un ISBN oppure il cambio di stato o valutazione.
+ * <p>
+ * I valori vengono validati soltanto quando il lotto viene applicato, per
+ * cui una richiesta non valida produce un errore sul singolo elemento
+ * invece di interrompere la costruzione del lotto.
+ */
+public final class RichiestaModifica
+{
+    /**
+     * Tipi di modifica richiedibili.
+     */
+    public enum Tipo
+    {
+        AGGIUNGI, RIMUOVI, STATO, VALUTAZIONE
+    }
+
+    private final Tipo tipo;
+    private final String isbn;
+    private final String valore;
+    private final Libro libro;
+    private final String[] campi;
+
+    private RichiestaModifica(Tipo tipo, String isbn, String valore, Libro libro, String[] campi)
+    {
+        this.tipo = tipo;
+        this.isbn = isbn;
+        this.valore = valore;
+        this.libro = libro;
+        this.campi = campi;
+    }
+
+    /**
+     * Aggiunge un libro già costruito, con il suo stato e la sua valutazione.
+     */
+    public static RichiestaModifica aggiungi(Libro libro)
+    {
+        Objects.requireNonNull(libro, "Libro non può essere null");
+        return new RichiestaModifica(Tipo.AGGIUNGI, libro.getIsbn(), null, libro, null);
+    }
+
+    /**
+     * Aggiunge un libro a partire dagli stessi campi di
+     * {@link ArchivioLibri#aggiungiLibro(String, String, String, String, String)};
+     * gli autori sono separati da virgole.
+     */
+    public static RichiestaModifica aggiungi(String titolo, String autori, String editore, String isbn, String genere)
+    {
+        return new RichiestaModifica(Tipo.AGGIUNGI, isbn, null, null,
+                new String[]{titolo, autori, editore, isbn, genere});
+    }
+
+    public static RichiestaModifica rimuovi(String isbn)
+    {
+        return new RichiestaModifica(Tipo.RIMUOVI, isbn, null, null, null);
+    }
+
+    /**
+     * @param stato come in {@link ArchivioLibri#modificaStato(String, String)}
+     */
+    public static RichiestaModifica stato(String isbn, String stato)
+    {
+        return new RichiestaModifica(Tipo.STATO, isbn, stato, null, null);
+    }
+
+    /**
+     * @param valutazione come in {@link ArchivioLibri#modificaValutazione(String, String)}
+     */
+    public static RichiestaModifica valutazione(String isbn, String valutazione)
+    {
+        return new RichiestaModifica(Tipo.VALUTAZIONE, isbn, valutazione, null, null);
+    }
+
+    public Tipo getTipo()
+    {
+        return tipo;
+    }
+
+    public String getIsbn()
+    {
+        return isbn;
+    }
+
+    /**
+     * @return il nuovo stato o la nuova valutazione, {@code null} per aggiunte e rimozioni
+     */
+    public String getValore()
+    {
+        return valore;
+    }
+
+    /**
+     * Costruisce il libro da aggiungere.
+     *
+     * @throws IllegalArgumentException se i campi non descrivono un libro valido
+     * @throws NullPointerException     se manca un campo obbligatorio
+     */
+    public Libro creaLibro()
+    {
+        if (libro != null) return libro;
+        if (campi == null)
+            throw new IllegalStateException("La richiesta " + tipo + " non aggiunge libri");
+        Set<String> autori = new TreeSet<>();
+        for (String a : Objects.requireNonNull(campi[1], "Autore non può essere null").split(","))
+        {
+            autori.add(a.trim());
+        }
+        return new Libro(campi[0], autori, campi[2], campi[3], campi[4]);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RichiestaModifica{" + tipo + ", isbn='" + isbn + "'}";
+    }
+}
@@ -0,0 +1,130 @@
+package persistenza;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sostituzione atomica di un file: il nuovo contenuto viene scritto in un file
+ * temporaneo nella stessa cartella, forzato su disco e spostato sopra
+ * l'originale con un rename atomico. Un crash durante la scrittura lascia
+ * intatto il file precedente; al più resta il temporaneo, che viene
+ * sovrascritto al salvataggio successivo.
+ * <p>
+ * Prima della sostituzione le versioni precedenti vengono conservate come
+ * generazioni numerate (<code>dati.csv.1</code> la più recente,
+ * <code>dati.csv.2</code> la precedente, ...).
+ */
+public final class ScritturaAtomica
+{
+    private static final String ESTENSIONE_TEMPORANEO = ".tmp";
+
+    /**
+     * Produce il contenuto del file sullo stream indicato.
+     */
+    @FunctionalInterface
+    public interface Contenuto
+    {
+        /**
+         * @param out stream del file temporaneo; può essere chiuso dall'implementazione
+         */
+        void scrivi(OutputStream out) throws IOException;
+    }
+
+    private ScritturaAtomica()
+    {
+    }
+
+    /**
+     * Sostituisce atomicamente il contenuto di {@code destinazione}.
+     *
+     * @param destinazione file da scrivere
+     * @param generazioni  numero di versioni precedenti da conservare, 0 per nessuna
+     * @param contenuto    produce il nuovo contenuto
+     * @throws IOException se la scrittura non va a buon fine; in tal caso
+     *                     {@code destinazione} non viene modificato
+     */
+    public static void scrivi(Path destinazione, int generazioni, Contenuto contenuto) throws IOException
+    {
+        if (generazioni < 0)
+            throw new IllegalArgumentException("Numero di generazioni non valido: " + generazioni);
+        Path cartella = destinazione.toAbsolutePath().getParent();
+        Files.createDirectories(cartella);
+        Path temporaneo = affiancato(destinazione, ESTENSIONE_TEMPORANEO);
+
+        try (OutputStream out = Files.newOutputStream(temporaneo)) {
+            contenuto.scrivi(out);
+        }
+        try (FileChannel canale = FileChannel.open(temporaneo, StandardOpenOption.WRITE)) {
+            canale.force(true);
+        }
+
+        if (generazioni > 0 && Files.exists(destinazione)) {
+            ruotaGenerazioni(destinazione, generazioni);
+        }
+        try {
+            Files.move(temporaneo, destinazione, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporaneo, destinazione, StandardCopyOption.REPLACE_EXISTING);
+        }
+        forzaCartella(cartella);
+    }
+
+    /**
+     * @return il percorso della generazione indicata (1 = la più recente)
+     */
+    public static Path generazione(Path file, int numero)
+    {
+        return affiancato(file, "." + numero);
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                           HELPER PRIVATI                            */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * Fa scorrere le generazioni (la più vecchia viene eliminata) e conserva
+     * il file corrente come generazione 1. Si usa un hard link, che non copia
+     * i dati e resta sul vecchio contenuto dopo il rename; se il file system
+     * non li supporta si ripiega su una copia.
+     */
+    private static void ruotaGenerazioni(Path file, int generazioni) throws IOException
+    {
+        Files.deleteIfExists(generazione(file, generazioni));
+        for (int i = generazioni - 1; i >= 1; i--) {
+            Path da = generazione(file, i);
+            if (Files.exists(da)) {
+                Files.move(da, generazione(file, i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Path prima = generazione(file, 1);
+        try {
+            Files.createLink(prima, file);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(file, prima, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Rende persistente il rename forzando la cartella; non tutti i sistemi
+     * operativi permettono di aprirla, nel qual caso si prosegue.
+     */
+    private static void forzaCartella(Path cartella)
+    {
+        try (FileChannel canale = FileChannel.open(cartella, StandardOpenOption.READ)) {
+            canale.force(true);
+        } catch (IOException e) {
+            // ad esempio su Windows: il rename resta comunque atomico
+        }
+    }
+
+    private static Path affiancato(Path file, String estensione)
+    {
+        return file.resolveSibling(file.getFileName() + estensione);
+    }
+}
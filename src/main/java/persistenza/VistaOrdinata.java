@@ -0,0 +1,161 @@
+package persistenza;
+
+import Strategy.OrdinamentoPerChiave;
+import model.Libro;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Libri di {@link IndiceLibri} mantenuti in ordine secondo una
+ * {@link OrdinamentoPerChiave}: ogni inserimento o rimozione costa
+ * O(log N) invece di un riordinamento completo.
+ * <p>
+ * A parità di chiave vale l'ordine degli slot, cioè quello dell'elenco,
+ * come nell'ordinamento stabile della strategia. L'elenco ordinato viene
+ * ricostruito in O(N) soltanto dopo una modifica e poi riusato; una pagina
+ * scorre soltanto le voci fino alla sua ultima, senza costruirlo.
+ */
+public class VistaOrdinata
+{
+    private final OrdinamentoPerChiave ordinamento;
+    private TreeSet<Voce> voci = new TreeSet<>();
+    private Voce[] perSlot = new Voce[16];
+    /** Ultimo elenco restituito, {@code null} se la vista è cambiata nel frattempo */
+    private volatile ElencoLibri elenco;
+
+    public VistaOrdinata(OrdinamentoPerChiave ordinamento)
+    {
+        this.ordinamento = ordinamento;
+    }
+
+    /**
+     * Costruisce la vista in blocco.
+     *
+     * @param libri libri indicizzati per slot; gli slot vuoti sono {@code null}
+     * @param usati numero di slot occupati dell'array
+     */
+    public void costruisci(Libro[] libri, int usati)
+    {
+        perSlot = new Voce[Math.max(16, usati)];
+        List<Voce> nuove = new ArrayList<>(usati);
+        for (int id = 0; id < usati; id++)
+        {
+            if (libri[id] == null) continue;
+            perSlot[id] = new Voce(ordinamento.chiaveDiConfronto(libri[id]), id, libri[id]);
+            nuove.add(perSlot[id]);
+        }
+        voci = new TreeSet<>(nuove);
+        elenco = null;
+    }
+
+    public void aggiungi(int slot, Libro libro)
+    {
+        if (slot >= perSlot.length)
+        {
+            perSlot = Arrays.copyOf(perSlot, Math.max(perSlot.length * 2, slot + 1));
+        }
+        perSlot[slot] = new Voce(ordinamento.chiaveDiConfronto(libro), slot, libro);
+        voci.add(perSlot[slot]);
+        elenco = null;
+    }
+
+    public void rimuovi(int slot)
+    {
+        voci.remove(perSlot[slot]);
+        perSlot[slot] = null;
+        elenco = null;
+    }
+
+    /**
+     * Sostituisce il libro dello slot; se la sua chiave è cambiata lo riposiziona.
+     */
+    public void aggiorna(int slot, Libro libro)
+    {
+        Voce voce = perSlot[slot];
+        if (voce.chiave.equals(ordinamento.chiaveDiConfronto(libro)))
+        {
+            voce.libro = libro;
+            elenco = null;
+        }
+        else
+        {
+            rimuovi(slot);
+            aggiungi(slot, libro);
+        }
+    }
+
+    /**
+     * @return i libri in ordine, come versione immutabile
+     */
+    public ElencoLibri elenco()
+    {
+        ElencoLibri ordinato = elenco;
+        if (ordinato == null)
+        {
+            List<Libro> ret = new ArrayList<>(voci.size());
+            for (Voce v : voci)
+            {
+                ret.add(v.libro);
+            }
+            ordinato = ElencoLibri.di(ret);
+            elenco = ordinato;
+        }
+        return ordinato;
+    }
+
+    /**
+     * @return i libri dalla posizione {@code offset}, al più {@code limite}:
+     *         dall'ultimo elenco se è ancora valido, altrimenti scorrendo le
+     *         voci ordinate fino all'ultima della pagina
+     */
+    public List<Libro> pagina(int offset, int limite)
+    {
+        ElencoLibri ordinato = elenco;
+        if (ordinato != null)
+        {
+            int da = Math.min(offset, ordinato.size());
+            int a = (int) Math.min((long) da + limite, ordinato.size());
+            return List.copyOf(ordinato.subList(da, a));
+        }
+        List<Libro> ret = new ArrayList<>(Math.min(limite, Math.max(0, voci.size() - offset)));
+        int posizione = 0;
+        for (Voce v : voci)
+        {
+            if (ret.size() == limite) break;
+            if (posizione++ >= offset) ret.add(v.libro);
+        }
+        return ret;
+    }
+
+    /**
+     * @return numero di libri della vista
+     */
+    public int size()
+    {
+        return voci.size();
+    }
+
+    private static final class Voce implements Comparable<Voce>
+    {
+        final String chiave;
+        final int slot;
+        Libro libro;
+
+        Voce(String chiave, int slot, Libro libro)
+        {
+            this.chiave = chiave;
+            this.slot = slot;
+            this.libro = libro;
+        }
+
+        @Override
+        public int compareTo(Voce altra)
+        {
+            int c = chiave.compareTo(altra.chiave);
+            return c != 0 ? c : Integer.compare(slot, altra.slot);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package ui;
 
 
 import persistenza.ArchivioLibri;
+import persistenza.ArchivioLibriAsincrono;
 
 /**
  * Classe base astratta per tutti i controller dell'interfaccia grafica.
@@ -13,6 +14,8 @@ public abstract class AbstractUi
 {
 
     protected ArchivioLibri archivio;
+    /** Lo stesso archivio, con le operazioni eseguite fuori dal thread chiamante */
+    protected ArchivioLibriAsincrono archivioAsincrono;
 
     /**
      * Imposta il riferimento all'archivio libri.
@@ -23,6 +26,7 @@ public abstract class AbstractUi
     public void setArchivio(ArchivioLibri archivio)
     {
         this.archivio = archivio;
+        this.archivioAsincrono = new ArchivioLibriAsincrono(archivio);
     }
     /**
      * Avvia il controller, creando e mostrando la UI associata.
@@ -1,27 +1,40 @@
 package ui;
 
 import model.Valutazione;
+import model.Isbn;
 import model.Libro;
+import model.Stato;
+import persistenza.ArchivioLibriAsincrono;
 import persistenza.CriterioOrdinamento;
-import persistenza.LibroGiaPresenteException;
+import persistenza.EventoArchivio;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Implementazione Swing dell'interfaccia utente per la gestione
  * della libreria personale.
+ * <p>
+ * Le operazioni sull'archivio girano fuori dal thread grafico tramite
+ * {@link ArchivioLibriAsincrono}; i risultati tornano sul thread grafico
+ * con {@link SwingUtilities#invokeLater(Runnable)}. Durante le operazioni
+ * viene mostrata una barra di avanzamento con la possibilità di annullarle.
  */
 public class LibreriaUISwing extends AbstractUi
 {
     private JFrame frame;
     private JTable table;
-    private DefaultTableModel tableModel;
-    private List<Libro> allBooks;
+    private ModelloTabellaLibri tableModel;
 
     private JComboBox<String> cbFiltroStato;
     private JComboBox<String> cbFiltroValutazione;
@@ -32,6 +45,30 @@ public class LibreriaUISwing extends AbstractUi
     private JButton btnSortTitolo;
     private JButton btnSortAutore;
     private JButton btnSearch;
+    private JTextField tfRicerca;
+    private Timer timerRicerca;
+    private JProgressBar barraAvanzamento;
+    private JLabel lblOperazione;
+    private JButton btnAnnulla;
+
+    /** Operazioni sull'archivio non ancora concluse; usato solo dal thread grafico */
+    private final Set<CompletableFuture<?>> inCorso = new LinkedHashSet<>();
+    /** Ultima ricerca o filtro sull'elenco, superati da quelli successivi */
+    private CompletableFuture<?> ricercaInCorso;
+    /** Ripete l'interrogazione che ha prodotto l'elenco mostrato */
+    private Runnable ultimaInterrogazione;
+    /** {@code true} se la ripetizione dell'interrogazione è già in coda sul thread grafico */
+    private boolean aggiornamentoPianificato;
+    /**
+     * Condizione su stato e valutazione dei libri dell'elenco mostrato,
+     * {@code null} se l'elenco non dipende da stato e valutazione
+     */
+    private Predicate<Libro> condizioneElenco;
+
+    /** Attesa dopo l'ultimo tasto prima di interrogare l'archivio */
+    private static final int RITARDO_RICERCA_MS = 250;
+    /** Numero massimo di suggerimenti mostrati durante la digitazione */
+    private static final int MAX_SUGGERIMENTI = 200;
 
     /**
      * Avvia la finestra principale e inizializza tutti i componenti UI.
@@ -46,19 +83,38 @@ public class LibreriaUISwing extends AbstractUi
         frame.setLayout(new BorderLayout(5, 5));
 
         // Modello e tabella per la visualizzazione dei libri
-        tableModel = new DefaultTableModel(
-                new Object[]{"ISBN", "Titolo", "Autori", "Editore", "Genere", "Stato", "Valutazione"},
-                0
-        )
+        tableModel = new ModelloTabellaLibri();
+        table = new JTable(tableModel);
+        frame.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        // Ricerca durante la digitazione, con attesa tra un tasto e l'altro
+        tfRicerca = new JTextField();
+        timerRicerca = new Timer(RITARDO_RICERCA_MS, e -> searchAsYouType());
+        timerRicerca.setRepeats(false);
+        tfRicerca.getDocument().addDocumentListener(new DocumentListener()
         {
             @Override
-            public boolean isCellEditable(int row, int column)
+            public void insertUpdate(DocumentEvent e)
             {
-                return false; // rendi le celle non editabili direttamente
+                timerRicerca.restart();
             }
-        };
-        table = new JTable(tableModel);
-        frame.add(new JScrollPane(table), BorderLayout.CENTER);
+
+            @Override
+            public void removeUpdate(DocumentEvent e)
+            {
+                timerRicerca.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e)
+            {
+                timerRicerca.restart();
+            }
+        });
+        JPanel searchPanel = new JPanel(new BorderLayout(5, 5));
+        searchPanel.add(new JLabel("Cerca titolo o autore:"), BorderLayout.WEST);
+        searchPanel.add(tfRicerca, BorderLayout.CENTER);
+        frame.add(searchPanel, BorderLayout.NORTH);
 
         // ComboBox per i filtri stato e valutazione
         cbFiltroStato = new JComboBox<>(new String[]{"Tutti", "NON_LETTO", "IN_LETTURA", "LETTO"});
@@ -109,9 +165,21 @@ public class LibreriaUISwing extends AbstractUi
         actionPanel.add(row2);
 
         // Posizionamento pannelli e registrazione listener
+        // Avanzamento delle operazioni sull'archivio
+        barraAvanzamento = new JProgressBar();
+        barraAvanzamento.setVisible(false);
+        lblOperazione = new JLabel(" ");
+        btnAnnulla = new JButton("Annulla");
+        btnAnnulla.setEnabled(false);
+        JPanel statusPanel = new JPanel(new BorderLayout(5, 5));
+        statusPanel.add(lblOperazione, BorderLayout.WEST);
+        statusPanel.add(barraAvanzamento, BorderLayout.CENTER);
+        statusPanel.add(btnAnnulla, BorderLayout.EAST);
+
         JPanel south = new JPanel(new BorderLayout(5, 5));
         south.add(filterPanel, BorderLayout.NORTH);
         south.add(actionPanel, BorderLayout.CENTER);
+        south.add(statusPanel, BorderLayout.SOUTH);
         frame.add(south, BorderLayout.SOUTH);
 
         cbFiltroStato.addActionListener(e -> applyFilters());
@@ -128,61 +196,49 @@ public class LibreriaUISwing extends AbstractUi
         btnSortTitolo.addActionListener(e -> sortBy(CriterioOrdinamento.TITOLO));
         btnSortAutore.addActionListener(e -> sortBy(CriterioOrdinamento.AUTORE));
         btnSearch.addActionListener(e -> searchByTitle());
+        btnAnnulla.addActionListener(e -> annullaOperazioni());
 
-        // Carica dati iniziali e mostra finestra
-        loadAll();
+        // Le modifiche all'archivio aggiornano la tabella, dal thread grafico
+        archivio.aggiungiAscoltatore(e -> SwingUtilities.invokeLater(() -> suModificaArchivio(e)));
+
+        // Mostra la finestra e carica i dati iniziali in background:
+        // il caricamento notifica l'archivio ricaricato, che applica i filtri
+        ultimaInterrogazione = this::applyFilters;
         frame.setVisible(true);
+        inBackground("Caricamento libreria...", a ->
+        {
+            a.caricaLibri();
+            return null;
+        });
     }
 
     /**
-     * Carica tutti i libri dall'archivio e popola la tabella.
+     * Mostra i libri che soddisfano i filtri selezionati (stato e
+     * valutazione), interrogando gli indici dell'archivio: il risultato
+     * riflette sempre le ultime modifiche.
      */
-    private void loadAll()
+    private void applyFilters()
     {
-        try
+        String fs = (String) cbFiltroStato.getSelectedItem();
+        String fv = (String) cbFiltroValutazione.getSelectedItem();
+        Stato stato = "Tutti".equals(fs) ? null : Stato.valueOf(fs);
+        Valutazione valutazione;
+        if ("Tutti".equals(fv))
         {
-            archivio.caricaLibri();
-            allBooks = archivio.getLibri();
-            popolaTabella(allBooks);
+            valutazione = null;
         }
-        catch (IOException e)
+        else if ("Non valutato".equals(fv))
         {
-            showError(e);
+            valutazione = Valutazione.nonValutato;
         }
-    }
-
-    /**
-     * Applica i filtri selezionati (stato e valutazione) alla lista di libri.
-     */
-    private void applyFilters()
-    {
-        if (allBooks == null)
+        else
         {
-            return;
+            valutazione = Valutazione.valueOf(fv);
         }
 
-        String fs = (String) cbFiltroStato.getSelectedItem();
-        String fv = (String) cbFiltroValutazione.getSelectedItem();
-
-        List<Libro> filtered = allBooks.stream()
-                .filter(l -> "Tutti".equals(fs) || l.getStatoLibro().name().equalsIgnoreCase(fs))
-                .filter(l ->
-                {
-                    if ("Tutti".equals(fv))
-                    {
-                        return true;
-                    }
-                    if ("Non valutato".equals(fv))
-                    {
-                        return l.getValutazione() == null
-                                || l.getValutazione() == Valutazione.nonValutato;
-                    }
-                    return l.getValutazione() != null
-                            && l.getValutazione().name().equalsIgnoreCase(fv);
-                })
-                .toList();
-
-        popolaTabella(filtered);
+        interroga("Filtro...", a -> a.filtra(stato, valutazione, null), this::applyFilters,
+                l -> (stato == null || l.getStatoLibro() == stato)
+                        && (valutazione == null || l.getValutazione() == valutazione));
     }
 
     /**
@@ -241,54 +297,40 @@ public class LibreriaUISwing extends AbstractUi
                 return;
             }
 
-            String isbnInput = tfIsbn.getText().trim();
+            String isbnInput = Isbn.normalizza(tfIsbn.getText().trim());
+            String titolo = tfTit.getText();
+            String autori = tfAut.getText();
+            String editore = tfEd.getText();
+            String genere = (String) cbGen.getSelectedItem();
+            String stato = (String) cbSt.getSelectedItem();
+            String v = (String) cbVal.getSelectedItem();
 
-            // Validazione basic ISBN
-            if (!isValidIsbn(isbnInput))
+            // Stessa validazione dell'importazione: cifra di controllo inclusa
+            if (!Isbn.isValido(isbnInput))
             {
                 JOptionPane.showMessageDialog(
                         frame,
-                        "ISBN non valido: deve contenere 10 o 13 cifre numeriche.",
+                        "ISBN non valido: servono 10 o 13 cifre (l'ultima di un ISBN-10 può essere X) "
+                                + "con cifra di controllo corretta.",
                         "Errore",
                         JOptionPane.ERROR_MESSAGE
                 );
                 return;
             }
+            // salvato a 13 cifre come dall'importazione, anche per gli ISBN-10 che finiscono con X
+            String isbn = Isbn.aIsbn13(isbnInput);
 
-            try
+            // ISBN duplicato o input non valido vengono mostrati come errore
+            inBackground("Aggiunta libro...", a ->
             {
-                archivio.aggiungiLibro(
-                        tfTit.getText(),
-                        tfAut.getText(),
-                        tfEd.getText(),
-                        isbnInput,
-                        (String) cbGen.getSelectedItem()
-                );
-
-                archivio.modificaStato(isbnInput, (String) cbSt.getSelectedItem());
-
-                String v = (String) cbVal.getSelectedItem();
+                a.aggiungiLibro(titolo, autori, editore, isbn, genere);
+                a.modificaStato(isbn, stato);
                 if (!"Non valutato".equals(v))
                 {
-                    archivio.modificaValutazione(isbnInput, v);
+                    a.modificaValutazione(isbn, v);
                 }
-
-                loadAll();
-            }
-            catch (LibroGiaPresenteException | IllegalArgumentException ex)
-            {
-                // ISBN duplicato o input non valido
-                JOptionPane.showMessageDialog(
-                        frame,
-                        ex.getMessage(),
-                        "Errore",
-                        JOptionPane.ERROR_MESSAGE
-                );
-            }
-            catch (IOException ex)
-            {
-                showError(ex);
-            }
+                return null;
+            });
         }
     }
 
@@ -303,17 +345,13 @@ public class LibreriaUISwing extends AbstractUi
             return;
         }
 
-        String isbn = (String) tableModel.getValueAt(sel, 0);
+        String isbn = tableModel.getLibro(sel).getIsbn();
 
-        try
-        {
-            archivio.rimuoviLibro(isbn);
-            loadAll();
-        }
-        catch (IOException e)
+        inBackground("Rimozione libro...", a ->
         {
-            showError(e);
-        }
+            a.rimuoviLibro(isbn);
+            return null;
+        });
     }
 
     /**
@@ -327,7 +365,7 @@ public class LibreriaUISwing extends AbstractUi
             return;
         }
 
-        String isbn = (String) tableModel.getValueAt(sel, 0);
+        String isbn = tableModel.getLibro(sel).getIsbn();
         String[] opts = {"Stato", "Valutazione"};
 
         int ch = JOptionPane.showOptionDialog(
@@ -341,48 +379,47 @@ public class LibreriaUISwing extends AbstractUi
                 opts[0]
         );
 
-        try
+        if (ch == 0)
         {
-            if (ch == 0)
+            // Modifica dello stato di lettura
+            String ns = (String) JOptionPane.showInputDialog(
+                    frame,
+                    "Nuovo stato:",
+                    "Modifica Stato",
+                    JOptionPane.PLAIN_MESSAGE,
+                    null,
+                    new String[]{"NON_LETTO", "IN_LETTURA", "LETTO"},
+                    "LETTO"
+            );
+            if (ns != null)
             {
-                // Modifica dello stato di lettura
-                String ns = (String) JOptionPane.showInputDialog(
-                        frame,
-                        "Nuovo stato:",
-                        "Modifica Stato",
-                        JOptionPane.PLAIN_MESSAGE,
-                        null,
-                        new String[]{"NON_LETTO", "IN_LETTURA", "LETTO"},
-                        "LETTO"
-                );
-                if (ns != null)
+                inBackground("Modifica stato...", a ->
                 {
-                    archivio.modificaStato(isbn, ns);
-                }
+                    a.modificaStato(isbn, ns);
+                    return null;
+                });
             }
-            else if (ch == 1)
+        }
+        else if (ch == 1)
+        {
+            // Modifica della valutazione
+            String nv = (String) JOptionPane.showInputDialog(
+                    frame,
+                    "Nuova valutazione:",
+                    "Modifica Valutazione",
+                    JOptionPane.PLAIN_MESSAGE,
+                    null,
+                    new String[]{"1", "2", "3", "4", "5", "Non valutato"},
+                    "3"
+            );
+            if (nv != null )
             {
-                // Modifica della valutazione
-                String nv = (String) JOptionPane.showInputDialog(
-                        frame,
-                        "Nuova valutazione:",
-                        "Modifica Valutazione",
-                        JOptionPane.PLAIN_MESSAGE,
-                        null,
-                        new String[]{"1", "2", "3", "4", "5", "Non valutato"},
-                        "3"
-                );
-                if (nv != null )
+                inBackground("Modifica valutazione...", a ->
                 {
-                    archivio.modificaValutazione(isbn, nv);
-                }
+                    a.modificaValutazione(isbn, nv);
+                    return null;
+                });
             }
-
-            loadAll();
-        }
-        catch (IOException e)
-        {
-            showError(e);
         }
     }
 
@@ -393,14 +430,7 @@ public class LibreriaUISwing extends AbstractUi
      */
     private void sortBy(CriterioOrdinamento c)
     {
-        try
-        {
-            popolaTabella(archivio.ordina(c));
-        }
-        catch (IOException e)
-        {
-            showError(e);
-        }
+        interroga("Ordinamento...", a -> a.ordina(c), () -> sortBy(c), null);
     }
 
     /**
@@ -413,45 +443,195 @@ public class LibreriaUISwing extends AbstractUi
         {
             return;
         }
-        try
-        {
-            popolaTabella(archivio.cerca(q));
-        }
-        catch (IOException e)
+        cercaTitolo(q);
+    }
+
+    /**
+     * Mostra i libri con il titolo indicato.
+     */
+    private void cercaTitolo(String q)
+    {
+        interroga("Ricerca...", a -> a.cerca(q), () -> cercaTitolo(q), null);
+    }
+
+    /**
+     * Mostra i libri il cui titolo o autore inizia con il testo digitato;
+     * con il campo vuoto torna all'elenco filtrato completo.
+     */
+    private void searchAsYouType()
+    {
+        String q = tfRicerca.getText();
+        if (q.isBlank())
         {
-            showError(e);
+            applyFilters();
+            return;
         }
+        interroga("Ricerca...", a -> a.suggerisci(q, MAX_SUGGERIMENTI), this::searchAsYouType, null);
     }
 
     /**
-     * Popola la tabella con la lista di libri fornita.
+     * Mostra nella tabella la lista di libri fornita; le celle vengono
+     * calcolate dal modello solo per le righe visibili.
      *
-     * @param list lista di {@link Libro}
+     * @param list lista di {@link Libro}, non modificata in seguito
      */
     private void popolaTabella(List<Libro> list)
     {
-        tableModel.setRowCount(0); // svuota prima di riempire
-        for (Libro l : list)
+        tableModel.setLibri(list);
+    }
+
+    /**
+     * Mostra nella tabella il risultato di un'interrogazione dell'archivio,
+     * annullando quella precedente se non è ancora conclusa.
+     *
+     * @param ripeti     riesegue l'interrogazione quando l'archivio cambia
+     * @param condizione condizione su stato e valutazione dei libri del
+     *                   risultato, {@code null} se non ne dipende
+     */
+    private void interroga(String descrizione,
+                           ArchivioLibriAsincrono.Operazione<List<Libro>> operazione,
+                           Runnable ripeti,
+                           Predicate<Libro> condizione)
+    {
+        if (ricercaInCorso != null)
+        {
+            ricercaInCorso.cancel(false);
+        }
+        ultimaInterrogazione = ripeti;
+        condizioneElenco = condizione;
+        ricercaInCorso = inBackground(descrizione, operazione, this::popolaTabella);
+    }
+
+    /**
+     * Aggiorna la tabella dopo una modifica dell'archivio. Un cambio di stato
+     * o di valutazione aggiorna la sola riga del libro, se resta nell'elenco
+     * mostrato; negli altri casi l'interrogazione corrente viene ripetuta
+     * sugli indici dell'archivio, una sola volta per tutti gli eventi già
+     * in coda sul thread grafico.
+     */
+    private void suModificaArchivio(EventoArchivio evento)
+    {
+        switch (evento.getTipo())
         {
-            String autoriStr = String.join(", ", l.getAutori());
-            tableModel.addRow(new Object[]{
-                    l.getIsbn(),
-                    l.getTitolo(),
-                    autoriStr,
-                    l.getEditore(),
-                    l.getGenere(),
-                    l.getStatoLibro(),
-                    l.getValutazione()
+            case STATO_MODIFICATO:
+            case VALUTAZIONE_MODIFICATA:
+            {
+                int riga = tableModel.rigaDi(evento.getIsbn());
+                boolean mostrato = riga >= 0;
+                boolean daMostrare = condizioneElenco == null ? mostrato : condizioneElenco.test(evento.getLibro());
+                if (mostrato && daMostrare)
+                {
+                    tableModel.aggiornaLibro(riga, evento.getLibro());
+                    return;
+                }
+                if (!mostrato && !daMostrare)
+                {
+                    return;
+                }
+                break;
+            }
+            default:
+                break;
+        }
+        if (!aggiornamentoPianificato)
+        {
+            // gli eventi arrivati insieme sono già in coda: l'aggiornamento parte dopo di loro
+            aggiornamentoPianificato = true;
+            SwingUtilities.invokeLater(() ->
+            {
+                aggiornamentoPianificato = false;
+                if (ultimaInterrogazione != null)
+                {
+                    ultimaInterrogazione.run();
+                }
             });
         }
     }
 
+    /**
+     * Esegue un'operazione sull'archivio fuori dal thread grafico e ne passa
+     * il risultato, sul thread grafico, all'azione indicata. Gli errori
+     * vengono mostrati in un dialog; le operazioni annullate vengono ignorate.
+     *
+     * @param descrizione testo mostrato accanto alla barra di avanzamento
+     * @return il future dell'operazione, annullabile
+     */
+    private <T> CompletableFuture<T> inBackground(String descrizione,
+                                                  ArchivioLibriAsincrono.Operazione<T> operazione,
+                                                  Consumer<T> alTermine)
+    {
+        CompletableFuture<T> futuro = archivioAsincrono.esegui(operazione);
+        inCorso.add(futuro);
+        aggiornaAvanzamento(descrizione);
+        futuro.whenCompleteAsync((risultato, errore) ->
+        {
+            inCorso.remove(futuro);
+            aggiornaAvanzamento(null);
+            if (futuro.isCancelled())
+            {
+                return;
+            }
+            if (errore != null)
+            {
+                showError(errore instanceof CompletionException && errore.getCause() != null
+                        ? errore.getCause() : errore);
+            }
+            else
+            {
+                alTermine.accept(risultato);
+            }
+        }, SwingUtilities::invokeLater);
+        return futuro;
+    }
+
+    /**
+     * Esegue una modifica sull'archivio fuori dal thread grafico; la tabella
+     * viene aggiornata dalle notifiche dell'archivio.
+     */
+    private void inBackground(String descrizione, ArchivioLibriAsincrono.Operazione<?> operazione)
+    {
+        inBackground(descrizione, operazione, risultato -> { });
+    }
+
+    /**
+     * Mostra la barra di avanzamento finché ci sono operazioni in corso.
+     *
+     * @param descrizione operazione appena avviata, {@code null} se nessuna
+     */
+    private void aggiornaAvanzamento(String descrizione)
+    {
+        boolean attivo = !inCorso.isEmpty();
+        if (descrizione != null)
+        {
+            lblOperazione.setText(descrizione);
+        }
+        else if (!attivo)
+        {
+            lblOperazione.setText(" ");
+        }
+        barraAvanzamento.setIndeterminate(attivo);
+        barraAvanzamento.setVisible(attivo);
+        btnAnnulla.setEnabled(attivo);
+    }
+
+    /**
+     * Annulla le operazioni in corso: quelle non ancora iniziate vengono
+     * saltate, quelle già iniziate terminano ma il risultato non viene mostrato.
+     */
+    private void annullaOperazioni()
+    {
+        for (CompletableFuture<?> futuro : new ArrayList<>(inCorso))
+        {
+            futuro.cancel(false);
+        }
+    }
+
     /**
      * Mostra un dialog di errore con il messaggio dell'eccezione.
      *
      * @param e eccezione da visualizzare
      */
-    private void showError(Exception e)
+    private void showError(Throwable e)
     {
         JOptionPane.showMessageDialog(
                 frame,
@@ -461,17 +641,6 @@ public class LibreriaUISwing extends AbstractUi
         );
     }
 
-    /**
-     * Verifica che l'ISBN contenga esattamente 10 o 13 cifre numeriche.
-     *
-     * @param isbn stringa da validare
-     * @return true se valida, false altrimenti
-     */
-    private boolean isValidIsbn(String isbn)
-    {
-        return isbn.matches("\\d{10}|\\d{13}");
-    }
-
     /**
      * Normalizza una stringa convertendo in maiuscolo e sostituendo spazi con underscore.
      *
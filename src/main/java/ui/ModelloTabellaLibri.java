@@ -0,0 +1,127 @@
+package ui;
+
+import model.Libro;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Modello della tabella dei libri che legge direttamente l'elenco
+ * restituito dall'archivio, senza copiarlo riga per riga.
+ * <p>
+ * Le celle vengono calcolate solo quando la tabella le disegna, cioè per
+ * le righe visibili; ogni nuovo elenco produce un unico evento di modifica.
+ * L'elenco non deve cambiare mentre è mostrato: gli archivi restituiscono
+ * versioni immutabili, che vengono sostituite e non modificate. Le nuove
+ * versioni dei singoli libri vengono tenute a parte con
+ * {@link #aggiornaLibro(int, Libro)}, che ridisegna la sola riga.
+ */
+public class ModelloTabellaLibri extends AbstractTableModel
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLONNE = {"ISBN", "Titolo", "Autori", "Editore", "Genere", "Stato", "Valutazione"};
+
+    private transient List<Libro> libri = List.of();
+    /** Libri aggiornati dopo {@link #setLibri(List)}, per riga */
+    private final transient Map<Integer, Libro> aggiornati = new HashMap<>();
+    /** Riga di ogni ISBN, costruita al primo aggiornamento di un libro */
+    private transient Map<String, Integer> righe;
+
+    /**
+     * Sostituisce i libri mostrati.
+     *
+     * @param libri elenco da mostrare, usato senza copiarlo
+     */
+    public void setLibri(List<Libro> libri)
+    {
+        this.libri = libri;
+        aggiornati.clear();
+        righe = null;
+        fireTableDataChanged();
+    }
+
+    /**
+     * @return il libro mostrato nella riga indicata
+     */
+    public Libro getLibro(int riga)
+    {
+        if (!aggiornati.isEmpty())
+        {
+            Libro aggiornato = aggiornati.get(riga);
+            if (aggiornato != null) return aggiornato;
+        }
+        return libri.get(riga);
+    }
+
+    /**
+     * @return la riga in cui è mostrato il libro con l'ISBN indicato, -1 se non è mostrato
+     */
+    public int rigaDi(String isbn)
+    {
+        if (righe == null)
+        {
+            righe = new HashMap<>(libri.size() * 2);
+            for (int i = 0; i < libri.size(); i++)
+            {
+                righe.put(libri.get(i).getIsbn(), i);
+            }
+        }
+        return righe.getOrDefault(isbn, -1);
+    }
+
+    /**
+     * Mostra la nuova versione del libro nella riga indicata,
+     * notificando la modifica della sola riga.
+     */
+    public void aggiornaLibro(int riga, Libro libro)
+    {
+        aggiornati.put(riga, libro);
+        fireTableRowsUpdated(riga, riga);
+    }
+
+    @Override
+    public int getRowCount()
+    {
+        return libri.size();
+    }
+
+    @Override
+    public int getColumnCount()
+    {
+        return COLONNE.length;
+    }
+
+    @Override
+    public String getColumnName(int colonna)
+    {
+        return COLONNE[colonna];
+    }
+
+    @Override
+    public Object getValueAt(int riga, int colonna)
+    {
+        Libro l = getLibro(riga);
+        switch (colonna)
+        {
+            case 0:
+                return l.getIsbn();
+            case 1:
+                return l.getTitolo();
+            case 2:
+                return String.join(", ", l.getAutori());
+            case 3:
+                return l.getEditore();
+            case 4:
+                return l.getGenere();
+            case 5:
+                return l.getStatoLibro();
+            case 6:
+                return l.getValutazione();
+            default:
+                throw new IndexOutOfBoundsException("Colonna non valida: " + colonna);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package Strategy;
+
+import model.Libro;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrdinamentoPerChiaveTest
+{
+
+    /**
+     * Verifica che l'ordinamento per chiavi precalcolate coincida con quello
+     * per comparatore case-insensitive, compresa la stabilità a parità di chiave.
+     */
+    @Test
+    void testStessoOrdineDelComparatore()
+    {
+        String alfabeto = "abAB_z Z9àÀ";
+        Random random = new Random(42);
+        List<Libro> libri = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++)
+        {
+            StringBuilder titolo = new StringBuilder();
+            for (int k = random.nextInt(4); k >= 0; k--)
+                titolo.append(alfabeto.charAt(random.nextInt(alfabeto.length())));
+            libri.add(new Libro(titolo.toString(), Set.of("Autore " + random.nextInt(30)), "Editore",
+                    String.format("%013d", i), "GIALLO"));
+        }
+
+        List<Libro> attesi = new ArrayList<>(libri);
+        attesi.sort(Comparator.comparing(Libro::getTitolo, String.CASE_INSENSITIVE_ORDER));
+        assertEquals(attesi, new OrdinamentoPerTitolo().ordina(new ArrayList<>(libri)));
+
+        attesi = new ArrayList<>(libri);
+        attesi.sort(Comparator.comparing(Libro::getPrimoAutore, String.CASE_INSENSITIVE_ORDER));
+        assertEquals(attesi, new OrdinamentoPerAutore().ordina(new ArrayList<>(libri)));
+    }
+
+    /**
+     * Verifica che la selezione dei primi k libri coincida con l'inizio
+     * dell'ordinamento completo, anche con molte chiavi uguali.
+     */
+    @Test
+    void testPrimiComeOrdinamentoCompleto()
+    {
+        Random random = new Random(7);
+        List<Libro> libri = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+        {
+            libri.add(new Libro("Titolo " + random.nextInt(40), Set.of("Autore"), "Editore",
+                    String.format("%013d", i), "GIALLO"));
+        }
+        OrdinamentoPerTitolo ordinamento = new OrdinamentoPerTitolo();
+        List<Libro> ordinati = ordinamento.ordina(new ArrayList<>(libri));
+
+        for (int k : new int[] {0, 1, 10, 499, 500, 600})
+        {
+            assertEquals(ordinati.subList(0, Math.min(k, 500)), ordinamento.primi(libri, k), "k = " + k);
+        }
+        assertThrows(IllegalArgumentException.class, () -> ordinamento.primi(libri, -1));
+    }
+}
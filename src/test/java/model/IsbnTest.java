@@ -0,0 +1,48 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IsbnTest
+{
+
+    /**
+     * Verifica la cifra di controllo di ISBN-10 (anche con X finale) e ISBN-13.
+     */
+    @Test
+    void testCifraDiControllo()
+    {
+        assertTrue(Isbn.isValido("0123456789"));
+        assertTrue(Isbn.isValido("080442957X"));
+        assertTrue(Isbn.isValido("9788845292613"));
+        assertFalse(Isbn.isValido("0123456788"));
+        assertFalse(Isbn.isValido("9788845292614"));
+        assertFalse(Isbn.isValido("X123456789"));
+        assertFalse(Isbn.isValido("978-8845292613"));
+        assertFalse(Isbn.isValido(null));
+
+        assertTrue(Isbn.haStrutturaValida("1234567890123"));
+        assertFalse(Isbn.haStrutturaValida("080442957X"));
+        assertFalse(Isbn.haStrutturaValida(null));
+    }
+
+    /**
+     * Verifica la conversione tra le due forme e la normalizzazione.
+     */
+    @Test
+    void testConversioni()
+    {
+        assertEquals("9780123456786", Isbn.aIsbn13("0123456789"));
+        assertEquals("0123456789", Isbn.aIsbn10("9780123456786"));
+        assertEquals("9780804429573", Isbn.aIsbn13("080442957X"));
+        assertEquals("080442957X", Isbn.aIsbn10("9780804429573"));
+        assertEquals("9788845292613", Isbn.aIsbn13(Isbn.normalizza("978-88-452-9261-3")));
+        assertEquals("080442957X", Isbn.normalizza("0 8044 2957 x"));
+
+        String compatto = "9788845292613";
+        assertSame(compatto, Isbn.normalizza(compatto));
+        assertTrue(Isbn.isValido("9798845292612"));
+        assertNull(Isbn.altraForma("9798845292612"));
+        assertThrows(IllegalArgumentException.class, () -> Isbn.aIsbn13("0123456788"));
+    }
+}
@@ -3,6 +3,7 @@ package model;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.List;
 import java.util.Set;
 
 public class LibroTest
@@ -79,6 +80,7 @@ public class LibroTest
     /**
      * Verifica che venga lanciata IllegalArgumentException se l'ISBN è null.
      */
+    @Test
     void testEccezioneIsbnNull()
     {
         assertThrows(IllegalArgumentException.class, () -> {
@@ -152,6 +154,25 @@ public class LibroTest
         assertNotEquals(libro1.hashCode(), libro2.hashCode(), "Libri con ISBN diversi dovrebbero avere hashCode diversi");
     }
 
+    /**
+     * Verifica la rappresentazione compatta: ISBN con zeri iniziali, autori
+     * ordinati senza duplicati in una vista non modificabile, editore condiviso.
+     */
+    @Test
+    void testRappresentazioneCompatta()
+    {
+        Libro libro1 = new Libro("Good Omens", Set.of("Terry Pratchett", "Neil Gaiman", "neil gaiman"), "Mondadori", "0012345678", "FANTASY");
+        Libro libro2 = new Libro("Dune", Set.of("Frank Herbert"), "mondadori", "0012345679", "FANTASCIENZA");
+
+        assertEquals("0012345678", libro1.getIsbn());
+        assertNotEquals(libro1, libro2);
+        assertEquals(List.of("NEIL GAIMAN", "TERRY PRATCHETT"), List.copyOf(libro1.getAutori()));
+        assertEquals("NEIL GAIMAN", libro1.getPrimoAutore());
+        assertTrue(libro1.getAutori().contains("TERRY PRATCHETT"));
+        assertThrows(UnsupportedOperationException.class, () -> libro1.getAutori().add("ALTRO"));
+        assertSame(libro1.getEditore(), libro2.getEditore());
+    }
+
 
 
 
@@ -0,0 +1,108 @@
+package persistenza;
+
+import model.Libro;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test delle operazioni asincrone sull'archivio.
+ */
+class ArchivioLibriAsincronoTest
+{
+    @TempDir
+    Path cartella;
+
+    private ArchivioLibriAsincrono asincrono;
+
+    @BeforeEach
+    void setUp()
+    {
+        asincrono = new ArchivioLibriAsincrono(new ArchivioLibriFileCsv(cartella.resolve("libri.csv")),
+                Executors.newSingleThreadExecutor());
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        asincrono.close();
+    }
+
+    /**
+     * Verifica che risultati ed errori dell'archivio arrivino dai future.
+     */
+    @Test
+    void testRisultatiEdErrori()
+            throws Exception
+    {
+        asincrono.esegui(a ->
+        {
+            a.aggiungiLibro("B Title", "Auth", "E", "1234567890", "DISTOPIA");
+            a.aggiungiLibro("A Title", "Auth", "E", "1234567891", "DISTOPIA");
+            return null;
+        }).get(5, TimeUnit.SECONDS);
+
+        List<Libro> ordinati = asincrono.ordina(CriterioOrdinamento.TITOLO).get(5, TimeUnit.SECONDS);
+        assertEquals("A TITLE", ordinati.get(0).getTitolo());
+        assertTrue(asincrono.rimuoviLibro("1234567890").get(5, TimeUnit.SECONDS));
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> asincrono.modificaStato("1234567891", "FINITO").get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+
+        CompletableFuture<Void> errore = asincrono.esegui(a ->
+        {
+            throw new IOException("disco pieno");
+        });
+        e = assertThrows(ExecutionException.class, () -> errore.get(5, TimeUnit.SECONDS));
+        assertEquals("disco pieno", e.getCause().getMessage());
+    }
+
+    /**
+     * Verifica che un'operazione annullata prima di iniziare non venga eseguita.
+     */
+    @Test
+    void testAnnullamentoPrimaDellInizio()
+            throws Exception
+    {
+        CountDownLatch sblocca = new CountDownLatch(1);
+        CompletableFuture<Void> bloccante = asincrono.esegui(a ->
+        {
+            try
+            {
+                sblocca.await();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+
+        AtomicBoolean eseguita = new AtomicBoolean();
+        CompletableFuture<Void> annullata = asincrono.esegui(a ->
+        {
+            eseguita.set(true);
+            return null;
+        });
+        assertTrue(annullata.cancel(false));
+        sblocca.countDown();
+        bloccante.get(5, TimeUnit.SECONDS);
+        asincrono.getLibri().get(5, TimeUnit.SECONDS);
+
+        assertFalse(eseguita.get(), "L'operazione annullata non deve essere eseguita");
+    }
+}
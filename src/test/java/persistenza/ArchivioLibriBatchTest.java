@@ -0,0 +1,129 @@
+package persistenza;
+
+import model.Libro;
+import model.Stato;
+import model.Valutazione;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test delle modifiche a lotti: errori per singola richiesta, ordine
+ * risultante e coerenza tra le diverse implementazioni.
+ */
+class ArchivioLibriBatchTest
+{
+
+    @TempDir
+    Path dir;
+
+    private List<RichiestaModifica> lotto;
+
+    @BeforeEach
+    void setUp()
+    {
+        lotto = List.of(
+                RichiestaModifica.aggiungi("1984", "George Orwell", "Mondadori", "9788845294970", "DISTOPIA"),
+                RichiestaModifica.aggiungi("Dune", "Frank Herbert", "Fanucci", "9788834739680", "FANTASCIENZA"),
+                RichiestaModifica.aggiungi("1984 bis", "George Orwell", "Mondadori", "9788845294970", "DISTOPIA"),
+                RichiestaModifica.aggiungi("Senza genere", "Anonimo", "Editore", "9788845292613", "INESISTENTE"),
+                RichiestaModifica.stato("9788834739680", "LETTO"),
+                RichiestaModifica.valutazione("9788845294970", "cinque"),
+                RichiestaModifica.stato("9788845294970", "ABBANDONATO"),
+                RichiestaModifica.rimuovi("0000000000"),
+                RichiestaModifica.rimuovi("9788845294970"),
+                RichiestaModifica.aggiungi("1984", "George Orwell", "Mondadori", "9788845294970", "DISTOPIA"));
+    }
+
+    /**
+     * Le richieste non valide vengono scartate con la loro posizione, le altre
+     * vengono applicate in ordine e rese persistenti.
+     */
+    @Test
+    void testErroriPerRichiesta()
+            throws IOException
+    {
+        Path csv = dir.resolve("dati.csv");
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv);
+        archivio.svuota();
+
+        EsitoBatch esito = archivio.applicaModifiche(lotto);
+
+        assertEquals(6, esito.getApplicate());
+        assertFalse(esito.isCompleto());
+        List<Integer> posizioni = new ArrayList<>();
+        for (EsitoBatch.Errore e : esito.getErrori())
+            posizioni.add(e.getPosizione());
+        assertEquals(List.of(2, 3, 6, 7), posizioni);
+        assertInstanceOf(LibroGiaPresenteException.class, esito.getErrori().get(0).getCausa());
+        assertInstanceOf(LibroNonPresente.class, esito.getErrori().get(3).getCausa());
+
+        // il libro rimosso e reinserito nel lotto finisce in coda, senza valutazione
+        List<Libro> libri = archivio.getLibri();
+        assertEquals(List.of("9788834739680", "9788845294970"), List.of(libri.get(0).getIsbn(), libri.get(1).getIsbn()));
+        assertEquals(Stato.LETTO, libri.get(0).getStatoLibro());
+        assertEquals(Valutazione.nonValutato, libri.get(1).getValutazione());
+
+        ArchivioLibriFileCsv riletto = new ArchivioLibriFileCsv(csv);
+        riletto.caricaLibri();
+        assertEquals(libri, riletto.getLibri());
+    }
+
+    /**
+     * Lo stesso lotto deve produrre lo stesso risultato sull'archivio
+     * mappato e su quello binario in modalità residente.
+     */
+    @Test
+    void testStessoRisultatoSuOgniArchivio()
+            throws IOException
+    {
+        ArchivioLibriFileBinario binario = new ArchivioLibriFileBinario(dir.resolve("dati.bin"));
+        binario.svuota();
+        EsitoBatch attesa = binario.applicaModifiche(lotto);
+
+        ArchivioLibriFileBinario residente = new ArchivioLibriFileBinario(dir.resolve("residente.bin"), new PoliticaFlush(0, 0, false));
+        residente.svuota();
+        EsitoBatch esitoResidente = residente.applicaModifiche(lotto);
+        // le modifiche pendenti sono una per ISBN toccato dal lotto
+        assertEquals(2, residente.getModifichePendenti());
+
+        try (ArchivioLibriMappato mappato = new ArchivioLibriMappato(dir.resolve("mappato.bin")))
+        {
+            mappato.svuota();
+            EsitoBatch esitoMappato = mappato.applicaModifiche(lotto);
+            assertEquals(attesa.getApplicate(), esitoMappato.getApplicate());
+            assertEquals(binario.getLibri(), mappato.getLibri());
+        }
+        assertEquals(attesa.getApplicate(), esitoResidente.getApplicate());
+        assertEquals(binario.getLibri(), residente.getLibri());
+    }
+
+    /**
+     * aggiungiLibri conserva stato e valutazione dei libri e salta i duplicati.
+     */
+    @Test
+    void testAggiungiLibri()
+            throws IOException
+    {
+        ArchivioLibriFileBinario archivio = new ArchivioLibriFileBinario(dir.resolve("dati.bin"));
+        archivio.svuota();
+        Libro dune = new Libro("Dune", Set.of("Frank Herbert"), "Fanucci", "9788834739680", "FANTASCIENZA");
+        dune.setStatoLibro(Stato.LETTO);
+        Libro copia = new Libro("Dune", Set.of("Frank Herbert"), "Fanucci", "9788834739680", "FANTASCIENZA");
+
+        EsitoBatch esito = archivio.aggiungiLibri(List.of(dune, copia));
+
+        assertEquals(1, esito.getApplicate());
+        assertEquals(1, esito.getErrori().get(0).getPosizione());
+        assertEquals(List.of(dune), archivio.getLibri());
+        assertEquals(Stato.LETTO, archivio.getLibri().get(0).getStatoLibro());
+    }
+}
@@ -0,0 +1,142 @@
+package persistenza;
+
+import model.Libro;
+import model.Stato;
+import model.Valutazione;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test di ArchivioLibriFileBinario: lettura e scrittura dello snapshot
+ * binario, journal e conversione da e verso il CSV.
+ */
+class ArchivioLibriBinarioTest
+{
+
+    @TempDir
+    Path dir;
+
+    private Path bin;
+
+    @BeforeEach
+    void setUp()
+    {
+        bin = dir.resolve("dati.bin");
+    }
+
+    private List<Libro> rileggi()
+            throws IOException
+    {
+        ArchivioLibriFileBinario archivio = new ArchivioLibriFileBinario(bin);
+        archivio.caricaLibri();
+        return archivio.getLibri();
+    }
+
+    /**
+     * Dopo compattazione e rilettura i libri devono essere identici,
+     * compresi autori multipli, stato, valutazione e ISBN con zeri iniziali.
+     */
+    @Test
+    void testSnapshotAndataERitorno()
+            throws IOException
+    {
+        ArchivioLibriFileBinario archivio = new ArchivioLibriFileBinario(bin);
+        archivio.svuota();
+        archivio.aggiungiLibro("Il nome della rosa", "Umberto Eco", "Bompiani", "0123456789", "GIALLO");
+        archivio.aggiungiLibro("Buona apocalisse a tutti!", "Terry Pratchett, Neil Gaiman", "Mondadori", "9788804668237", "FANTASY");
+        archivio.modificaStato("0123456789", "LETTO");
+        archivio.modificaValutazione("0123456789", "cinque");
+        archivio.compatta();
+
+        List<Libro> riletti = rileggi();
+        assertEquals(2, riletti.size());
+        Libro rosa = riletti.get(0);
+        assertEquals("0123456789", rosa.getIsbn());
+        assertEquals(Stato.LETTO, rosa.getStatoLibro());
+        assertEquals(Valutazione.cinque, rosa.getValutazione());
+        assertEquals(2, riletti.get(1).getAutori().size());
+        assertEquals(archivio.getLibri(), riletti);
+    }
+
+    /**
+     * Un file che non è uno snapshot binario deve essere rifiutato.
+     */
+    @Test
+    void testFileNonValido()
+            throws IOException
+    {
+        Files.writeString(bin, "isbn;titolo\n");
+        assertThrows(IOException.class, () -> new ArchivioLibriFileBinario(bin).caricaLibri());
+    }
+
+    /**
+     * Importando e riesportando un CSV si devono ottenere gli stessi libri.
+     */
+    @Test
+    void testImportaEsportaCsv()
+            throws IOException
+    {
+        Path csv = dir.resolve("origine.csv");
+        ArchivioLibriFileCsv origine = new ArchivioLibriFileCsv(csv);
+        origine.svuota();
+        origine.aggiungiLibro("1984", "George Orwell", "Mondadori", "9788845294970", "DISTOPIA");
+        origine.aggiungiLibro("Dune", "Frank Herbert", "Fanucci", "9788834739680", "FANTASCIENZA");
+        origine.modificaStato("9788834739680", "IN_LETTURA");
+
+        ArchivioLibriFileBinario archivio = new ArchivioLibriFileBinario(bin);
+        archivio.importaCsv(csv);
+        assertEquals(origine.getLibri(), rileggi());
+
+        Path esportato = dir.resolve("esportato.csv");
+        archivio.esportaCsv(esportato);
+        ArchivioLibriFileCsv riletto = new ArchivioLibriFileCsv(esportato);
+        riletto.caricaLibri();
+        assertEquals(origine.getLibri(), riletto.getLibri());
+        assertEquals(Stato.IN_LETTURA, riletto.getLibri().get(1).getStatoLibro());
+    }
+
+    /**
+     * L'esportazione su stream deve produrre un JSON per riga, con i caratteri
+     * speciali protetti, e uno snapshot binario rileggibile.
+     */
+    @Test
+    void testEsportaSuStream()
+            throws IOException
+    {
+        ArchivioLibriFileBinario archivio = new ArchivioLibriFileBinario(bin);
+        archivio.svuota();
+        archivio.aggiungiLibro("Il \"nome\" della rosa", "Umberto Eco", "Bompiani", "0123456789", "GIALLO");
+        archivio.aggiungiLibro("Buona apocalisse a tutti!", "Terry Pratchett, Neil Gaiman", "Mondadori", "9788804668237", "FANTASY");
+        archivio.modificaStato("0123456789", "LETTO");
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        archivio.esporta(FormatoEsportazione.JSON_LINES, json);
+        List<String> righe = json.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(2, righe.size());
+        assertEquals("{\"isbn\":\"0123456789\",\"titolo\":\"IL \\\"NOME\\\" DELLA ROSA\",\"autori\":[\"UMBERTO ECO\"],"
+                + "\"editore\":\"BOMPIANI\",\"genere\":\"GIALLO\",\"stato\":\"LETTO\",\"valutazione\":\"nonValutato\"}", righe.get(0));
+        assertTrue(righe.get(1).contains("\"autori\":[\"NEIL GAIMAN\",\"TERRY PRATCHETT\"]"));
+
+        Path copia = dir.resolve("copia.bin");
+        try (FileChannel canale = FileChannel.open(copia, StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+        {
+            archivio.esporta(FormatoEsportazione.BINARIO, canale);
+        }
+        ArchivioLibriFileBinario riletto = new ArchivioLibriFileBinario(copia);
+        riletto.caricaLibri();
+        assertEquals(archivio.getLibri(), riletto.getLibri());
+        assertEquals(archivio.getLibri(), archivio.scorriLibri().toList());
+    }
+}
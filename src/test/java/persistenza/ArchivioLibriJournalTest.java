@@ -0,0 +1,158 @@
+package persistenza;
+
+import model.Libro;
+import model.Stato;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test del journal append-only di ArchivioLibriFileCsv.
+ * Verifica che le modifiche vengano accodate senza riscrivere il CSV
+ * e che la compattazione le incorpori nello snapshot.
+ */
+class ArchivioLibriJournalTest
+{
+
+    @TempDir
+    Path dir;
+
+    private Path csv;
+    private Path journal;
+
+    @BeforeEach
+    void setUp()
+    {
+        csv = dir.resolve("dati.csv");
+        journal = dir.resolve("dati.csv.journal");
+    }
+
+    /**
+     * Le modifiche singole non devono toccare lo snapshot, ma solo il journal.
+     */
+    @Test
+    void testModificheAccodateAlJournal()
+            throws IOException
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv);
+        archivio.svuota();
+        String snapshot = Files.readString(csv);
+
+        archivio.aggiungiLibro("1984", "George Orwell", "Mondadori", "9788845294970", "DISTOPIA");
+        archivio.aggiungiLibro("Dune", "Frank Herbert", "Fanucci", "9788834739680", "FANTASCIENZA");
+        archivio.modificaStato("9788845294970", "LETTO");
+        archivio.rimuoviLibro("9788834739680");
+
+        assertEquals(snapshot, Files.readString(csv), "Lo snapshot non deve essere riscritto");
+        assertEquals(4, Files.readAllLines(journal).size(), "Ogni modifica deve accodare una riga");
+    }
+
+    /**
+     * Un nuovo archivio sullo stesso file deve vedere snapshot più journal.
+     */
+    @Test
+    void testRicaricaRiapplicaJournal()
+            throws IOException
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv);
+        archivio.svuota();
+        archivio.aggiungiLibro("1984", "George Orwell", "Mondadori", "9788845294970", "DISTOPIA");
+        archivio.aggiungiLibro("Dune", "Frank Herbert", "Fanucci", "9788834739680", "FANTASCIENZA");
+        archivio.modificaStato("9788845294970", "in lettura");
+        archivio.rimuoviLibro("9788834739680");
+
+        ArchivioLibriFileCsv riaperto = new ArchivioLibriFileCsv(csv);
+        riaperto.caricaLibri();
+        List<Libro> libri = riaperto.getLibri();
+        assertEquals(1, libri.size());
+        assertEquals(Stato.IN_LETTURA, libri.get(0).getStatoLibro());
+    }
+
+    /**
+     * La compattazione deve incorporare il journal nello snapshot e svuotarlo.
+     */
+    @Test
+    void testCompattazione()
+            throws IOException
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv);
+        archivio.svuota();
+        archivio.aggiungiLibro("1984", "George Orwell", "Mondadori", "9788845294970", "DISTOPIA");
+        archivio.modificaValutazione("9788845294970", "5");
+
+        archivio.compatta();
+
+        assertFalse(Files.exists(journal), "Il journal deve essere svuotato");
+        List<String> righe = Files.readAllLines(csv);
+        assertEquals(2, righe.size(), "Lo snapshot deve contenere intestazione e un record");
+        assertTrue(righe.get(1).contains("cinque"), "Lo snapshot deve riportare la valutazione aggiornata");
+    }
+
+    /**
+     * Superata la soglia, il journal viene compattato in background.
+     */
+    @Test
+    void testCompattazioneAutomatica()
+            throws Exception
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv, 5);
+        archivio.svuota();
+        for (int i = 0; i < 5; i++)
+        {
+            archivio.aggiungiLibro("Libro" + i, "Autore", "Editore", String.format("%013d", 9780000000000L + i), "ALTRO");
+        }
+
+        long limite = System.currentTimeMillis() + 5000;
+        while (Files.exists(journal) && System.currentTimeMillis() < limite)
+        {
+            Thread.sleep(10);
+        }
+        assertFalse(Files.exists(journal), "Il journal deve essere compattato");
+        assertEquals(6, Files.readAllLines(csv).size());
+    }
+
+    /**
+     * In modalità classica l'elenco resta in memoria finché il file non cambia,
+     * ma le modifiche di un'altra istanza sullo stesso file vengono viste.
+     */
+    @Test
+    void testRiletturaSoloSeIlFileCambia()
+            throws IOException
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv);
+        archivio.svuota();
+        archivio.aggiungiLibro("1984", "George Orwell", "Mondadori", "9788845294970", "DISTOPIA");
+        List<Libro> prima = archivio.getLibri();
+        archivio.ordina(CriterioOrdinamento.TITOLO);
+        assertSame(prima, archivio.getLibri(), "Senza modifiche esterne l'elenco non deve essere riletto");
+
+        ArchivioLibriFileCsv altra = new ArchivioLibriFileCsv(csv);
+        altra.aggiungiLibro("Dune", "Frank Herbert", "Fanucci", "9788834739680", "FANTASCIENZA");
+
+        assertEquals(1, archivio.cerca("Dune").size(), "La modifica dell'altra istanza deve essere vista");
+        assertNotSame(prima, archivio.getLibri());
+    }
+
+    /**
+     * La chiusura deve attendere la compattazione già pianificata.
+     */
+    @Test
+    void testChiusuraAttendeCompattazione()
+            throws IOException
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv, 1);
+        archivio.svuota();
+        archivio.aggiungiLibro("1984", "George Orwell", "Mondadori", "9788845294970", "DISTOPIA");
+        archivio.close();
+
+        assertFalse(Files.exists(journal), "Il journal deve essere già compattato");
+        assertEquals(2, Files.readAllLines(csv).size());
+    }
+}
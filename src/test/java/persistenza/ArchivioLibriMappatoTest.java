@@ -0,0 +1,177 @@
+package persistenza;
+
+import Strategy.FiltraPerGenere;
+import Strategy.FiltroComposto;
+import model.Libro;
+import model.Genere;
+import model.Stato;
+import model.Valutazione;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test di ArchivioLibriMappato: lettura dalla mappatura, sovrapposizione
+ * delle modifiche, journal e coerenza con l'archivio binario in memoria.
+ */
+class ArchivioLibriMappatoTest
+{
+
+    @TempDir
+    Path dir;
+
+    private Path bin;
+    private ArchivioLibriFileBinario riferimento;
+
+    @BeforeEach
+    void setUp()
+            throws IOException
+    {
+        bin = dir.resolve("dati.bin");
+        riferimento = new ArchivioLibriFileBinario(bin);
+        riferimento.svuota();
+        riferimento.aggiungiLibro("1984", "George Orwell", "Mondadori", "9788845294970", "DISTOPIA");
+        riferimento.aggiungiLibro("Dune", "Frank Herbert", "Fanucci", "9788834739680", "FANTASCIENZA");
+        riferimento.aggiungiLibro("Il Signore degli Anelli", "J.R.R. Tolkien", "Bompiani", "9788845292613", "FANTASY");
+        riferimento.aggiungiLibro("Lo Hobbit", "J.R.R. Tolkien", "Bompiani", "0123456789", "FANTASY");
+        riferimento.modificaStato("9788834739680", "LETTO");
+        riferimento.compatta();
+    }
+
+    /**
+     * Le letture devono coincidere con quelle dell'archivio che ha scritto lo snapshot.
+     */
+    @Test
+    void testLettureComeArchivioInMemoria()
+            throws IOException
+    {
+        try (ArchivioLibriMappato mappato = new ArchivioLibriMappato(bin))
+        {
+            assertEquals(riferimento.getLibri(), mappato.getLibri());
+            assertEquals(Stato.LETTO, mappato.getLibri().get(1).getStatoLibro());
+            assertEquals(riferimento.cerca("dune"), mappato.cerca("dune"));
+            assertEquals(riferimento.cercaTesto("tolk anel", CriterioRicerca.PREFISSO),
+                    mappato.cercaTesto("tolk anel", CriterioRicerca.PREFISSO));
+            assertEquals(riferimento.suggerisci("j", 10), mappato.suggerisci("j", 10));
+            assertEquals(riferimento.filtra(FiltroComposto.condizione(new FiltraPerGenere(), "FANTASY")),
+                    mappato.filtra(FiltroComposto.condizione(new FiltraPerGenere(), "FANTASY")));
+            assertEquals(riferimento.ordina(CriterioOrdinamento.TITOLO), mappato.ordina(CriterioOrdinamento.TITOLO));
+            assertEquals(riferimento.filtra(Stato.NON_LETTO, Valutazione.nonValutato, Genere.FANTASY),
+                    mappato.filtra(Stato.NON_LETTO, Valutazione.nonValutato, Genere.FANTASY));
+        }
+    }
+
+    /**
+     * Le modifiche vanno nel journal senza riscrivere lo snapshot
+     * e devono essere visibili riaprendo il file.
+     */
+    @Test
+    void testModificheSovrappostePersistenti()
+            throws IOException
+    {
+        byte[] snapshot = Files.readAllBytes(bin);
+        try (ArchivioLibriMappato mappato = new ArchivioLibriMappato(bin))
+        {
+            assertTrue(mappato.rimuoviLibro("9788845294970"));
+            assertFalse(mappato.rimuoviLibro("9788845294970"));
+            mappato.modificaValutazione("0123456789", "4");
+            mappato.aggiungiLibro("Fondazione", "Isaac Asimov", "Mondadori", "9788804668244", "FANTASCIENZA");
+            assertThrows(LibroGiaPresenteException.class,
+                    () -> mappato.aggiungiLibro("Dune", "Frank Herbert", "Fanucci", "9788834739680", "FANTASCIENZA"));
+        }
+        assertArrayEquals(snapshot, Files.readAllBytes(bin), "Lo snapshot non deve essere riscritto");
+
+        try (ArchivioLibriMappato riaperto = new ArchivioLibriMappato(bin))
+        {
+            List<Libro> libri = riaperto.getLibri();
+            assertEquals(List.of("9788834739680", "9788845292613", "0123456789", "9788804668244"),
+                    libri.stream().map(Libro::getIsbn).toList());
+            assertEquals(Valutazione.quattro, libri.get(2).getValutazione());
+        }
+    }
+
+    /**
+     * Superata la soglia il journal viene incorporato in un nuovo snapshot.
+     */
+    @Test
+    void testCompattazione()
+            throws IOException
+    {
+        try (ArchivioLibriMappato mappato = new ArchivioLibriMappato(bin, 2))
+        {
+            mappato.rimuoviLibro("9788845294970");
+            mappato.aggiungiLibro("1984", "George Orwell", "Mondadori", "9788845294970", "DISTOPIA");
+            assertFalse(Files.exists(dir.resolve("dati.bin.journal")));
+            assertEquals("9788845294970", mappato.getLibri().get(3).getIsbn(),
+                    "Un libro reinserito deve finire in coda");
+        }
+        riferimento.caricaLibri();
+        assertEquals(4, riferimento.getLibri().size());
+    }
+
+    /**
+     * Lo scorrimento sequenziale deve saltare i libri rimossi e applicare le
+     * modifiche come l'accesso per indice, anche per l'esportazione in CSV.
+     */
+    @Test
+    void testScorriEdEsporta()
+            throws IOException
+    {
+        try (ArchivioLibriMappato mappato = new ArchivioLibriMappato(bin))
+        {
+            mappato.rimuoviLibro("9788845294970");
+            mappato.rimuoviLibro("9788845292613");
+            mappato.modificaStato("0123456789", "IN_LETTURA");
+            mappato.aggiungiLibro("Fondazione", "Isaac Asimov", "Mondadori", "9788804668244", "FANTASCIENZA");
+
+            List<Libro> perIndice = new ArrayList<>();
+            for (int i = 0; i < mappato.getLibri().size(); i++)
+                perIndice.add(mappato.getLibri().get(i));
+            assertEquals(perIndice, mappato.scorriLibri().toList());
+            assertEquals(Stato.IN_LETTURA, perIndice.get(1).getStatoLibro());
+
+            Path csv = dir.resolve("esportato.csv");
+            try (OutputStream out = Files.newOutputStream(csv))
+            {
+                mappato.esporta(FormatoEsportazione.CSV, out);
+            }
+            ArchivioLibriFileCsv riletto = new ArchivioLibriFileCsv(csv);
+            riletto.caricaLibri();
+            assertEquals(perIndice, riletto.getLibri());
+        }
+    }
+
+    /**
+     * Le modifiche successive non devono cambiare gli elenchi già restituiti,
+     * anche per i libri già presenti nella sovrapposizione.
+     */
+    @Test
+    void testVisteImmutabili()
+            throws IOException
+    {
+        try (ArchivioLibriMappato mappato = new ArchivioLibriMappato(bin))
+        {
+            mappato.rimuoviLibro("9788845294970");
+            mappato.modificaStato("0123456789", "IN_LETTURA");
+            List<Libro> prima = mappato.getLibri();
+
+            mappato.modificaStato("0123456789", "LETTO");
+            mappato.modificaValutazione("9788834739680", "5");
+            mappato.applicaModifiche(List.of(RichiestaModifica.stato("0123456789", "NON_LETTO")));
+
+            assertEquals(Stato.IN_LETTURA, prima.get(2).getStatoLibro());
+            assertEquals(Valutazione.nonValutato, prima.get(0).getValutazione());
+            assertEquals(Stato.NON_LETTO, mappato.getLibri().get(2).getStatoLibro());
+            assertEquals(Valutazione.cinque, mappato.getLibri().get(0).getValutazione());
+        }
+    }
+}
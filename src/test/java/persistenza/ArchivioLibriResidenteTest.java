@@ -0,0 +1,377 @@
+package persistenza;
+
+import model.Libro;
+import model.Stato;
+import model.Valutazione;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test della modalità residente di ArchivioLibriFileCsv: caricamento unico,
+ * modifiche pendenti e politica di salvataggio.
+ */
+class ArchivioLibriResidenteTest
+{
+
+    @TempDir
+    Path dir;
+
+    private Path csv;
+    private Path journal;
+
+    @BeforeEach
+    void setUp()
+            throws IOException
+    {
+        csv = dir.resolve("dati.csv");
+        journal = dir.resolve("dati.csv.journal");
+        Files.writeString(csv, "isbn;titolo;autori;editore;valutazione;stato;genere\n"
+                + "9788845294970;1984;GEORGE ORWELL;MONDADORI;nonValutato;NON_LETTO;DISTOPIA\n");
+    }
+
+    /**
+     * Dopo il primo caricamento le letture non devono accedere al file.
+     */
+    @Test
+    void testLettureSenzaDisco()
+            throws IOException
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv, new PoliticaFlush(0, 0, false));
+        assertEquals(1, archivio.cerca("1984").size());
+
+        Files.delete(csv);
+        assertEquals(1, archivio.cerca("1984").size(), "La ricerca deve usare i dati in memoria");
+        assertEquals(1, archivio.filtra(CriterioFiltro.GENERE, "DISTOPIA").size());
+        assertFalse(Files.exists(csv), "Le letture non devono ricreare il file");
+    }
+
+    /**
+     * Le modifiche restano pendenti fino a flush() e vengono poi accodate al journal.
+     */
+    @Test
+    void testFlushEsplicito()
+            throws IOException
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv, new PoliticaFlush(0, 0, false));
+        archivio.modificaStato("9788845294970", "LETTO");
+        archivio.modificaValutazione("9788845294970", "4");
+        archivio.aggiungiLibro("Dune", "Frank Herbert", "Fanucci", "9788834739680", "FANTASCIENZA");
+
+        assertEquals(2, archivio.getModifichePendenti(), "Due libri modificati");
+        assertFalse(Files.exists(journal), "Nessuna scrittura prima del flush");
+
+        archivio.flush();
+        assertEquals(0, archivio.getModifichePendenti());
+        assertEquals(2, Files.readAllLines(journal).size(), "Una riga per libro modificato");
+
+        ArchivioLibriFileCsv riaperto = new ArchivioLibriFileCsv(csv);
+        riaperto.caricaLibri();
+        assertEquals(2, riaperto.getLibri().size());
+        assertEquals(Stato.LETTO, riaperto.getLibri().get(0).getStatoLibro());
+    }
+
+    /**
+     * Raggiunta la soglia di modifiche, il salvataggio avviene automaticamente.
+     */
+    @Test
+    void testFlushOgniModifiche()
+            throws IOException
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv, new PoliticaFlush(2, 0, false));
+        archivio.aggiungiLibro("Dune", "Frank Herbert", "Fanucci", "9788834739680", "FANTASCIENZA");
+        assertFalse(Files.exists(journal));
+
+        archivio.rimuoviLibro("9788845294970");
+        assertEquals(0, archivio.getModifichePendenti());
+        assertEquals(2, Files.readAllLines(journal).size());
+    }
+
+    /**
+     * Il salvataggio periodico scrive le modifiche pendenti in background.
+     */
+    @Test
+    void testFlushPeriodico()
+            throws Exception
+    {
+        try (ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv, new PoliticaFlush(0, 20, false)))
+        {
+            archivio.modificaStato("9788845294970", "IN_LETTURA");
+
+            long limite = System.currentTimeMillis() + 5000;
+            while (archivio.getModifichePendenti() > 0 && System.currentTimeMillis() < limite)
+            {
+                Thread.sleep(10);
+            }
+            assertEquals(0, archivio.getModifichePendenti());
+            assertTrue(Files.exists(journal));
+        }
+    }
+
+    /**
+     * La chiusura dell'archivio salva le modifiche pendenti.
+     */
+    @Test
+    void testChiusuraSalva()
+            throws IOException
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv, new PoliticaFlush(0, 0, true));
+        archivio.modificaStato("9788845294970", "LETTO");
+        archivio.close();
+
+        ArchivioLibriFileCsv riaperto = new ArchivioLibriFileCsv(csv);
+        riaperto.caricaLibri();
+        assertEquals(Stato.LETTO, riaperto.getLibri().get(0).getStatoLibro());
+    }
+
+    /**
+     * Letture e scritture da più thread non devono corrompere elenco e indici.
+     */
+    @Test
+    void testAccessoConcorrente()
+            throws Exception
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv, new PoliticaFlush(0, 0, false));
+        archivio.caricaLibri();
+        int scrittori = 4;
+        int perScrittore = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> attivita = new ArrayList<>();
+        AtomicBoolean finito = new AtomicBoolean();
+
+        for (int t = 0; t < scrittori; t++)
+        {
+            int base = t * perScrittore;
+            attivita.add(pool.submit(() -> {
+                for (int i = base; i < base + perScrittore; i++)
+                {
+                    String isbn = String.format("%013d", 9780000000000L + i);
+                    archivio.aggiungiLibro("Titolo " + i, "Autore", "Editore", isbn, "ROMANZO");
+                    archivio.modificaStato(isbn, "LETTO");
+                }
+                return null;
+            }));
+        }
+        for (int t = 0; t < 4; t++)
+        {
+            attivita.add(pool.submit(() -> {
+                while (!finito.get())
+                {
+                    archivio.getLibri();
+                    archivio.cercaTesto("titolo", CriterioRicerca.PREFISSO);
+                    archivio.filtra(CriterioFiltro.STATO, "LETTO");
+                    archivio.getModifichePendenti();
+                }
+                return null;
+            }));
+        }
+        for (int t = 0; t < scrittori; t++)
+        {
+            attivita.get(t).get(30, TimeUnit.SECONDS);
+        }
+        finito.set(true);
+        for (Future<?> f : attivita)
+        {
+            f.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(1 + scrittori * perScrittore, archivio.getLibri().size());
+        assertEquals(scrittori * perScrittore, archivio.filtra(CriterioFiltro.STATO, "LETTO").size());
+        assertEquals(scrittori * perScrittore, archivio.cercaTesto("titolo", CriterioRicerca.PAROLA).size());
+    }
+
+    /**
+     * L'elenco restituito da getLibri() è una versione immutabile:
+     * le modifiche successive producono una nuova versione.
+     */
+    @Test
+    void testVersioniImmutabili()
+            throws IOException
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv, new PoliticaFlush(0, 0, false));
+        archivio.caricaLibri();
+        List<Libro> prima = archivio.getLibri();
+        assertSame(prima, archivio.getLibri(), "Senza modifiche non deve essere fatta alcuna copia");
+
+        archivio.modificaStato("9788845294970", "LETTO");
+        archivio.aggiungiLibro("Dune", "Frank Herbert", "Fanucci", "9788834739680", "FANTASCIENZA");
+
+        assertEquals(1, prima.size());
+        assertEquals(Stato.NON_LETTO, prima.get(0).getStatoLibro());
+        assertEquals(Stato.LETTO, archivio.getLibri().get(0).getStatoLibro());
+        assertEquals(1, archivio.filtra(CriterioFiltro.STATO, "LETTO").size());
+        assertThrows(UnsupportedOperationException.class, () -> archivio.getLibri().clear());
+    }
+
+    /**
+     * Una modifica esterna del file deve arrivare a indici e ascoltatori
+     * come differenza per ISBN, senza ricaricare i libri invariati.
+     */
+    @Test
+    void testAggiornaDaFile()
+            throws IOException
+    {
+        Files.writeString(csv, "isbn;titolo;autori;editore;valutazione;stato;genere\n"
+                + "9788845294970;1984;GEORGE ORWELL;MONDADORI;nonValutato;NON_LETTO;DISTOPIA\n"
+                + "9788834739680;DUNE;FRANK HERBERT;FANUCCI;nonValutato;NON_LETTO;FANTASCIENZA\n");
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv, new PoliticaFlush(0, 0, false));
+        archivio.caricaLibri();
+        Libro dune = archivio.getLibri().get(1);
+        List<String> eventi = new ArrayList<>();
+        archivio.aggiungiAscoltatore(e -> eventi.add(e.getTipo() + " " + e.getIsbn() + " " + e.getPosizione()));
+
+        assertEquals(0, archivio.aggiornaDaFile(), "Il file non è cambiato");
+        Files.writeString(csv, "isbn;titolo;autori;editore;valutazione;stato;genere\n"
+                + "9788834739680;DUNE;FRANK HERBERT;FANUCCI;nonValutato;NON_LETTO;FANTASCIENZA\n"
+                + "9788845294970;1984;GEORGE ORWELL;MONDADORI;nonValutato;LETTO;DISTOPIA\n"
+                + "9788845292613;LO HOBBIT;J.R.R. TOLKIEN;ADELPHI;nonValutato;NON_LETTO;FANTASY\n");
+
+        assertEquals(2, archivio.aggiornaDaFile());
+        assertEquals(List.of("STATO_MODIFICATO 9788845294970 0", "AGGIUNTO 9788845292613 2"), eventi);
+        assertSame(dune, archivio.getLibri().get(1), "I libri invariati non devono essere sostituiti");
+        assertEquals(1, archivio.filtra(Stato.LETTO, null, null).size(), "Gli indici devono essere aggiornati");
+        assertEquals(1, archivio.cercaTesto("hobbit", CriterioRicerca.PAROLA).size());
+
+        eventi.clear();
+        Files.writeString(csv, "isbn;titolo;autori;editore;valutazione;stato;genere\n"
+                + "9788845292613;LO HOBBIT;J.R.R. TOLKIEN;ADELPHI;nonValutato;NON_LETTO;FANTASY\n");
+        assertEquals(2, archivio.aggiornaDaFile());
+        assertEquals(List.of("RIMOSSO 9788845294970 0", "RIMOSSO 9788834739680 0"), eventi);
+        assertEquals(List.of("9788845292613"), archivio.getLibri().stream().map(Libro::getIsbn).toList());
+    }
+
+    /**
+     * Una modifica esterna di molti libri deve produrre un unico evento di
+     * ricaricamento, mentre i salvataggi dell'archivio stesso nessuno.
+     */
+    @Test
+    void testAggiornaDaFileMoltiLibri()
+            throws IOException
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv, new PoliticaFlush(0, 0, false));
+        archivio.caricaLibri();
+        List<EventoArchivio.Tipo> eventi = new ArrayList<>();
+        archivio.aggiungiAscoltatore(e -> eventi.add(e.getTipo()));
+
+        archivio.aggiungiLibro("Dune", "Frank Herbert", "Fanucci", "9788834739680", "FANTASCIENZA");
+        archivio.flush();
+        eventi.clear();
+        assertEquals(0, archivio.aggiornaDaFile(), "Il journal appena scritto non va riletto");
+        assertFalse(archivio.fileCambiato());
+
+        StringBuilder righe = new StringBuilder();
+        for (int i = 0; i <= AbstractArchivioLibriFile.SOGLIA_EVENTI_SINGOLI; i++)
+        {
+            righe.append(String.format("%013d", 9780000000000L + i))
+                    .append(";TITOLO;AUTORE;EDITORE;nonValutato;NON_LETTO;ALTRO\n");
+        }
+        Files.writeString(csv, righe, StandardOpenOption.APPEND);
+
+        assertEquals(AbstractArchivioLibriFile.SOGLIA_EVENTI_SINGOLI + 1, archivio.aggiornaDaFile());
+        assertEquals(List.of(EventoArchivio.Tipo.RICARICATO), eventi);
+        assertEquals(AbstractArchivioLibriFile.SOGLIA_EVENTI_SINGOLI + 3, archivio.getLibri().size());
+    }
+
+    /**
+     * Una modifica esterna non ancora letta non deve andare persa quando
+     * l'archivio scrive le sue modifiche pendenti prima di rileggere il file.
+     */
+    @Test
+    void testModificaEsternaConModifichePendenti()
+            throws IOException
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv, new PoliticaFlush(0, 0, false));
+        archivio.caricaLibri();
+        archivio.modificaStato("9788845294970", "LETTO");
+        Files.writeString(csv, "9788834739680;DUNE;FRANK HERBERT;FANUCCI;nonValutato;NON_LETTO;FANTASCIENZA\n",
+                StandardOpenOption.APPEND);
+
+        archivio.flush();
+        assertTrue(archivio.fileCambiato(), "Il salvataggio non deve coprire la modifica esterna");
+        assertEquals(1, archivio.aggiornaDaFile());
+        assertEquals(2, archivio.getLibri().size());
+        assertEquals(Stato.LETTO, archivio.getLibri().get(0).getStatoLibro());
+
+        archivio.modificaValutazione("9788834739680", "4");
+        Files.writeString(csv, "9788845292613;LO HOBBIT;J.R.R. TOLKIEN;ADELPHI;nonValutato;NON_LETTO;FANTASY\n",
+                StandardOpenOption.APPEND);
+        assertEquals(1, archivio.aggiornaDaFile(), "Le modifiche pendenti vanno salvate e quelle esterne lette");
+        assertEquals(3, archivio.getLibri().size());
+
+        ArchivioLibriFileCsv riaperto = new ArchivioLibriFileCsv(csv);
+        riaperto.caricaLibri();
+        assertEquals(3, riaperto.getLibri().size());
+        assertEquals(Stato.LETTO, riaperto.getLibri().get(0).getStatoLibro());
+        assertEquals(Valutazione.quattro, riaperto.getLibri().get(1).getValutazione());
+    }
+
+    /**
+     * Un libro rinominato da un altro processo deve essere trovato con il
+     * nuovo titolo e non più con il vecchio.
+     */
+    @Test
+    void testRinominaEsterna()
+            throws IOException
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv, new PoliticaFlush(0, 0, false));
+        assertEquals(1, archivio.cerca("1984").size());
+        assertEquals(1, archivio.suggerisci("19", 10).size());
+
+        Files.writeString(csv, "isbn;titolo;autori;editore;valutazione;stato;genere\n"
+                + "9788845294970;MILLENOVECENTOOTTANTAQUATTRO;GEORGE ORWELL;ADELPHI;nonValutato;NON_LETTO;DISTOPIA\n");
+        assertEquals(1, archivio.aggiornaDaFile());
+
+        assertTrue(archivio.cerca("1984").isEmpty());
+        assertEquals(1, archivio.cerca("Millenovecentoottantaquattro").size());
+        assertEquals(1, archivio.cercaTesto("millenovecento", CriterioRicerca.PREFISSO).size());
+        assertEquals(1, archivio.cercaTesto("adelphi", CriterioRicerca.PAROLA).size());
+        assertTrue(archivio.cercaTesto("mondadori", CriterioRicerca.PAROLA).isEmpty());
+        assertTrue(archivio.suggerisci("19", 10).isEmpty());
+        assertEquals(1, archivio.suggerisci("MILLE", 10).size());
+    }
+
+    /**
+     * Con l'osservazione attiva una scrittura esterna del file deve essere
+     * rilevata e applicata in background.
+     */
+    @Test
+    void testOsservaModificheEsterne()
+            throws Exception
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv, new PoliticaFlush(0, 0, false));
+        archivio.caricaLibri();
+        CountDownLatch aggiunto = new CountDownLatch(1);
+        archivio.aggiungiAscoltatore(e ->
+        {
+            if (e.getTipo() == EventoArchivio.Tipo.AGGIUNTO) aggiunto.countDown();
+        });
+        archivio.osservaModificheEsterne();
+        try
+        {
+            Files.writeString(csv, "9788834739680;DUNE;FRANK HERBERT;FANUCCI;nonValutato;NON_LETTO;FANTASCIENZA\n",
+                    StandardOpenOption.APPEND);
+            assertTrue(aggiunto.await(10, TimeUnit.SECONDS), "La modifica esterna deve essere rilevata");
+            assertEquals(2, archivio.getLibri().size());
+        }
+        finally
+        {
+            archivio.close();
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package persistenza;
 
+import Strategy.FiltraPerGenere;
+import Strategy.FiltraPerValutazione;
+import Strategy.FiltroComposto;
+import Strategy.FiltroStrategy;
 import model.Genere;
 import model.Libro;
 import model.Stato;
@@ -8,6 +12,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -182,6 +187,56 @@ class ArchivioLibriTest
         );
     }
 
+    /**
+     * Verifica il filtro combinato per genere e stato.
+     */
+    @Test
+    void testFiltroGenereEStato()
+            throws IOException
+    {
+        archivio.aggiungiLibro("1984", "A", "E", "1234567890", "DISTOPIA");
+        archivio.aggiungiLibro("Brave New World", "B", "E", "1234567891", "DISTOPIA");
+        archivio.aggiungiLibro("Dune", "C", "E", "1234567892", "FANTASCIENZA");
+        archivio.modificaStato("1234567891", "LETTO");
+        archivio.modificaStato("1234567892", "LETTO");
+
+        List<Libro> risultato = archivio.filtra(CriterioFiltro.GENERE_E_STATO, "DISTOPIA", "LETTO");
+        assertEquals(1, risultato.size(), "Un solo libro DISTOPIA e LETTO");
+        assertEquals("1234567891", risultato.get(0).getIsbn());
+
+        assertThrows(IllegalArgumentException.class, () ->
+                        archivio.filtra(CriterioFiltro.GENERE_E_STATO, "DISTOPIA"),
+                "GENERE_E_STATO richiede due parametri"
+        );
+    }
+
+    /**
+     * Verifica un albero di filtri AND/OR, anche con condizioni non indicizzate.
+     */
+    @Test
+    void testFiltroComposto()
+            throws IOException
+    {
+        archivio.aggiungiLibro("1984", "A", "E", "1234567890", "DISTOPIA");
+        archivio.aggiungiLibro("Brave New World", "B", "E", "1234567891", "DISTOPIA");
+        archivio.aggiungiLibro("Dune", "C", "E", "1234567892", "FANTASCIENZA");
+        archivio.aggiungiLibro("Hobbit", "D", "E", "1234567893", "FANTASY");
+        archivio.modificaValutazione("1234567892", "5");
+
+        FiltroStrategy titoloCorto = input -> l -> l.getTitolo().length() <= Integer.parseInt(input);
+        FiltroComposto filtro = FiltroComposto.and(
+                FiltroComposto.or(
+                        FiltroComposto.condizione(new FiltraPerGenere(), "DISTOPIA"),
+                        FiltroComposto.condizione(new FiltraPerValutazione(), "cinque")),
+                FiltroComposto.condizione(titoloCorto, "4"));
+
+        List<Libro> risultato = archivio.filtra(filtro);
+        assertEquals(List.of("1984", "DUNE"), risultato.stream().map(Libro::getTitolo).toList(),
+                "Devono restare i titoli brevi DISTOPIA o con valutazione cinque");
+        assertEquals(risultato, filtro.filtra(archivio.getLibri()),
+                "Indici e passaggio singolo devono dare lo stesso risultato");
+    }
+
     /**
      * Verifica l'ordinamento per titolo in ordine alfabetico.
      */
@@ -195,6 +250,8 @@ class ArchivioLibriTest
         List<Libro> sorted = archivio.ordina(CriterioOrdinamento.TITOLO);
         assertEquals("A TITLE", sorted.get(0).getTitolo(),
                 "Il primo titolo ordinato deve essere A TITLE");
+        assertEquals("B TITLE", archivio.getLibri().get(0).getTitolo(),
+                "L'ordinamento non deve riordinare l'archivio");
     }
 
     /**
@@ -256,4 +313,125 @@ class ArchivioLibriTest
                 "Ricerca non corrispondente deve restituire lista vuota");
     }
 
+    /**
+     * Verifica la ricerca testuale per parola, prefisso e sottostringa
+     * su titolo, autori ed editore, anche dopo una rimozione.
+     */
+    @Test
+    void testCercaTesto()
+            throws IOException
+    {
+        archivio.aggiungiLibro("Il Signore degli Anelli", "J.R.R. Tolkien", "Bompiani", "9788804668232", "FANTASY");
+        archivio.aggiungiLibro("Lo Hobbit", "J.R.R. Tolkien", "Adelphi", "9788845292613", "FANTASY");
+        archivio.aggiungiLibro("1984", "George Orwell", "Mondadori", "9788845294970", "DISTOPIA");
+
+        assertEquals(2, archivio.cercaTesto("tolkien", CriterioRicerca.PAROLA).size());
+        assertEquals(1, archivio.cercaTesto("signore TOLKIEN", CriterioRicerca.PAROLA).size(),
+                "Tutte le parole devono trovare corrispondenza");
+        assertEquals(2, archivio.cercaTesto("tolk", CriterioRicerca.PREFISSO).size());
+        assertTrue(archivio.cercaTesto("tolk", CriterioRicerca.PAROLA).isEmpty());
+        assertEquals(1, archivio.cercaTesto("ndad", CriterioRicerca.SOTTOSTRINGA).size(),
+                "La sottostringa deve trovare l'editore MONDADORI");
+        assertTrue(archivio.cercaTesto("  ", CriterioRicerca.SOTTOSTRINGA).isEmpty());
+
+        archivio.rimuoviLibro("9788845292613");
+        assertEquals(1, archivio.cercaTesto("tolkien", CriterioRicerca.PAROLA).size(),
+                "L'indice deve essere aggiornato dopo la rimozione");
+        assertTrue(archivio.cercaTesto("adelphi", CriterioRicerca.PREFISSO).isEmpty());
+    }
+
+    /**
+     * Verifica le pagine di ordinamento, ricerca e filtro, con il totale
+     * dei risultati e i limiti oltre la fine.
+     */
+    @Test
+    void testPaginazione()
+            throws IOException
+    {
+        archivio.aggiungiLibro("C Title", "Auth", "E", "1234567890", "DISTOPIA");
+        archivio.aggiungiLibro("A Title", "Auth", "E", "1234567891", "FANTASY");
+        archivio.aggiungiLibro("D Title", "Auth", "E", "1234567892", "DISTOPIA");
+        archivio.aggiungiLibro("B Title", "Auth", "E", "1234567893", "DISTOPIA");
+
+        Pagina pagina = archivio.ordina(CriterioOrdinamento.TITOLO, 1, 2);
+        assertEquals(List.of("B TITLE", "C TITLE"), pagina.getLibri().stream().map(Libro::getTitolo).toList());
+        assertEquals(4, pagina.getTotale());
+        assertTrue(pagina.haSuccessiva());
+
+        pagina = archivio.cerca(" d title ", CriterioOrdinamento.TITOLO, 0, 10);
+        assertEquals(List.of("D TITLE"), pagina.getLibri().stream().map(Libro::getTitolo).toList());
+        assertFalse(pagina.haSuccessiva());
+
+        FiltroComposto distopia = FiltroComposto.condizione(new FiltraPerGenere(), "DISTOPIA");
+        pagina = archivio.filtra(distopia, CriterioOrdinamento.TITOLO, 0, 2);
+        assertEquals(List.of("B TITLE", "C TITLE"), pagina.getLibri().stream().map(Libro::getTitolo).toList());
+        assertEquals(3, pagina.getTotale());
+
+        pagina = archivio.filtra(distopia, null, 0, 1);
+        assertEquals("C TITLE", pagina.getLibri().get(0).getTitolo(), "Senza ordine vale quello dell'archivio");
+        assertTrue(archivio.ordina(CriterioOrdinamento.AUTORE, 10, 5).getLibri().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> archivio.ordina(CriterioOrdinamento.TITOLO, -1, 5));
+    }
+
+    /**
+     * Verifica il filtro per stato, valutazione e genere, con i criteri
+     * null che non filtrano, anche dopo una modifica.
+     */
+    @Test
+    void testFiltroTipizzato()
+            throws IOException
+    {
+        archivio.aggiungiLibro("1984", "A", "E", "1234567890", "DISTOPIA");
+        archivio.aggiungiLibro("Brave New World", "B", "E", "1234567891", "DISTOPIA");
+        archivio.aggiungiLibro("Dune", "C", "E", "1234567892", "FANTASCIENZA");
+        archivio.modificaStato("1234567891", "LETTO");
+        archivio.modificaStato("1234567892", "LETTO");
+        archivio.modificaValutazione("1234567892", "5");
+
+        assertEquals(2, archivio.filtra(Stato.LETTO, (Valutazione) null, null).size());
+        assertEquals(List.of("1234567891"), archivio.filtra(Stato.LETTO, Valutazione.nonValutato, Genere.DISTOPIA)
+                .stream().map(Libro::getIsbn).toList());
+        assertEquals(3, archivio.filtra((Stato) null, null, null).size());
+
+        archivio.modificaValutazione("1234567891", "4");
+        assertTrue(archivio.filtra(Stato.LETTO, Valutazione.nonValutato, null).isEmpty(),
+                "Il filtro deve vedere l'ultima modifica");
+    }
+
+    /**
+     * Verifica gli eventi notificati per aggiunta, modifiche e rimozione,
+     * con ISBN e posizione nell'elenco, e che l'ascoltatore possa rileggere l'archivio.
+     */
+    @Test
+    void testAscoltatori()
+            throws IOException
+    {
+        List<String> eventi = new ArrayList<>();
+        AscoltatoreArchivio ascoltatore = e ->
+        {
+            eventi.add(e.getTipo() + " " + e.getIsbn() + " " + e.getPosizione());
+            assertNotNull(archivio.getLibri(), "L'archivio deve essere leggibile durante la notifica");
+        };
+        archivio.aggiungiAscoltatore(ascoltatore);
+
+        archivio.aggiungiLibro("1984", "A", "E", "1234567890", "DISTOPIA");
+        archivio.aggiungiLibro("Dune", "C", "E", "1234567892", "FANTASCIENZA");
+        archivio.modificaStato("1234567892", "LETTO");
+        archivio.modificaValutazione("1234567892", "4");
+        archivio.rimuoviLibro("1234567890");
+        archivio.rimuoviLibro("1234567890");
+        archivio.svuota();
+
+        assertEquals(List.of(
+                "AGGIUNTO 1234567890 0",
+                "AGGIUNTO 1234567892 1",
+                "STATO_MODIFICATO 1234567892 1",
+                "VALUTAZIONE_MODIFICATA 1234567892 1",
+                "RIMOSSO 1234567890 0",
+                "RICARICATO null -1"), eventi);
+
+        archivio.rimuoviAscoltatore(ascoltatore);
+        archivio.aggiungiLibro("1984", "A", "E", "1234567890", "DISTOPIA");
+        assertEquals(6, eventi.size(), "Un ascoltatore rimosso non riceve altri eventi");
+    }
 }
@@ -0,0 +1,79 @@
+package persistenza;
+
+import model.Libro;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test dell'elenco immutabile: ogni modifica produce una nuova versione
+ * equivalente a un ArrayList e lascia intatte quelle precedenti.
+ */
+class ElencoLibriTest
+{
+
+    private static Libro libro(int i)
+    {
+        return new Libro("Titolo" + i, Set.of("Autore"), "Editore", String.format("%013d", 9780000000000L + i), "ROMANZO");
+    }
+
+    /**
+     * Una sequenza casuale di aggiunte, sostituzioni e rimozioni deve dare
+     * lo stesso risultato di un ArrayList, anche attraverso più blocchi.
+     */
+    @Test
+    void testComeArrayList()
+    {
+        Random caso = new Random(42);
+        List<Libro> atteso = new ArrayList<>();
+        ElencoLibri elenco = ElencoLibri.vuoto();
+        for (int i = 0; i < 3000; i++)
+        {
+            int scelta = caso.nextInt(10);
+            if (scelta < 6 || atteso.isEmpty())
+            {
+                Libro l = libro(i);
+                atteso.add(l);
+                elenco = elenco.conAggiunto(l);
+            }
+            else if (scelta < 8)
+            {
+                int pos = caso.nextInt(atteso.size());
+                Libro l = libro(100000 + i);
+                atteso.set(pos, l);
+                elenco = elenco.conSostituito(pos, l);
+            }
+            else
+            {
+                int pos = caso.nextInt(atteso.size());
+                atteso.remove(pos);
+                elenco = elenco.senza(pos);
+            }
+        }
+
+        assertEquals(atteso, elenco);
+        assertEquals(atteso, new ArrayList<>(elenco), "Anche l'iteratore deve rispettare l'ordine");
+        assertEquals(atteso.indexOf(atteso.get(atteso.size() / 2)), elenco.indexOf(atteso.get(atteso.size() / 2)));
+        assertEquals(3000, elenco.getVersione());
+    }
+
+    /**
+     * Le versioni precedenti non devono cambiare e l'elenco non è modificabile.
+     */
+    @Test
+    void testVersioniIndipendenti()
+    {
+        ElencoLibri prima = ElencoLibri.di(List.of(libro(1), libro(2), libro(3)));
+        ElencoLibri dopo = prima.senza(1).conSostituito(0, libro(9)).conAggiunto(libro(4));
+
+        assertEquals(List.of(libro(1), libro(2), libro(3)), prima);
+        assertEquals(List.of(libro(9), libro(3), libro(4)), dopo);
+        assertThrows(UnsupportedOperationException.class, () -> prima.add(libro(5)));
+        assertThrows(IndexOutOfBoundsException.class, () -> dopo.get(3));
+    }
+}
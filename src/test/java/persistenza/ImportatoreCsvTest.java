@@ -0,0 +1,111 @@
+package persistenza;
+
+import model.Libro;
+import model.Stato;
+import model.Valutazione;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test di ImportatoreCsv: validazione, duplicati, libri già presenti
+ * e importazione a blocchi.
+ */
+class ImportatoreCsvTest
+{
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Le righe non valide (anche per la sola cifra di controllo) e i duplicati,
+     * compresi quelli con l'ISBN nell'altra forma, vengono contati e scartati;
+     * le altre vengono aggiunte nell'ordine del file, con l'ISBN a 13 cifre.
+     */
+    @Test
+    void testRigheScartateEDuplicate()
+            throws IOException
+    {
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(dir.resolve("dati.csv"));
+        archivio.svuota();
+        archivio.aggiungiLibro("Lo Hobbit", "J.R.R. Tolkien", "Bompiani", "0123456789", "FANTASY");
+
+        String csv = "isbn;titolo;autori;editore;valutazione;stato;genere\n"
+                + "9788804668237;Buona apocalisse a tutti!;Terry Pratchett,Neil Gaiman;Mondadori;;LETTO;FANTASY\n"
+                + "12345;ISBN corto;Anonimo;Editore;;;GIALLO\n"
+                + "9788845292613;Il Signore degli Anelli;J.R.R. Tolkien;Bompiani;cinque;;FANTASY\n"
+                + "978-88-04-66823-7;Buona apocalisse, ristampa;Terry Pratchett;Mondadori;;;FANTASY\n"
+                + "9780123456786;Lo Hobbit;J.R.R. Tolkien;Bompiani;;;FANTASY\n"
+                + "8804668245;Fondazione;Isaac Asimov;Mondadori;;;FANTASCIENZA\n"
+                + "9788804668230;Cifra di controllo errata;Anonimo;Editore;;;GIALLO\n"
+                + "riga;incompleta\n";
+
+        RapportoImportazione rapporto = new ImportatoreCsv(archivio, 2, ForkJoinPool.commonPool())
+                .importa(new StringReader(csv));
+
+        assertEquals(8, rapporto.getRigheLette());
+        assertEquals(3, rapporto.getImportati());
+        assertEquals(3, rapporto.getScartate());
+        assertEquals(1, rapporto.getDuplicate());
+        assertEquals(1, rapporto.getGiaPresenti());
+        assertTrue(rapporto.getErrori().get(0).startsWith("Riga 3:"), rapporto.getErrori().toString());
+
+        List<Libro> libri = archivio.getLibri();
+        assertEquals(List.of("0123456789", "9788804668237", "9788845292613", "9788804668244"),
+                libri.stream().map(Libro::getIsbn).toList());
+        assertEquals(Stato.LETTO, libri.get(1).getStatoLibro());
+        assertEquals(Valutazione.cinque, libri.get(2).getValutazione());
+    }
+
+    /**
+     * Un file di più blocchi deve essere importato per intero
+     * e nell'ordine delle righe.
+     */
+    @Test
+    void testImportazioneABlocchi()
+            throws IOException
+    {
+        Path sorgente = dir.resolve("editore.csv");
+        List<String> righe = new ArrayList<>();
+        righe.add("isbn;titolo;autori;editore;valutazione;stato;genere");
+        for (int i = 0; i < 5_000; i++)
+            righe.add(String.format("%s;Titolo %d;Autore %d;Editore;;;GIALLO", isbn13(i), i, i % 50));
+        Files.write(sorgente, righe);
+
+        Path bin = dir.resolve("dati.bin");
+        ArchivioLibriFileBinario archivio = new ArchivioLibriFileBinario(bin);
+        archivio.svuota();
+        RapportoImportazione rapporto = new ImportatoreCsv(archivio, 1_000, ForkJoinPool.commonPool())
+                .importa(sorgente);
+
+        assertEquals(5_000, rapporto.getImportati());
+        assertEquals(0, rapporto.getScartate());
+        assertTrue(rapporto.getRighePerSecondo() > 0);
+
+        ArchivioLibriFileBinario riletto = new ArchivioLibriFileBinario(bin);
+        riletto.caricaLibri();
+        assertEquals(archivio.getLibri(), riletto.getLibri());
+        assertEquals(isbn13(4_999), riletto.getLibri().get(4_999).getIsbn());
+    }
+
+    /**
+     * @return un ISBN-13 valido con prefisso 978 seguito dalle cifre di {@code n}
+     */
+    private static String isbn13(int n)
+    {
+        String dodici = String.format("978%09d", n);
+        int somma = 0;
+        for (int i = 0; i < 12; i++)
+            somma += (dodici.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        return dodici + (10 - somma % 10) % 10;
+    }
+}
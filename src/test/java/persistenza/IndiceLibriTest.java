@@ -0,0 +1,256 @@
+package persistenza;
+
+import model.Genere;
+import model.Libro;
+import model.Stato;
+import model.Valutazione;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test degli indici in memoria: ricerca per ISBN e indici secondari
+ * per genere, stato e valutazione.
+ */
+class IndiceLibriTest
+{
+
+    private IndiceLibri indice;
+
+    @BeforeEach
+    void setUp()
+    {
+        indice = new IndiceLibri();
+    }
+
+    private static Libro libro(int i, String genere)
+    {
+        return new Libro("Titolo" + i, Set.of("Autore"), "Editore", String.format("%013d", 9780000000000L + i), genere);
+    }
+
+    /**
+     * La ricerca per ISBN deve riflettere aggiunte e rimozioni.
+     */
+    @Test
+    void testCercaPerIsbn()
+    {
+        Libro l = libro(1, "FANTASY");
+        indice.aggiungi(l);
+        assertSame(l, indice.cerca(l.getIsbn()));
+        assertSame(l, indice.rimuovi(l.getIsbn()));
+        assertNull(indice.cerca(l.getIsbn()));
+        assertNull(indice.rimuovi(l.getIsbn()), "Una seconda rimozione non trova nulla");
+    }
+
+    /**
+     * L'intersezione degli indici deve restituire i libri nell'ordine di inserimento.
+     */
+    @Test
+    void testSelezioneCombinata()
+    {
+        Libro a = libro(1, "FANTASY");
+        Libro b = libro(2, "DISTOPIA");
+        Libro c = libro(3, "FANTASY");
+        c.setStatoLibro(Stato.LETTO);
+        indice.ricostruisci(List.of(a, b, c));
+
+        assertEquals(List.of(a, c), indice.libri(indice.seleziona(Genere.FANTASY, null, null)));
+        assertEquals(List.of(c), indice.libri(indice.seleziona(Genere.FANTASY, Stato.LETTO, null)));
+        assertEquals(List.of(a, b, c), indice.libri(indice.seleziona(null, null, null)));
+        assertTrue(indice.seleziona(Genere.DISTOPIA, Stato.LETTO, null).isEmpty());
+    }
+
+    /**
+     * Dopo la modifica di stato o valutazione, aggiorna() deve spostare il libro negli indici.
+     */
+    @Test
+    void testAggiorna()
+    {
+        Libro a = libro(1, "GIALLO");
+        indice.aggiungi(a);
+        a.setValutazione(Valutazione.cinque);
+        indice.aggiorna(a);
+
+        assertEquals(List.of(a), indice.libri(indice.seleziona(null, null, Valutazione.cinque)));
+        assertTrue(indice.seleziona(null, null, Valutazione.nonValutato).isEmpty());
+    }
+
+    /**
+     * Molte rimozioni provocano la ricompattazione senza perdere libri né ordine.
+     */
+    @Test
+    void testRicompattazione()
+    {
+        List<Libro> tutti = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+        {
+            tutti.add(libro(i, i % 2 == 0 ? "FANTASY" : "HORROR"));
+        }
+        indice.ricostruisci(tutti);
+
+        List<Libro> attesi = new ArrayList<>();
+        for (Libro l : tutti)
+        {
+            if (l.getIsbn().endsWith("7")) attesi.add(l);
+            else indice.rimuovi(l.getIsbn());
+        }
+
+        assertEquals(attesi, indice.libri(indice.seleziona(null, null, null)));
+        for (Libro l : attesi)
+        {
+            assertSame(l, indice.cerca(l.getIsbn()));
+        }
+    }
+
+    /**
+     * La posizione di ogni libro deve coincidere con quella nell'elenco
+     * dopo rimozioni, aggiunte in coda e ricompattazioni.
+     */
+    @Test
+    void testPosizioni()
+    {
+        List<Libro> elenco = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+        {
+            elenco.add(libro(i, "FANTASY"));
+        }
+        indice.ricostruisci(elenco);
+        for (int i = 0; i < 400; i++)
+        {
+            if (i % 3 == 0)
+            {
+                Libro rimosso = elenco.remove((i * 7) % elenco.size());
+                indice.rimuovi(rimosso.getIsbn());
+            }
+            else
+            {
+                Libro nuovo = libro(100 + i, "HORROR");
+                elenco.add(nuovo);
+                indice.aggiungi(nuovo);
+            }
+        }
+
+        for (int i = 0; i < elenco.size(); i++)
+        {
+            assertEquals(i, indice.posizione(elenco.get(i).getIsbn()));
+        }
+        assertEquals(-1, indice.posizione("0000000000000"));
+    }
+
+    /**
+     * L'indice testuale, una volta costruito, deve seguire aggiunte e rimozioni.
+     */
+    @Test
+    void testIndiceTestualeIncrementale()
+    {
+        Libro a = libro(1, "FANTASY");
+        indice.aggiungi(a);
+        assertEquals(List.of(a), indice.libri(indice.cercaTesto("titolo1", CriterioRicerca.PAROLA)));
+
+        Libro b = new Libro("  Il   nome della rosa ", Set.of("Umberto Eco"), "Bompiani", "9788845278655", "GIALLO");
+        indice.aggiungi(b);
+        assertEquals(List.of(b), indice.libri(indice.cercaTesto("umb", CriterioRicerca.PREFISSO)));
+        assertEquals(List.of(b), indice.libri(indice.conTitolo("il nome DELLA rosa")));
+
+        indice.rimuovi(b.getIsbn());
+        assertTrue(indice.cercaTesto("rosa", CriterioRicerca.SOTTOSTRINGA).isEmpty());
+        assertTrue(indice.conTitolo("il nome della rosa").isEmpty());
+        assertEquals(List.of(a), indice.libri(indice.cercaTesto("itol", CriterioRicerca.SOTTOSTRINGA)));
+    }
+
+    /**
+     * I suggerimenti devono rispettare prefisso, ordine alfabetico, limite e modifiche.
+     */
+    @Test
+    void testSuggerimenti()
+    {
+        Libro dune = new Libro("Dune", Set.of("Frank Herbert"), "Fanucci", "9788834739680", "FANTASCIENZA");
+        Libro dracula = new Libro("Dracula", Set.of("Bram Stoker"), "Mondadori", "9788804668237", "HORROR");
+        Libro fondazione = new Libro("Fondazione", Set.of("Isaac Asimov"), "Mondadori", "9788804668244", "FANTASCIENZA");
+        indice.ricostruisci(List.of(dune, dracula, fondazione));
+
+        assertEquals(List.of(dracula, dune), indice.suggerisci("d", 10));
+        assertEquals(List.of(dracula), indice.suggerisci("D", 1), "Il limite deve essere rispettato");
+        assertEquals(List.of(fondazione, dune), indice.suggerisci("f", 10),
+                "Devono comparire sia i titoli sia gli autori");
+        assertTrue(indice.suggerisci("  ", 10).isEmpty());
+
+        Libro dottor = new Libro("Dottor Zivago", Set.of("Boris Pasternak"), "Feltrinelli", "9788807900587", "ROMANZO");
+        indice.aggiungi(dottor);
+        indice.rimuovi(dracula.getIsbn());
+        assertEquals(List.of(dottor, dune), indice.suggerisci("d", 10));
+        assertEquals(List.of(dottor), indice.suggerisci("boris p", 10));
+    }
+
+    /**
+     * Le viste ordinate, mantenute a ogni modifica e attraverso le
+     * ricompattazioni, devono coincidere con un ordinamento completo.
+     */
+    @Test
+    void testVisteOrdinateMantenute()
+    {
+        List<Libro> elenco = new ArrayList<>();
+        for (int i = 0; i < 300; i++)
+        {
+            Libro l = new Libro("Titolo " + (i * 7919 % 300), Set.of("Autore " + (i % 13)), "Editore",
+                    String.format("%013d", 9780000000000L + i), "GIALLO");
+            elenco.add(l);
+            indice.aggiungi(l);
+        }
+        assertEquals(300, indice.ordinati(CriterioOrdinamento.AUTORE).size());
+        indice.ordinati(CriterioOrdinamento.TITOLO);
+
+        // due rimozioni su tre: oltre metà degli slot vuoti, l'indice si ricompatta
+        List<Libro> rimossi = new ArrayList<>();
+        for (int i = 0; i < 300; i++)
+        {
+            if (i % 3 == 0) continue;
+            indice.rimuovi(elenco.get(i).getIsbn());
+            rimossi.add(elenco.get(i));
+        }
+        elenco.removeAll(rimossi);
+        Libro nuovo = new Libro("Aaa", Set.of("Zeta"), "Editore", "9781111111111", "GIALLO");
+        indice.aggiungi(nuovo);
+        elenco.add(nuovo);
+        Libro letto = new Libro(elenco.get(0).getTitolo(), elenco.get(0).getAutori(), "Editore", elenco.get(0).getIsbn(), "GIALLO");
+        letto.setStatoLibro(Stato.LETTO);
+        indice.aggiorna(letto);
+        elenco.set(0, letto);
+
+        assertEquals(new Strategy.OrdinamentoPerAutore().ordina(new ArrayList<>(elenco)),
+                indice.ordinati(CriterioOrdinamento.AUTORE));
+        assertEquals(new Strategy.OrdinamentoPerTitolo().ordina(new ArrayList<>(elenco)),
+                indice.ordinati(CriterioOrdinamento.TITOLO));
+        assertEquals(Stato.LETTO, indice.ordinati(CriterioOrdinamento.TITOLO).stream()
+                .filter(l -> l.getIsbn().equals(letto.getIsbn())).findFirst().orElseThrow().getStatoLibro());
+    }
+
+    /**
+     * Una pagina della vista ordinata deve coincidere con la parte
+     * corrispondente dell'elenco ordinato, anche subito dopo una modifica.
+     */
+    @Test
+    void testPaginaOrdinata()
+    {
+        for (int i = 0; i < 100; i++)
+        {
+            indice.aggiungi(new Libro("Titolo " + (i * 37 % 100), Set.of("Autore"), "Editore",
+                    String.format("%013d", 9780000000000L + i), "GIALLO"));
+        }
+        indice.ordinati(CriterioOrdinamento.TITOLO);
+        indice.rimuovi(String.format("%013d", 9780000000000L + 5));
+
+        Pagina pagina = indice.ordinati(CriterioOrdinamento.TITOLO, 90, 20);
+        List<Libro> ordinati = indice.ordinati(CriterioOrdinamento.TITOLO);
+        assertEquals(ordinati.subList(90, 99), pagina.getLibri());
+        assertEquals(99, pagina.getTotale());
+        assertFalse(pagina.haSuccessiva());
+        assertEquals(ordinati.subList(10, 15), indice.ordinati(CriterioOrdinamento.TITOLO, 10, 5).getLibri());
+        assertThrows(IllegalArgumentException.class, () -> indice.ordinati(CriterioOrdinamento.TITOLO, -1, 5));
+    }
+}
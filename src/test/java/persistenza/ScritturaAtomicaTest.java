@@ -0,0 +1,83 @@
+package persistenza;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test della sostituzione atomica dei file e della rotazione delle generazioni.
+ */
+class ScritturaAtomicaTest
+{
+
+    @TempDir
+    Path dir;
+
+    private static ScritturaAtomica.Contenuto testo(String s)
+    {
+        return out -> out.write(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Un errore durante la scrittura non deve toccare il file esistente.
+     */
+    @Test
+    void testErroreLasciaIntattoIlFile()
+            throws IOException
+    {
+        Path file = dir.resolve("dati.csv");
+        ScritturaAtomica.scrivi(file, 0, testo("originale"));
+
+        assertThrows(IOException.class, () -> ScritturaAtomica.scrivi(file, 0, out -> {
+            out.write("parziale".getBytes(StandardCharsets.UTF_8));
+            throw new IOException("disco pieno");
+        }));
+        assertEquals("originale", Files.readString(file));
+    }
+
+    /**
+     * Ogni salvataggio conserva la versione precedente; oltre il limite
+     * la generazione più vecchia viene eliminata.
+     */
+    @Test
+    void testRotazioneGenerazioni()
+            throws IOException
+    {
+        Path file = dir.resolve("dati.csv");
+        for (int i = 1; i <= 4; i++)
+            ScritturaAtomica.scrivi(file, 2, testo("versione " + i));
+
+        assertEquals("versione 4", Files.readString(file));
+        assertEquals("versione 3", Files.readString(ScritturaAtomica.generazione(file, 1)));
+        assertEquals("versione 2", Files.readString(ScritturaAtomica.generazione(file, 2)));
+        assertFalse(Files.exists(ScritturaAtomica.generazione(file, 3)));
+    }
+
+    /**
+     * Il salvataggio dell'archivio deve produrre le generazioni e propagare gli errori.
+     */
+    @Test
+    void testSalvataggioArchivio()
+            throws IOException
+    {
+        Path csv = dir.resolve("libri.csv");
+        ArchivioLibriFileCsv archivio = new ArchivioLibriFileCsv(csv);
+        archivio.svuota();
+        archivio.aggiungiLibro("Dune", "Frank Herbert", "Fanucci", "9788834739680", "FANTASCIENZA");
+        archivio.salvaLibri();
+
+        assertTrue(Files.readString(csv).contains("9788834739680"));
+        assertFalse(Files.readString(ScritturaAtomica.generazione(csv, 1)).contains("9788834739680"));
+
+        Files.createDirectories(dir.resolve("libri.csv.tmp"));
+        Files.writeString(dir.resolve("libri.csv.tmp").resolve("blocco"), "x");
+        assertThrows(IOException.class, archivio::salvaLibri);
+        assertTrue(Files.readString(csv).contains("9788834739680"));
+    }
+}
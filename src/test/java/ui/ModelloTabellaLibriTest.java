@@ -0,0 +1,77 @@
+package ui;
+
+import model.Libro;
+import model.Stato;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelloTabellaLibriTest
+{
+
+    /**
+     * Verifica che le celle vengano lette dall'elenco e che ogni nuovo
+     * elenco produca un solo evento di modifica.
+     */
+    @Test
+    void testCelleEEventi()
+    {
+        ModelloTabellaLibri modello = new ModelloTabellaLibri();
+        List<Integer> eventi = new ArrayList<>();
+        modello.addTableModelListener(e -> eventi.add(e.getType()));
+
+        List<Libro> libri = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++)
+        {
+            libri.add(new Libro("Titolo " + i, Set.of("Bianchi", "Rossi"), "Editore",
+                    String.format("%013d", i), "GIALLO"));
+        }
+        modello.setLibri(libri);
+
+        assertEquals(1, eventi.size(), "Un solo evento per l'intero elenco");
+        assertEquals(1_000, modello.getRowCount());
+        assertEquals(7, modello.getColumnCount());
+        assertEquals("Autori", modello.getColumnName(2));
+        assertEquals("0000000000042", modello.getValueAt(42, 0));
+        assertEquals("BIANCHI, ROSSI", modello.getValueAt(42, 2));
+        assertSame(libri.get(7), modello.getLibro(7));
+        assertFalse(modello.isCellEditable(0, 0));
+    }
+
+    /**
+     * Verifica che l'aggiornamento di un libro ridisegni la sola riga,
+     * senza modificare l'elenco mostrato.
+     */
+    @Test
+    void testAggiornamentoRiga()
+    {
+        ModelloTabellaLibri modello = new ModelloTabellaLibri();
+        List<Libro> libri = List.of(
+                new Libro("Uno", Set.of("A"), "E", "0000000000001", "GIALLO"),
+                new Libro("Due", Set.of("B"), "E", "0000000000002", "GIALLO"));
+        modello.setLibri(libri);
+        List<TableModelEvent> eventi = new ArrayList<>();
+        modello.addTableModelListener(eventi::add);
+
+        Libro letto = new Libro("Due", Set.of("B"), "E", "0000000000002", "GIALLO");
+        letto.setStatoLibro(Stato.LETTO);
+        int riga = modello.rigaDi("0000000000002");
+        modello.aggiornaLibro(riga, letto);
+
+        assertEquals(1, riga);
+        assertEquals(-1, modello.rigaDi("0000000000003"));
+        assertEquals(Stato.LETTO, modello.getValueAt(1, 5));
+        assertEquals(Stato.NON_LETTO, libri.get(1).getStatoLibro());
+        assertEquals(1, eventi.size());
+        assertEquals(1, eventi.get(0).getFirstRow());
+        assertEquals(1, eventi.get(0).getLastRow());
+
+        modello.setLibri(libri);
+        assertEquals(Stato.NON_LETTO, modello.getValueAt(1, 5), "Un nuovo elenco scarta gli aggiornamenti");
+    }
+}